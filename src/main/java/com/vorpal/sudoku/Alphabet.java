@@ -0,0 +1,240 @@
+// Alphabet.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The symbols that can appear on a Sudoku board, numbered so that a board can be stored as a flat array of ints.
+ * Code 0 is always the zero element, and codes 1 through n are the valid entries.
+ *
+ * Alphabets are interned: boards with the same zero and the same valid entries share a single instance, and
+ * thus agree on the numbering of their symbols. This means that two boards can be compared code by code.
+ * The interned alphabets are only weakly referenced, so an alphabet that is no longer used by any board is collected.
+ * If the symbols are mutually Comparable, they are numbered in their natural order, so that the numbering is also
+ * stable between runs; otherwise, they are numbered in the iteration order of the set used to first create the
+ * alphabet.
+ * @param <T> the type of the symbols
+ */
+final class Alphabet<T> implements Serializable {
+    // The interned alphabets by their parameters, and the queue on which the references to collected ones appear.
+    private static final Map<List<Object>, Entry> interned = new HashMap<>();
+    private static final ReferenceQueue<Alphabet<?>> collected = new ReferenceQueue<>();
+
+    // The special instance of T representing zero.
+    private final T zero;
+
+    // The values of T which appear as valid entries on the board, minus the special zero element.
+    private final Set<T> validEntries;
+
+    // The symbols, indexed by code: symbols.get(0) is zero.
+    private final List<T> symbols;
+
+    // The reverse of symbols.
+    private final Map<T, Integer> codes;
+
+    // Whether the symbols are numbered in their natural order, and thus the same way in every run.
+    private final boolean stable;
+
+    private final int hash;
+
+    private Alphabet(final T zero, final Set<T> validEntries) {
+        this.zero = zero;
+        this.validEntries = validEntries;
+
+        final var ordered = new ArrayList<T>(validEntries.size() + 1);
+        ordered.addAll(validEntries);
+        stable = !ordered.isEmpty() && ordered.get(0) instanceof Comparable
+                && ordered.stream().allMatch(x -> x.getClass() == ordered.get(0).getClass());
+        if (stable)
+            ordered.sort(null);
+        ordered.add(0, zero);
+        symbols = Collections.unmodifiableList(ordered);
+
+        codes = new HashMap<>();
+        for (var i = 0; i < symbols.size(); ++i)
+            codes.put(symbols.get(i), i);
+
+        hash = Objects.hash(zero, validEntries);
+    }
+
+    /**
+     * Get the alphabet for a zero element and a set of valid entries.
+     * @param zero the placemarker used to mark an unsolved position
+     * @param validEntries the valid entries: if this contains the zero element, it is removed
+     * @return the unique alphabet with these parameters
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Alphabet<T> of(final T zero, final Set<T> validEntries) {
+        Objects.requireNonNull(zero);
+        final var entries = validEntries.stream()
+                .filter(x -> !zero.equals(x))
+                .collect(Collectors.toUnmodifiableSet());
+        final var key = List.<Object>of(zero, entries);
+        synchronized (interned) {
+            expunge();
+            final var entry = interned.get(key);
+            final var existing = entry == null ? null : entry.get();
+            if (existing != null)
+                return (Alphabet<T>) existing;
+
+            final var alphabet = new Alphabet<>(zero, entries);
+            interned.put(key, new Entry(key, alphabet));
+            return alphabet;
+        }
+    }
+
+    /**
+     * Remove the entries of the alphabets that have been collected. This must be called holding the lock on interned.
+     */
+    private static void expunge() {
+        Reference<?> reference;
+        while ((reference = collected.poll()) != null) {
+            final var entry = (Entry) reference;
+            // The key may have been interned again since, in which case it maps to a different entry.
+            interned.remove(entry.key, entry);
+        }
+    }
+
+    /**
+     * The number of alphabets that are interned, including any that have been collected but not yet expunged.
+     * @return the number of entries in the table
+     */
+    static int internedCount() {
+        synchronized (interned) {
+            expunge();
+            return interned.size();
+        }
+    }
+
+    /**
+     * Act as the garbage collector would on the interned alphabet with these parameters, clearing its reference and
+     * enqueueing it for removal, so that the expunging of collected alphabets can be tested without relying on the
+     * collector actually running.
+     * @param zero the zero element of the alphabet
+     * @param validEntries the valid entries of the alphabet
+     * @return true if the alphabet was interned, and false otherwise
+     */
+    static boolean collect(final Object zero, final Set<?> validEntries) {
+        final var key = List.<Object>of(zero, Set.copyOf(validEntries));
+        synchronized (interned) {
+            final var entry = interned.get(key);
+            return entry != null && entry.enqueue();
+        }
+    }
+
+    // A weak reference to an interned alphabet that remembers its key, so that its entry can be removed.
+    private static final class Entry extends WeakReference<Alphabet<?>> {
+        private final List<Object> key;
+
+        Entry(final List<Object> key, final Alphabet<?> alphabet) {
+            super(alphabet, collected);
+            this.key = key;
+        }
+    }
+
+    T getZero() {
+        return zero;
+    }
+
+    Set<T> getValidEntries() {
+        return validEntries;
+    }
+
+    /**
+     * The number of valid entries, i.e. the largest code.
+     * @return the number of valid entries
+     */
+    int size() {
+        return validEntries.size();
+    }
+
+    /**
+     * Get the symbol for a code.
+     * @param code the code, in [0, size()]
+     * @return the symbol
+     */
+    T symbol(final int code) {
+        return symbols.get(code);
+    }
+
+    /**
+     * Get the code for a symbol.
+     * @param value the symbol
+     * @return the code of the symbol, or -1 if the symbol is not in this alphabet
+     */
+    int code(final T value) {
+        final var code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * The symbols, indexed by code.
+     * @return the symbols, with the zero element first
+     */
+    List<T> getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Determine if the numbering of the symbols is the same in every run, i.e. they are numbered in their natural
+     * order. Otherwise, codes that leave the JVM without their symbols cannot be decoded elsewhere.
+     * @return true if the numbering is stable, and false otherwise
+     */
+    boolean isStable() {
+        return stable;
+    }
+
+    /**
+     * Translate codes written under another numbering of the symbols of this alphabet into this numbering.
+     * A deserialized board uses this, since its codes were written in a JVM that may have numbered the symbols of
+     * an alphabet that is not stable differently.
+     * @param numbering the symbols, indexed by their codes in the other numbering
+     * @param cells the codes to translate, which are not modified
+     * @return cells if the numberings agree, and otherwise a translated copy of cells
+     * @throws InvalidObjectException if the numbering is not of these symbols, or a code is out of range
+     */
+    int[] recode(final List<?> numbering, final int[] cells) throws InvalidObjectException {
+        if (numbering.size() != symbols.size())
+            throw new InvalidObjectException("board symbols do not match alphabet");
+        final var map = new int[numbering.size()];
+        var identity = true;
+        for (var i = 0; i < map.length; ++i) {
+            final var code = codes.get(numbering.get(i));
+            if (code == null)
+                throw new InvalidObjectException("board symbols do not match alphabet");
+            map[i] = code;
+            identity &= code == i;
+        }
+
+        final var recoded = identity ? cells : new int[cells.length];
+        for (var i = 0; i < cells.length; ++i) {
+            if (cells[i] < 0 || cells[i] >= map.length)
+                throw new InvalidObjectException("illegal code " + cells[i]);
+            recoded[i] = map[cells[i]];
+        }
+        return recoded;
+    }
+
+    /**
+     * Deserialization would otherwise produce a second alphabet with the same parameters.
+     */
+    private Object readResolve() throws ObjectStreamException {
+        return of(zero, validEntries);
+    }
+
+    // Alphabets are interned, so equality is identity: we only need a hash that is consistent with that.
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
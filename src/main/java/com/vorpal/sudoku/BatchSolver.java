@@ -0,0 +1,351 @@
+// BatchSolver.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A command line tool that solves puzzles in bulk, for validating corpora without writing any code.
+ *
+ * Puzzles are read in the line or grid format (see BoardFormat) from the files given on the command line,
+ * or from standard input, and solved in parallel. For each puzzle, in the order they were read, a line is written
+ * with the solution (or the puzzle, if it could not be solved) in the line format, a tab, and a status:
+ * solved, unsolvable, multiple, limit, stuck, or error. Once every puzzle has been solved, a summary of the
+ * throughput, latency percentiles, and counts of each status is written to standard error.
+ *
+ * Run with --help for the options.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BatchSolver {
+    /**
+     * The ways in which a puzzle can be solved.
+     */
+    public enum Backend {
+        // The constraint program: see GenSudokuCP.
+        CP,
+
+        // The logical techniques only: see LogicalSolver. Puzzles that need guessing are reported as stuck.
+        LOGIC,
+
+        // The logical techniques, falling back to the constraint program for puzzles that need guessing.
+        HYBRID
+    }
+
+    /**
+     * The outcome of solving a puzzle, as reported in the output.
+     */
+    enum Outcome {
+        SOLVED("solved"),
+        UNSOLVABLE("unsolvable"),
+        MULTIPLE("multiple"),
+        LIMIT("limit"),
+        STUCK("stuck"),
+        ERROR("error");
+
+        private final String label;
+
+        Outcome(final String label) {
+            this.label = label;
+        }
+
+        static Outcome of(final GenSudokuCP.Status status) {
+            switch (status) {
+                case UNIQUE:             return SOLVED;
+                case NO_SOLUTION:        return UNSOLVABLE;
+                case MULTIPLE_SOLUTIONS: return MULTIPLE;
+                case LIMIT_REACHED:      return LIMIT;
+                default:                 return ERROR;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // The result of solving one puzzle.
+    private static final class Result {
+        final String line;
+        final Outcome outcome;
+        final long nanos;
+
+        Result(final String line, final Outcome outcome, final long nanos) {
+            this.line = line;
+            this.outcome = outcome;
+            this.nanos = nanos;
+        }
+    }
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -jar sudoku-cp-all.jar [options] [file ...]",
+            "Solves the puzzles in the files (or standard input if there are none, or for -) in parallel.",
+            "",
+            "Options:",
+            "  -d, --dimensionality N  the dimensionality of the boards, e.g. 3 for 9x9 (default 3)",
+            "  -t, --threads N         the number of solver threads (default: number of processors)",
+            "  -b, --backend B         cp, logic, or hybrid (default cp)",
+            "      --time-limit MS     the time limit per puzzle in milliseconds (default: none)",
+            "      --node-limit N      the node limit per puzzle for the cp backend (default: none)",
+            "  -o, --output FILE       write the results to FILE instead of standard output",
+            "  -q, --quiet             only write the summary",
+            "  -h, --help              show this message");
+
+    private int dimensionality = 3;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Backend backend = Backend.CP;
+    private long timeLimit;
+    private long nodeLimit;
+    private String output;
+    private boolean quiet;
+    private final List<String> inputs = new ArrayList<>();
+
+    // The statistics gathered so far: the count of each outcome, and the latencies of the puzzles that were solved.
+    private final Map<Outcome, Long> counts = new EnumMap<>(Outcome.class);
+    private long[] latencies = new long[1024];
+    private int numLatencies;
+
+    public static void main(final String[] args) {
+        final var tool = new BatchSolver();
+        try {
+            if (!tool.parse(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            System.exit(tool.run() ? 0 : 1);
+        } catch (IOException ex) {
+            System.err.println("I/O error: " + ex.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Parse the command line.
+     * @param args the arguments
+     * @return false if help was requested, and true otherwise
+     */
+    boolean parse(final String[] args) {
+        for (var i = 0; i < args.length; ++i) {
+            final var arg = args[i];
+            switch (arg) {
+                case "-h": case "--help":
+                    return false;
+                case "-d": case "--dimensionality":
+                    dimensionality = positive(arg, value(args, ++i));
+                    break;
+                case "-t": case "--threads":
+                    threads = positive(arg, value(args, ++i));
+                    break;
+                case "-b": case "--backend":
+                    final var name = value(args, ++i);
+                    try {
+                        backend = Backend.valueOf(name.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException ex) {
+                        throw new IllegalArgumentException("Unknown backend: " + name);
+                    }
+                    break;
+                case "--time-limit":
+                    timeLimit = positive(arg, value(args, ++i));
+                    break;
+                case "--node-limit":
+                    nodeLimit = positive(arg, value(args, ++i));
+                    break;
+                case "-o": case "--output":
+                    output = value(args, ++i);
+                    break;
+                case "-q": case "--quiet":
+                    quiet = true;
+                    break;
+                default:
+                    if (arg.startsWith("-") && !arg.equals("-"))
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    inputs.add(arg);
+            }
+        }
+        if (dimensionality * dimensionality > BoardFormat.MAX_VALUE)
+            throw new IllegalArgumentException("dimensionality must be between 1 and 5");
+        if (inputs.isEmpty())
+            inputs.add("-");
+        return true;
+    }
+
+    private static String value(final String[] args, final int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException(args[i - 1] + " requires a value");
+        return args[i];
+    }
+
+    private static int positive(final String option, final String value) {
+        try {
+            final var n = Integer.parseInt(value);
+            if (n > 0)
+                return n;
+        } catch (NumberFormatException ex) {
+            // Fall through.
+        }
+        throw new IllegalArgumentException(option + " requires a positive integer");
+    }
+
+    /**
+     * Solve all the puzzles, writing the results in order as they become available.
+     * At most a few puzzles per thread are in flight at once, so that the inputs can be arbitrarily large.
+     * @return true if every puzzle was read and solved without error
+     * @throws IOException if an input or the output fails
+     */
+    boolean run() throws IOException {
+        final var executor = Executors.newFixedThreadPool(threads);
+        final var pending = new ArrayDeque<Future<Result>>();
+        final var window = 4 * threads;
+
+        for (final var outcome : Outcome.values())
+            counts.put(outcome, 0L);
+
+        final var start = System.nanoTime();
+        try (final var out = new PrintWriter(new BufferedWriter(output == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(Paths.get(output))))) {
+            for (final var input : inputs) {
+                try (final var reader = new BoardFormat.Reader(open(input), dimensionality)) {
+                    while (true) {
+                        final GenSudokuBoard<Integer> board;
+                        try {
+                            board = reader.next();
+                        } catch (IllegalArgumentException ex) {
+                            System.err.println(input + ": " + ex.getMessage());
+                            final var error = new CompletableFuture<Result>();
+                            error.complete(new Result("", Outcome.ERROR, 0));
+                            pending.add(error);
+                            continue;
+                        }
+                        if (board == null)
+                            break;
+                        pending.add(executor.submit(() -> solve(board)));
+
+                        while (pending.size() >= window || (!pending.isEmpty() && pending.peek().isDone()))
+                            record(out, take(pending));
+                    }
+                }
+            }
+            while (!pending.isEmpty())
+                record(out, take(pending));
+        } finally {
+            executor.shutdownNow();
+        }
+        final var elapsed = System.nanoTime() - start;
+
+        summarize(elapsed);
+        return counts.get(Outcome.ERROR) == 0;
+    }
+
+    private static BufferedReader open(final String input) throws IOException {
+        return input.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(input));
+    }
+
+    private static Result take(final Deque<Future<Result>> pending) {
+        try {
+            return pending.remove().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            System.err.println("Solver failed: " + ex.getCause());
+            return new Result("", Outcome.ERROR, 0);
+        }
+    }
+
+    private void record(final PrintWriter out, final Result result) {
+        counts.merge(result.outcome, 1L, Long::sum);
+        if (result.outcome != Outcome.ERROR) {
+            if (numLatencies == latencies.length)
+                latencies = Arrays.copyOf(latencies, 2 * numLatencies);
+            latencies[numLatencies++] = result.nanos;
+        }
+        if (!quiet)
+            out.append(result.line).append('\t').append(result.outcome.toString()).append('\n');
+    }
+
+    /**
+     * Solve a single puzzle with the configured backend.
+     * @param board the puzzle, which is overwritten by its solution if it has one
+     * @return the result
+     */
+    private Result solve(final GenSudokuBoard<Integer> board) {
+        final var start = System.nanoTime();
+        var outcome = Outcome.STUCK;
+
+        if (backend != Backend.CP) {
+            final var logical = new LogicalSolver(dimensionality);
+            final var givens = board.codes();
+            switch (logical.solve(givens)) {
+                case SOLVED:
+                    final var cells = logical.getCells();
+                    final var side = dimensionality * dimensionality;
+                    for (var i = 0; i < cells.length; ++i)
+                        board.set(i / side, i % side, board.getAlphabet().symbol(cells[i]));
+                    outcome = Outcome.SOLVED;
+                    break;
+                case CONTRADICTION:
+                    outcome = Outcome.UNSOLVABLE;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (backend == Backend.CP || (backend == Backend.HYBRID && outcome == Outcome.STUCK)) {
+            final var solver = GenSudokuCP.of(board);
+            if (timeLimit > 0)
+                solver.setTimeLimit(Math.max(1, timeLimit - (System.nanoTime() - start) / 1_000_000));
+            solver.setNodeLimit(nodeLimit);
+            solver.solve();
+            outcome = Outcome.of(solver.getStatus());
+        }
+
+        return new Result(BoardFormat.toLine(board), outcome, System.nanoTime() - start);
+    }
+
+    /**
+     * Write the summary to standard error.
+     */
+    private void summarize(final long elapsed) {
+        final var sorted = Arrays.copyOf(latencies, numLatencies);
+        Arrays.sort(sorted);
+        final var total = counts.values().stream().mapToLong(Long::longValue).sum();
+        final var seconds = elapsed / 1e9;
+        final var err = System.err;
+        err.printf("puzzles:    %d in %.3f s with %d threads (%s backend)%n",
+                total, seconds, threads, backend.name().toLowerCase(Locale.ROOT));
+        err.printf("throughput: %.1f puzzles/s%n", seconds > 0 ? total / seconds : 0.0);
+        err.printf("latency:    p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 100));
+        final var summary = new StringJoiner(", ", "outcomes:   ", "");
+        counts.forEach((outcome, count) -> summary.add(outcome + " " + count));
+        err.println(summary);
+    }
+
+    /**
+     * The nearest-rank percentile of sorted latencies, in milliseconds.
+     */
+    static double percentile(final long[] sorted, final int p) {
+        if (sorted.length == 0)
+            return 0.0;
+        final var rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
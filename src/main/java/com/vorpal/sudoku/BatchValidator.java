@@ -0,0 +1,222 @@
+// BatchValidator.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Checks whether large batches of boards of the same dimensionality are valid, complete, and solved, for ingest
+ * stages that must screen many boards before any of them are solved.
+ *
+ * Rather than checking the boards one at a time, the codes of the boards are packed into blocks of BLOCK_SIZE boards,
+ * laid out cell by cell: the code of cell c of the b-th board of a block is at index c * BLOCK_SIZE + b. Each row,
+ * column, and section is then checked for every board of a block at once, by a loop over the boards that keeps,
+ * for each board, a bitmask of the codes it has seen in the unit. These loops have a fixed trip count, no branches,
+ * and only use shifts, ands, and ors on contiguous arrays, so that the JIT compiles them to SIMD instructions.
+ *
+ * Blocks are independent, so they are checked in parallel.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BatchValidator {
+    /**
+     * The largest dimensionality supported: the codes of a unit must fit in the bits of an int.
+     */
+    public static final int MAX_DIMENSIONALITY = 5;
+
+    // The number of boards in a block.
+    static final int BLOCK_SIZE = 256;
+
+    /**
+     * Which boards of a batch are valid, complete, and solved, as bitmaps indexed by the order the boards were added.
+     */
+    public static final class Result {
+        private final int size;
+        private final BitSet valid;
+        private final BitSet complete;
+        private final BitSet solved;
+
+        private Result(final int size, final BitSet valid, final BitSet complete, final BitSet solved) {
+            this.size = size;
+            this.valid = valid;
+            this.complete = complete;
+            this.solved = solved;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isValid(final int board) {
+            return valid.get(board);
+        }
+
+        public boolean isComplete(final int board) {
+            return complete.get(board);
+        }
+
+        public boolean isSolved(final int board) {
+            return solved.get(board);
+        }
+
+        /**
+         * The boards with no illegal placement of elements.
+         * @return a copy of the bitmap
+         */
+        public BitSet getValid() {
+            return (BitSet) valid.clone();
+        }
+
+        /**
+         * The boards with no empty cells.
+         * @return a copy of the bitmap
+         */
+        public BitSet getComplete() {
+            return (BitSet) complete.clone();
+        }
+
+        /**
+         * The boards that are both valid and complete.
+         * @return a copy of the bitmap
+         */
+        public BitSet getSolved() {
+            return (BitSet) solved.clone();
+        }
+    }
+
+    private final int dimensionality;
+    private final int numCells;
+
+    // The cells of each row, column, and section, shared with every board of the dimensionality.
+    private final int[][] units;
+
+    // The blocks of boards, the last of which may be partially filled.
+    private final List<byte[]> blocks = new ArrayList<>();
+    private int size;
+
+    /**
+     * Create an empty batch.
+     * @param dimensionality the dimensionality of the boards
+     */
+    public BatchValidator(final int dimensionality) {
+        if (dimensionality <= 0 || dimensionality > MAX_DIMENSIONALITY)
+            throw new IllegalArgumentException("dimensionality must be between 1 and " + MAX_DIMENSIONALITY);
+        this.dimensionality = dimensionality;
+        final var side = dimensionality * dimensionality;
+        numCells = side * side;
+
+        units = Geometry.of(dimensionality).units();
+    }
+
+    /**
+     * Add a board to the batch.
+     * @param board the board, which must have the dimensionality of the batch
+     * @return the index of the board in the batch
+     */
+    public int add(final GenSudokuBoard<?> board) {
+        return add(board.getDimensionality(), board.codes());
+    }
+
+    /**
+     * Add a snapshot of a board to the batch.
+     * @param snapshot the snapshot, which must have the dimensionality of the batch
+     * @return the index of the board in the batch
+     */
+    public int add(final BoardSnapshot<?> snapshot) {
+        return add(snapshot.getDimensionality(), snapshot.getCells());
+    }
+
+    private int add(final int boardDimensionality, final int[] cells) {
+        if (boardDimensionality != dimensionality)
+            throw new IllegalArgumentException("board must have dimensionality " + dimensionality);
+
+        final var b = size % BLOCK_SIZE;
+        if (b == 0)
+            blocks.add(new byte[numCells * BLOCK_SIZE]);
+        final var block = blocks.get(blocks.size() - 1);
+        for (var cell = 0; cell < numCells; ++cell)
+            block[cell * BLOCK_SIZE + b] = (byte) cells[cell];
+        return size++;
+    }
+
+    /**
+     * The number of boards in the batch.
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all the boards from the batch.
+     */
+    public void clear() {
+        blocks.clear();
+        size = 0;
+    }
+
+    /**
+     * Check every board in the batch.
+     * @return the result
+     */
+    public Result validate() {
+        final var valid = new BitSet(size);
+        final var complete = new BitSet(size);
+        final var solved = new BitSet(size);
+
+        IntStream.range(0, blocks.size()).parallel().forEach(i -> {
+            final var invalid = new int[BLOCK_SIZE];
+            final var seenInAll = new int[BLOCK_SIZE];
+            check(blocks.get(i), invalid, seenInAll);
+
+            final var count = Math.min(BLOCK_SIZE, size - i * BLOCK_SIZE);
+            final var blockValid = new BitSet(count);
+            final var blockComplete = new BitSet(count);
+            for (var b = 0; b < count; ++b) {
+                // Bit 0 is the empty cell, which may appear any number of times, but makes the board incomplete.
+                if ((invalid[b] & ~1) == 0)
+                    blockValid.set(b);
+                if ((seenInAll[b] & 1) == 0)
+                    blockComplete.set(b);
+            }
+            synchronized (valid) {
+                for (var b = blockValid.nextSetBit(0); b >= 0; b = blockValid.nextSetBit(b + 1))
+                    valid.set(i * BLOCK_SIZE + b);
+                for (var b = blockComplete.nextSetBit(0); b >= 0; b = blockComplete.nextSetBit(b + 1))
+                    complete.set(i * BLOCK_SIZE + b);
+            }
+        });
+
+        solved.or(valid);
+        solved.and(complete);
+        return new Result(size, valid, complete, solved);
+    }
+
+    /**
+     * Check every unit of each board in a block.
+     * @param block the block
+     * @param repeated for each board, the bitmask of the codes that appear more than once in some unit
+     * @param seen for each board, the bitmask of the codes that appear anywhere
+     */
+    private void check(final byte[] block, final int[] repeated, final int[] seen) {
+        final var inUnit = new int[BLOCK_SIZE];
+        for (final var unit : units) {
+            Arrays.fill(inUnit, 0);
+            for (final var cell : unit) {
+                final var base = cell * BLOCK_SIZE;
+                for (var b = 0; b < BLOCK_SIZE; ++b) {
+                    final var bit = 1 << block[base + b];
+                    repeated[b] |= inUnit[b] & bit;
+                    inUnit[b] |= bit;
+                }
+            }
+            for (var b = 0; b < BLOCK_SIZE; ++b)
+                seen[b] |= inUnit[b];
+        }
+    }
+}
@@ -0,0 +1,68 @@
+// Board.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+/**
+ * The operations common to everything that holds a Sudoku board: a GenSudokuBoard on the heap, and a view of a board
+ * in a BoardArena, so that code that reads, fills, or checks boards can be written once for both.
+ *
+ * The solvers need a GenSudokuBoard, as they keep it for writing the solution to. A view can be solved by copying it
+ * into one with copyTo, or thaw, and back with copyFrom.
+ * @param <T> the type of the symbols on the board
+ */
+@SuppressWarnings("WeakerAccess")
+public interface Board<T> {
+    /**
+     * Get the value at a position on the board.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the value at that position
+     */
+    T get(int x, int y);
+
+    /**
+     * Set the value at a position on the board.
+     * Note that this method does not check if setting the position results in a legal configuration.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param value the value, or the zero element to empty the position
+     */
+    void set(int x, int y, T value);
+
+    /**
+     * Set every cell of the board to zero.
+     */
+    void clear();
+
+    /**
+     * Check if the board is complete, i.e. there are no zero elements.
+     * @return true if complete, and false otherwise
+     */
+    boolean isComplete();
+
+    /**
+     * Check if the board is valid, i.e. there is no illegal placement of elements.
+     * @return true if valid, and false otherwise
+     */
+    boolean isValid();
+
+    /**
+     * Check if the board has been solved, i.e. the board is both complete and valid.
+     * @return true if solved, and false otherwise
+     */
+    boolean isSolved();
+
+    /**
+     * Make the board's contents the same as a snapshot with the same dimensionality and symbols.
+     * @param snapshot the snapshot
+     */
+    void copyFrom(BoardSnapshot<T> snapshot);
+
+    /**
+     * Take an immutable snapshot of the contents of the board.
+     * @return the snapshot
+     */
+    BoardSnapshot<T> freeze();
+}
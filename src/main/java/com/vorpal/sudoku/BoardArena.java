@@ -0,0 +1,443 @@
+// BoardArena.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A growable array of boards of the same dimensionality and symbols, stored contiguously off the heap, for holding
+ * millions of puzzles without the memory and garbage collection costs of millions of board objects.
+ *
+ * Each board takes one byte per cell, holding the code of its symbol (see Alphabet), so for instance ten million
+ * 9x9 boards take 810MB of native memory and almost nothing on the heap. The boards are stored in direct buffers of
+ * up to 64MB each. Boards are accessed through a View, a flyweight Board that can be moved from board to board, so
+ * that iterating over an arena need not allocate anything. Code written against Board works on views and on
+ * GenSudokuBoards alike; the solvers need a GenSudokuBoard, which a view can be copied into and back from.
+ *
+ * An arena can be saved to a file, and loaded from one by mapping it into memory: the boards of a loaded arena are
+ * read from the file on demand by the operating system, and changes to them are private to the arena, which copies
+ * each chunk of the file into native memory the first time one of its boards is modified.
+ *
+ * An arena is not thread-safe, although any number of threads may read from one that is not being modified.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BoardArena<T> {
+    // The largest dimensionality supported: the codes of a unit must fit in the bits of a long.
+    static final int MAX_DIMENSIONALITY = 7;
+
+    // A file starts with a header of HEADER_SIZE bytes, followed by the boards.
+    private static final long MAGIC = 0x5355444f4b554152L; // SUDOKUAR
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int DIMENSIONALITY_OFFSET = 12;
+    private static final int SIZE_OFFSET = 16;
+
+    private static final int MAX_CHUNK_BYTES = 1 << 26;
+
+    private final int dimensionality;
+    private final int side;
+    private final int boardBytes;
+    private final Alphabet<T> alphabet;
+    private final int boardsPerChunk;
+
+    // The cells of each row, column, and section, shared with every board of the dimensionality.
+    private final int[][] units;
+
+    // The chunks of boards, all of which have room for boardsPerChunk boards.
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int size;
+
+    /**
+     * Create an empty arena for boards with the dimensionality and symbols of a template board.
+     * @param template the template, whose contents are ignored
+     */
+    public BoardArena(final GenSudokuBoard<T> template) {
+        this(template.getDimensionality(), template.getAlphabet());
+    }
+
+    private BoardArena(final int dimensionality, final Alphabet<T> alphabet) {
+        if (dimensionality > MAX_DIMENSIONALITY)
+            throw new IllegalArgumentException("dimensionality must be at most " + MAX_DIMENSIONALITY);
+        this.dimensionality = dimensionality;
+        this.alphabet = alphabet;
+        side = dimensionality * dimensionality;
+        boardBytes = side * side;
+        boardsPerChunk = Math.max(1, MAX_CHUNK_BYTES / boardBytes);
+
+        units = Geometry.of(dimensionality).units();
+    }
+
+    /**
+     * The number of boards in the arena.
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an empty board to the end of the arena.
+     * @return the index of the board
+     */
+    public int allocate() {
+        if (size == Integer.MAX_VALUE)
+            throw new IllegalStateException("arena is full");
+        if (size == chunks.size() * boardsPerChunk)
+            chunks.add(ByteBuffer.allocateDirect(boardsPerChunk * boardBytes));
+        return size++;
+    }
+
+    /**
+     * Add a copy of a board to the end of the arena.
+     * @param board the board, which must have the dimensionality and symbols of the arena
+     * @return the index of the board
+     */
+    public int add(final GenSudokuBoard<T> board) {
+        checkCompatible(board.getDimensionality(), board.getAlphabet());
+        final var index = allocate();
+        write(index, board.codes());
+        return index;
+    }
+
+    /**
+     * Add a copy of a snapshot to the end of the arena.
+     * @param snapshot the snapshot, which must have the dimensionality and symbols of the arena
+     * @return the index of the board
+     */
+    public int add(final BoardSnapshot<T> snapshot) {
+        checkCompatible(snapshot.getDimensionality(), snapshot.getAlphabet());
+        final var index = allocate();
+        write(index, snapshot.getCells());
+        return index;
+    }
+
+    /**
+     * Create a view of a board in the arena.
+     * @param index the index of the board
+     * @return the view
+     */
+    public View view(final int index) {
+        return new View().moveTo(index);
+    }
+
+    /**
+     * Take a snapshot of a board in the arena.
+     * @param index the index of the board
+     * @return the snapshot
+     */
+    public BoardSnapshot<T> snapshot(final int index) {
+        return new BoardSnapshot<>(dimensionality, alphabet, read(index, new int[boardBytes]));
+    }
+
+    private void checkCompatible(final int otherDimensionality, final Alphabet<?> otherAlphabet) {
+        if (otherDimensionality != dimensionality || otherAlphabet != alphabet)
+            throw new IllegalArgumentException("arena requires boards with the same parameters");
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Illegal board index: " + index);
+    }
+
+    private ByteBuffer chunk(final int index) {
+        return chunks.get(index / boardsPerChunk);
+    }
+
+    /**
+     * Find the chunk holding a board in order to modify it. Chunks mapped from a file are read-only, so the first
+     * time one is modified, it is copied into native memory.
+     * @param index the index of the board
+     * @return the chunk
+     */
+    private ByteBuffer writableChunk(final int index) {
+        final var chunk = chunk(index);
+        if (!chunk.isReadOnly())
+            return chunk;
+        final var copy = ByteBuffer.allocateDirect(chunk.capacity());
+        copy.put(chunk.duplicate().clear()).clear();
+        chunks.set(index / boardsPerChunk, copy);
+        return copy;
+    }
+
+    private int offset(final int index) {
+        return (index % boardsPerChunk) * boardBytes;
+    }
+
+    private int[] read(final int index, final int[] cells) {
+        checkIndex(index);
+        final var chunk = chunk(index);
+        final var offset = offset(index);
+        for (var i = 0; i < boardBytes; ++i)
+            cells[i] = chunk.get(offset + i);
+        return cells;
+    }
+
+    private void write(final int index, final int[] cells) {
+        checkIndex(index);
+        final var chunk = writableChunk(index);
+        final var offset = offset(index);
+        for (var i = 0; i < boardBytes; ++i)
+            chunk.put(offset + i, (byte) cells[i]);
+    }
+
+    /**
+     * Save the arena to a file, replacing its contents.
+     * The arena is written to a temporary file in the same directory, which is then moved over the file, so the file
+     * may be the one the arena was loaded from: truncating it in place would destroy the boards being saved.
+     * Since the codes of the symbols are saved rather than the symbols, the file should only be loaded with a
+     * template over the same symbols, and the numbering of the symbols must be stable, as it is for boards over
+     * Comparable symbols such as SudokuBoard.
+     * @param path the file
+     * @throws IOException if the file cannot be written
+     * @throws IllegalStateException if the numbering of the symbols of the arena is not stable
+     */
+    public void save(final Path path) throws IOException {
+        if (!alphabet.isStable())
+            throw new IllegalStateException("arena symbols are not numbered the same way in every run");
+        final var directory = path.toAbsolutePath().getParent();
+        final var temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            write(temporary);
+            try {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void write(final Path path) throws IOException {
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            header.putLong(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, VERSION);
+            header.putInt(DIMENSIONALITY_OFFSET, dimensionality);
+            header.putLong(SIZE_OFFSET, size);
+            while (header.hasRemaining())
+                channel.write(header);
+
+            var remaining = (long) size * boardBytes;
+            var position = (long) HEADER_SIZE;
+            for (var i = 0; remaining > 0; ++i) {
+                final var bytes = (int) Math.min(remaining, (long) boardsPerChunk * boardBytes);
+                final var target = channel.map(FileChannel.MapMode.READ_WRITE, position, bytes);
+                final var source = chunks.get(i).duplicate();
+                source.clear().limit(bytes);
+                target.put(source);
+                target.force();
+                position += bytes;
+                remaining -= bytes;
+            }
+        }
+    }
+
+    /**
+     * Load an arena from a file saved by save, by mapping the file into memory.
+     * The file must not be modified while the arena is in use.
+     * @param path the file
+     * @param template a board with the dimensionality and symbols of the boards in the file
+     * @return the arena
+     * @throws IOException if the file cannot be read, or does not hold boards of the template's dimensionality
+     * @throws IllegalArgumentException if the numbering of the symbols of the template is not stable
+     */
+    public static <T> BoardArena<T> load(final Path path, final GenSudokuBoard<T> template) throws IOException {
+        if (!template.getAlphabet().isStable())
+            throw new IllegalArgumentException("template symbols are not numbered the same way in every run");
+        final var arena = new BoardArena<>(template);
+        try (final var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final var header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining())
+                if (channel.read(header) < 0)
+                    throw new IOException(path + " is not a board arena");
+            if (header.getLong(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+                throw new IOException(path + " is not a board arena");
+            if (header.getInt(DIMENSIONALITY_OFFSET) != arena.dimensionality)
+                throw new IOException(path + " does not hold boards of dimensionality " + arena.dimensionality);
+            final var size = header.getLong(SIZE_OFFSET);
+            if (size < 0 || size > Integer.MAX_VALUE || HEADER_SIZE + size * arena.boardBytes > channel.size())
+                throw new IOException(path + " is truncated");
+
+            // Every chunk must have room for boardsPerChunk boards, so the last, partial one is copied.
+            final var chunkBytes = (long) arena.boardsPerChunk * arena.boardBytes;
+            var remaining = size * arena.boardBytes;
+            var position = (long) HEADER_SIZE;
+            while (remaining > 0) {
+                final var bytes = Math.min(remaining, chunkBytes);
+                final var mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+                if (bytes == chunkBytes) {
+                    arena.chunks.add(mapped);
+                } else {
+                    final var chunk = ByteBuffer.allocateDirect((int) chunkBytes);
+                    chunk.put(mapped).clear();
+                    arena.chunks.add(chunk);
+                }
+                position += bytes;
+                remaining -= bytes;
+            }
+            arena.size = (int) size;
+        }
+        return arena;
+    }
+
+    /**
+     * A flyweight view of one board of the arena, through which it can be read and modified in place.
+     * A view can be moved to another board of the arena, so that a single view can visit every board.
+     */
+    public final class View implements Board<T> {
+        private int offset;
+        private int index;
+
+        private View() {}
+
+        /**
+         * Move the view to another board.
+         * @param index the index of the board
+         * @return this view
+         */
+        public View moveTo(final int index) {
+            checkIndex(index);
+            this.index = index;
+            offset = offset(index);
+            return this;
+        }
+
+        /**
+         * The index of the board being viewed.
+         * @return the index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public T get(final int x, final int y) {
+            return alphabet.symbol(chunk(index).get(cell(x, y)));
+        }
+
+        @Override
+        public void set(final int x, final int y, final T value) {
+            final var code = alphabet.code(value);
+            if (code < 0)
+                throw new IllegalArgumentException("Value not legal: " + value);
+            writableChunk(index).put(cell(x, y), (byte) code);
+        }
+
+        private int cell(final int x, final int y) {
+            if (x < 0 || x >= side || y < 0 || y >= side)
+                throw new IllegalArgumentException(String.format("Illegal coordinates: (%d,%d)", x, y));
+            return offset + x * side + y;
+        }
+
+        /**
+         * Set every cell of the board to zero.
+         */
+        @Override
+        public void clear() {
+            final var chunk = writableChunk(index);
+            for (var i = 0; i < boardBytes; ++i)
+                chunk.put(offset + i, (byte) 0);
+        }
+
+        /**
+         * Check if the board is complete, i.e. there are no zero elements.
+         * @return true if complete, and false otherwise
+         */
+        @Override
+        public boolean isComplete() {
+            final var chunk = chunk(index);
+            for (var i = 0; i < boardBytes; ++i)
+                if (chunk.get(offset + i) == 0)
+                    return false;
+            return true;
+        }
+
+        /**
+         * Check if the board is valid, i.e. there is no illegal placement of elements.
+         * @return true if valid, and false otherwise
+         */
+        @Override
+        public boolean isValid() {
+            final var chunk = chunk(index);
+            for (final var unit : units) {
+                var seen = 0L;
+                for (final var cell : unit) {
+                    final var bit = 1L << chunk.get(offset + cell);
+                    if ((seen & bit) != 0 && bit != 1L)
+                        return false;
+                    seen |= bit;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Check if the board has been solved, i.e. the board is both complete and valid.
+         * @return true if solved, and false otherwise
+         */
+        @Override
+        public boolean isSolved() {
+            return isComplete() && isValid();
+        }
+
+        /**
+         * Copy the board into a GenSudokuBoard.
+         * @param board the board, which must have the dimensionality and symbols of the arena
+         */
+        public void copyTo(final GenSudokuBoard<T> board) {
+            board.copyFrom(freeze());
+        }
+
+        /**
+         * Copy a GenSudokuBoard into the board.
+         * @param board the board, which must have the dimensionality and symbols of the arena
+         */
+        public void copyFrom(final GenSudokuBoard<T> board) {
+            checkCompatible(board.getDimensionality(), board.getAlphabet());
+            write(index, board.codes());
+        }
+
+        /**
+         * Copy a snapshot into the board.
+         * @param snapshot the snapshot, which must have the dimensionality and symbols of the arena
+         */
+        @Override
+        public void copyFrom(final BoardSnapshot<T> snapshot) {
+            checkCompatible(snapshot.getDimensionality(), snapshot.getAlphabet());
+            write(index, snapshot.getCells());
+        }
+
+        /**
+         * Take a snapshot of the board.
+         * @return the snapshot
+         */
+        @Override
+        public BoardSnapshot<T> freeze() {
+            return snapshot(index);
+        }
+
+        /**
+         * Copy the board into a new GenSudokuBoard.
+         * @return the board
+         */
+        public GenSudokuBoard<T> thaw() {
+            return freeze().thaw();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+// BoardCodec.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+/**
+ * Packs the codes of the cells of a board into as few bytes as possible, and unpacks them again.
+ * Every cell takes the number of bits needed to represent the largest code, i.e. 4 bits for a 9x9 board,
+ * so a 9x9 board packs into 41 bytes.
+ *
+ * The packed encoding depends only on the codes, so it is stable between runs as long as the numbering of
+ * the symbols is: see Alphabet.
+ */
+final class BoardCodec {
+    private BoardCodec() {}
+
+    /**
+     * The number of bits needed to store a cell of a board of the given dimensionality.
+     * @param dimensionality the dimensionality of the board
+     * @return the number of bits per cell
+     */
+    static int bitsPerCell(final int dimensionality) {
+        return 32 - Integer.numberOfLeadingZeros(dimensionality * dimensionality);
+    }
+
+    /**
+     * The number of bytes in the packed encoding of a board of the given dimensionality.
+     * @param dimensionality the dimensionality of the board
+     * @return the size of the encoding in bytes
+     */
+    static int packedSize(final int dimensionality) {
+        final var side = dimensionality * dimensionality;
+        return (side * side * bitsPerCell(dimensionality) + 7) / 8;
+    }
+
+    /**
+     * Pack the codes of a board into an array.
+     * @param dimensionality the dimensionality of the board
+     * @param cells the codes of the cells
+     * @param dst the destination array, which must have room for packedSize(dimensionality) bytes at off
+     * @param off the offset into dst
+     */
+    static void pack(final int dimensionality, final int[] cells, final byte[] dst, final int off) {
+        final var bits = bitsPerCell(dimensionality);
+        final var size = packedSize(dimensionality);
+        var acc = 0L;
+        var accBits = 0;
+        var pos = off;
+        for (final var code : cells) {
+            acc = (acc << bits) | code;
+            accBits += bits;
+            while (accBits >= 8) {
+                accBits -= 8;
+                dst[pos++] = (byte) (acc >>> accBits);
+            }
+        }
+        if (accBits > 0)
+            dst[pos++] = (byte) (acc << (8 - accBits));
+        assert pos == off + size;
+    }
+
+    /**
+     * Unpack the codes of a board from an array.
+     * @param dimensionality the dimensionality of the board
+     * @param src the source array, which holds packedSize(dimensionality) bytes at off
+     * @param off the offset into src
+     * @param cells the array into which to write the codes
+     */
+    static void unpack(final int dimensionality, final byte[] src, final int off, final int[] cells) {
+        final var bits = bitsPerCell(dimensionality);
+        final var mask = (1 << bits) - 1;
+        var acc = 0L;
+        var accBits = 0;
+        var pos = off;
+        for (var i = 0; i < cells.length; ++i) {
+            while (accBits < bits) {
+                acc = (acc << 8) | (src[pos++] & 0xff);
+                accBits += 8;
+            }
+            accBits -= bits;
+            cells[i] = (int) (acc >>> accBits) & mask;
+        }
+    }
+
+    /**
+     * A 64 bit hash of a range of bytes, which, unlike Arrays.hashCode, is well mixed in its low bits.
+     * This is FNV-1a followed by the MurmurHash3 finalizer.
+     * @param bytes the array
+     * @param off the start of the range
+     * @param len the length of the range
+     * @return the hash
+     */
+    static long hash64(final byte[] bytes, final int off, final int len) {
+        var h = 0xcbf29ce484222325L;
+        for (var i = off; i < off + len; ++i) {
+            h ^= bytes[i] & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,285 @@
+// BoardFormat.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads and writes boards over the integers 1 through n^2, with 0 marking an empty cell, in the common text formats:
+ * 1. the line format, with one puzzle per line, e.g. 81 characters for a 9x9 board; and
+ * 2. the grid format, with one row per line, possibly decorated with separators such as | - +.
+ * Each line that holds any cells must thus hold either a row or a whole board.
+ *
+ * A cell is written as . if it is empty, as 1 through 9 for the values 1 to 9, and as A through Z for the values
+ * 10 to 35, so for instance a 16x16 board uses 1-9 and A-G. When reading, 0 also marks an empty cell, letters may
+ * be in either case, characters other than these are ignored, and # starts a comment that runs to the end of the line.
+ * A line holding a word with a letter that is not a value of the board, such as the "Grid 01" headers of the
+ * Project Euler puzzles, is a header, and is ignored as a whole.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BoardFormat {
+    // The largest value that can be written as a single character.
+    static final int MAX_VALUE = 35;
+
+    private BoardFormat() {}
+
+    /**
+     * Create an empty board of the given dimensionality over the integers 1 through dimensionality^2.
+     * @param dimensionality the dimensionality
+     * @return a SudokuBoard if the dimensionality is 3, and otherwise a GenSudokuBoard
+     */
+    public static GenSudokuBoard<Integer> newBoard(final int dimensionality) {
+        if (dimensionality == 3)
+            return new SudokuBoard();
+        if (dimensionality <= 0 || dimensionality * dimensionality > MAX_VALUE)
+            throw new IllegalArgumentException("dimensionality must be between 1 and 5");
+        final var side = dimensionality * dimensionality;
+        return new GenSudokuBoard<>(dimensionality, 0,
+                IntStream.rangeClosed(1, side).boxed().collect(Collectors.toSet()));
+    }
+
+    /**
+     * Read a single board in the line format, inferring its dimensionality from the number of cells.
+     * @param line the board
+     * @return the board
+     * @throws IllegalArgumentException if the line does not hold a board
+     */
+    public static GenSudokuBoard<Integer> fromLine(final String line) {
+        var cells = 0;
+        for (var i = 0; i < line.length(); ++i)
+            if (value(line.charAt(i)) >= 0)
+                ++cells;
+        final var dimensionality = (int) Math.round(Math.sqrt(Math.sqrt(cells)));
+        if (dimensionality == 0 || dimensionality * dimensionality * dimensionality * dimensionality != cells
+                || dimensionality * dimensionality > MAX_VALUE)
+            throw new IllegalArgumentException("Not a board: " + cells + " cells");
+        try (final var reader = new Reader(new BufferedReader(new StringReader(line)), dimensionality)) {
+            return reader.next();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Write a board in the line format.
+     * @param board the board
+     * @return the board as a single line
+     */
+    public static String toLine(final GenSudokuBoard<Integer> board) {
+        final var side = board.getDimensionality() * board.getDimensionality();
+        final var line = new StringBuilder(side * side);
+        for (var x = 0; x < side; ++x)
+            for (var y = 0; y < side; ++y)
+                line.append(symbol(board.get(x, y)));
+        return line.toString();
+    }
+
+    /**
+     * Write a board in the grid format, with separators between the sections.
+     * @param board the board
+     * @return the board as a grid, with each line terminated by a newline
+     */
+    public static String toGrid(final GenSudokuBoard<Integer> board) {
+        final var dimensionality = board.getDimensionality();
+        final var side = dimensionality * dimensionality;
+
+        final var separator = new StringBuilder();
+        for (var i = 0; i < dimensionality; ++i) {
+            if (i > 0)
+                separator.append('+');
+            for (var j = 0; j < 2 * dimensionality + 1; ++j)
+                separator.append('-');
+        }
+        separator.append('\n');
+
+        final var grid = new StringBuilder();
+        for (var x = 0; x < side; ++x) {
+            if (x > 0 && x % dimensionality == 0)
+                grid.append(separator);
+            for (var y = 0; y < side; ++y) {
+                if (y > 0 && y % dimensionality == 0)
+                    grid.append(" |");
+                grid.append(' ').append(symbol(board.get(x, y)));
+            }
+            grid.append(" \n");
+        }
+        return grid.toString();
+    }
+
+    /**
+     * The character representing a value.
+     * @param value the value, in [0, MAX_VALUE]
+     * @return the character
+     */
+    static char symbol(final int value) {
+        if (value == 0)
+            return '.';
+        return value <= 9 ? (char) ('0' + value) : (char) ('A' + value - 10);
+    }
+
+    /**
+     * The value represented by a character.
+     * @param c the character
+     * @return the value, or -1 if the character does not represent a cell
+     */
+    static int value(final char c) {
+        if (c == '.' || c == '0')
+            return 0;
+        if (c >= '1' && c <= '9')
+            return c - '0';
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A' + 10;
+        if (c >= 'a' && c <= 'z')
+            return c - 'a' + 10;
+        return -1;
+    }
+
+    /**
+     * Reads a sequence of boards, in either format, from a text stream.
+     * Cells are accumulated line by line, and a board is complete as soon as it has a cell for every position.
+     */
+    public static final class Reader implements Closeable {
+        private final BufferedReader in;
+        private final int dimensionality;
+        private final int numCells;
+
+        // The values of the board being read, and how many have been read so far.
+        private final int[] values;
+        private int count;
+
+        // The number of rows of a malformed board that are still to be skipped.
+        private int skip;
+
+        private int lineNumber;
+
+        public Reader(final BufferedReader in, final int dimensionality) {
+            this.in = in;
+            this.dimensionality = dimensionality;
+            final var side = dimensionality * dimensionality;
+            if (dimensionality <= 0 || side > MAX_VALUE)
+                throw new IllegalArgumentException("dimensionality must be between 1 and 5");
+            numCells = side * side;
+            values = new int[numCells];
+        }
+
+        /**
+         * Read the next board.
+         * If a board is malformed, the rest of its rows are skipped, up to a blank line, a header, or a board on a
+         * single line, so that reading can continue with the next board.
+         * @return the board, or null if there are no more boards
+         * @throws IOException if the stream cannot be read
+         * @throws IllegalArgumentException if the board is malformed
+         */
+        public GenSudokuBoard<Integer> next() throws IOException {
+            final var side = dimensionality * dimensionality;
+            for (var line = in.readLine(); line != null; line = in.readLine()) {
+                ++lineNumber;
+                final var comment = line.indexOf('#');
+                final var end = comment < 0 ? line.length() : comment;
+                final var header = isHeader(line, end, side);
+                var cells = 0;
+                for (var i = 0; i < end && !header; ++i)
+                    if (value(line.charAt(i)) >= 0)
+                        ++cells;
+
+                if (skip > 0) {
+                    if (line.substring(0, end).trim().isEmpty() || header || cells > side) {
+                        skip = 0;
+                    } else {
+                        if (cells > 0)
+                            --skip;
+                        continue;
+                    }
+                }
+
+                if (header)
+                    continue;
+
+                final var start = count;
+                if (start + cells > numCells)
+                    throw malformed(start, cells, "too many cells");
+                for (var i = 0; i < end; ++i) {
+                    final var value = value(line.charAt(i));
+                    if (value < 0)
+                        continue;
+                    if (value > side)
+                        throw malformed(start, cells, "illegal value " + line.charAt(i));
+                    values[count++] = value;
+                }
+
+                // Each line must hold a whole row, or, at the start of a board, the whole board.
+                if (cells != 0 && cells != side && !(start == 0 && cells == numCells))
+                    throw malformed(start, cells, "expected " + side + " or " + numCells + " cells, but found "
+                            + cells);
+
+                if (count == numCells) {
+                    count = 0;
+                    final var board = newBoard(dimensionality);
+                    for (var idx = 0; idx < numCells; ++idx)
+                        board.set(idx / side, idx % side, values[idx]);
+                    return board;
+                }
+            }
+
+            if (count > 0) {
+                count = 0;
+                throw new IllegalArgumentException("Line " + lineNumber + ": incomplete board at end of input");
+            }
+            return null;
+        }
+
+        /**
+         * Determine if a line is a header rather than cells: that is, if it holds a word of two or more letters, one
+         * of which is not a value of the board. A single letter is taken to be a cell, even if it is illegal.
+         * @param line the line
+         * @param end the end of the line, excluding any comment
+         * @param side the largest value of the board
+         * @return true if the line is a header, and false otherwise
+         */
+        private static boolean isHeader(final String line, final int end, final int side) {
+            var length = 0;
+            var foreign = false;
+            for (var i = 0; i <= end; ++i) {
+                if (i < end && Character.isLetter(line.charAt(i))) {
+                    ++length;
+                    final var value = value(line.charAt(i));
+                    foreign |= value < 0 || value > side;
+                } else {
+                    if (length > 1 && foreign)
+                        return true;
+                    length = 0;
+                    foreign = false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Abandon the board being read, and arrange for the rest of its rows to be skipped, unless the malformed
+         * line held the whole board.
+         * @param start the number of cells of the board read before the malformed line
+         * @param cells the number of cells on the malformed line
+         * @param message what is wrong with the line
+         * @return the exception to throw
+         */
+        private IllegalArgumentException malformed(final int start, final int cells, final String message) {
+            final var side = dimensionality * dimensionality;
+            count = 0;
+            skip = start == 0 && cells > side ? 0 : side - start / side - 1;
+            return new IllegalArgumentException("Line " + lineNumber + ": " + message);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
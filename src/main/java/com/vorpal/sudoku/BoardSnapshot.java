@@ -0,0 +1,159 @@
+// BoardSnapshot.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the contents of a GenSudokuBoard.
+ *
+ * Snapshots are obtained from GenSudokuBoard.freeze, and can be turned back into boards using thaw.
+ * Both operations take constant time, as the contents are shared copy-on-write with the board.
+ * Snapshots are thread-safe, and their hash code is cached, so they are suitable for use as map keys.
+ * @param <T> the type of the symbols on the board
+ */
+@SuppressWarnings("WeakerAccess")
+public final class BoardSnapshot<T> implements Serializable {
+    private final int dimensionality;
+    private final int numDigits;
+    private final Alphabet<T> alphabet;
+
+    // The codes of the entries of the board: see GenSudokuBoard. This array is never modified, and the field is
+    // only assigned again by deserialization.
+    private int[] cells;
+
+    // The hash code, computed on first use. Like String, a racy computation is harmless here.
+    private transient int hash;
+
+    BoardSnapshot(final int dimensionality, final Alphabet<T> alphabet, final int[] cells) {
+        this.dimensionality = dimensionality;
+        this.numDigits = dimensionality * dimensionality;
+        this.alphabet = alphabet;
+        this.cells = cells;
+    }
+
+    /**
+     * Write the numbering of the symbols after the fields, so that the codes can be translated if the JVM reading
+     * the board numbers them differently.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(alphabet.getSymbols());
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        cells = alphabet.recode((List<?>) in.readObject(), cells);
+    }
+
+    /**
+     * Accessor for dimensionality.
+     * @return dimensionality
+     */
+    int getDimensionality() {
+        return dimensionality;
+    }
+
+    /**
+     * Accessor for the alphabet.
+     * @return alphabet
+     */
+    Alphabet<T> getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Accessor for the codes of the entries. The array must not be modified.
+     * @return the cells array
+     */
+    int[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Get the value at a position on the board.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the value at that position
+     */
+    public T get(final int x, final int y) {
+        if (x < 0 || x >= numDigits || y < 0 || y >= numDigits)
+            throw new IllegalArgumentException(String.format("Illegal coordinates: (%d,%d)", x, y));
+        return alphabet.symbol(cells[x * numDigits + y]);
+    }
+
+    /**
+     * Create a mutable board with the contents of this snapshot.
+     * This takes constant time: the contents are shared with the board until the board is first modified.
+     * @return a new board
+     */
+    @SuppressWarnings("unchecked")
+    public GenSudokuBoard<T> thaw() {
+        // A snapshot of a 9x9 board over the digits thaws into a SudokuBoard, with its faster checks.
+        if (alphabet == SudokuBoard.DIGITS)
+            return (GenSudokuBoard<T>) new SudokuBoard((BoardSnapshot<Integer>) this);
+        return new GenSudokuBoard<>(this);
+    }
+
+    /**
+     * Pack the contents of this snapshot into a compact byte array, e.g. for storage in a PuzzleIndex.
+     * A 9x9 board packs into 41 bytes.
+     * @return the packed encoding
+     */
+    public byte[] pack() {
+        final var packed = new byte[BoardCodec.packedSize(dimensionality)];
+        BoardCodec.pack(dimensionality, cells, packed, 0);
+        return packed;
+    }
+
+    /**
+     * Relabel the symbols of this snapshot so that they first appear, reading row by row, in the order of the
+     * alphabet. Two boards that differ only by a relabeling of their symbols have equal normalized snapshots.
+     * @return the normalized snapshot, which may be this snapshot
+     */
+    public BoardSnapshot<T> normalizeSymbols() {
+        final var relabel = new int[numDigits + 1];
+        var next = 1;
+        var identity = true;
+        for (final var code : cells)
+            if (code != 0 && relabel[code] == 0) {
+                identity &= code == next;
+                relabel[code] = next++;
+            }
+        if (identity)
+            return this;
+
+        final var normalized = new int[cells.length];
+        for (var i = 0; i < cells.length; ++i)
+            normalized[i] = relabel[cells[i]];
+        return new BoardSnapshot<>(dimensionality, alphabet, normalized);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BoardSnapshot)) return false;
+        BoardSnapshot<?> that = (BoardSnapshot<?>) o;
+        return dimensionality == that.dimensionality &&
+                alphabet == that.alphabet &&
+                hashCode() == that.hashCode() &&
+                Arrays.equals(cells, that.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        var h = hash;
+        if (h == 0) {
+            h = 31 * (31 * dimensionality + alphabet.hashCode()) + Arrays.hashCode(cells);
+            hash = h;
+        }
+        return h;
+    }
+}
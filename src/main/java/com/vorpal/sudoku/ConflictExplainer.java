@@ -0,0 +1,260 @@
+// ConflictExplainer.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Explains why a puzzle has no solution, by finding a minimal set of its givens that has no solution on its own:
+ * removing any one of them makes the rest solvable. Pointing out these givens tells the person who entered the
+ * puzzle where the mistake is.
+ *
+ * If two givens clash directly, i.e. the same value appears twice in a row, column, or section, they are the
+ * explanation, and no search is needed. Otherwise, the conflict is shrunk by deletion: starting with all the givens,
+ * which are known to have no solution, we try removing chunks of half the givens, then a quarter, and so on down
+ * to single givens, keeping each removal that leaves a set with no solution. Since any set containing one with no
+ * solution has none either, once no single given can be removed, the set is minimal.
+ *
+ * The probes of a round, one per chunk, run in parallel. Each worker reuses a single GenSudokuCP, which only needs
+ * the givens that differ from its previous probe added or removed. A time limit can be given, in which case the
+ * smallest conflict found in time is reported, and marked as possibly not minimal.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ConflictExplainer {
+    /**
+     * The explanation of a puzzle.
+     */
+    public static final class Explanation {
+        private final boolean infeasible;
+        private final boolean minimal;
+        private final List<int[]> conflict;
+        private final long probes;
+
+        private Explanation(final boolean infeasible, final boolean minimal, final List<int[]> conflict,
+                            final long probes) {
+            this.infeasible = infeasible;
+            this.minimal = minimal;
+            this.conflict = conflict;
+            this.probes = probes;
+        }
+
+        /**
+         * Only puzzles that have been shown to have no solution are explained.
+         * @return true if the puzzle has no solution, and false if it has one, or the time limit was reached first
+         */
+        public boolean isInfeasible() {
+            return infeasible;
+        }
+
+        /**
+         * Check if the conflict is minimal, i.e. removing any one of its givens leaves a set that has a solution.
+         * @return true if the conflict is minimal, and false if the time limit was reached before this was shown
+         */
+        public boolean isMinimal() {
+            return minimal;
+        }
+
+        /**
+         * A set of givens that has no solution on its own.
+         * @return the coordinates {x, y} of the givens, row by row, or an empty list if the puzzle is not infeasible
+         */
+        public List<int[]> getConflict() {
+            return conflict;
+        }
+
+        /**
+         * The number of sets of givens whose solvability had to be determined.
+         * @return the number of probes
+         */
+        public long getProbes() {
+            return probes;
+        }
+    }
+
+    private final int parallelism;
+
+    /**
+     * Create an explainer that runs one probe per available processor at a time.
+     */
+    public ConflictExplainer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create an explainer.
+     * @param parallelism the number of probes to run at a time
+     */
+    public ConflictExplainer(final int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be a positive integer");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Explain why a puzzle has no solution. The board is not modified.
+     * @param board the puzzle
+     * @return the explanation
+     */
+    public <T> Explanation explain(final GenSudokuBoard<T> board) {
+        return explain(board, 0);
+    }
+
+    /**
+     * Explain why a puzzle has no solution, within a time limit. The board is not modified.
+     * @param board the puzzle
+     * @param timeLimitMillis the time limit in milliseconds, or 0 for no limit
+     * @return the explanation, which is the best found within the time limit
+     */
+    public <T> Explanation explain(final GenSudokuBoard<T> board, final long timeLimitMillis) {
+        if (timeLimitMillis < 0)
+            throw new IllegalArgumentException("time limit must be nonnegative");
+        final var deadline = System.nanoTime() + timeLimitMillis * 1_000_000;
+
+        final var snapshot = board.snapshot();
+        final var dimensionality = snapshot.getDimensionality();
+        final var side = dimensionality * dimensionality;
+        final var cells = snapshot.getCells();
+
+        final var clash = findClash(dimensionality, cells);
+        if (clash != null)
+            return explanation(true, true, side, clash, 0);
+
+        final var solvers = new ArrayList<GenSudokuCP<T>>(parallelism);
+        for (var w = 0; w < parallelism; ++w)
+            solvers.add(null);
+        final var probes = new AtomicLong();
+
+        // The conflict so far, which starts as all the givens.
+        var conflict = IntStream.range(0, cells.length).filter(i -> cells[i] != 0).toArray();
+        final var all = new BitSet(cells.length);
+        for (final var cell : conflict)
+            all.set(cell);
+        final var first = probe(solvers, 0, snapshot, all, deadline, timeLimitMillis);
+        probes.incrementAndGet();
+        if (first == null || first)
+            return explanation(false, false, side, new int[0], probes.get());
+
+        var minimal = true;
+        var chunkSize = Math.max(1, conflict.length / 2);
+        while (true) {
+            if (timeLimitMillis > 0 && System.nanoTime() - deadline >= 0) {
+                minimal = false;
+                break;
+            }
+
+            final var core = conflict;
+            final var size = chunkSize;
+            final var numChunks = (core.length + size - 1) / size;
+            final var next = new AtomicInteger();
+            final var removable = new AtomicInteger(Integer.MAX_VALUE);
+            final var unknown = new AtomicBoolean();
+
+            // Each worker probes chunks in order, skipping any after a chunk that is already known to be removable,
+            // so that the removable chunk with the lowest index is found, and the result does not depend on timing.
+            // The workers run in a pool of their own, as the common pool may have fewer threads than parallelism.
+            final var workers = Math.min(parallelism, numChunks);
+            final var threads = new ForkJoinPool(workers);
+            try {
+                threads.submit(() -> IntStream.range(0, workers).parallel().forEach(w -> {
+                    for (var c = next.getAndIncrement(); c < numChunks; c = next.getAndIncrement()) {
+                        if (c > removable.get())
+                            break;
+                        final var kept = new BitSet(cells.length);
+                        for (var i = 0; i < core.length; ++i)
+                            if (i / size != c)
+                                kept.set(core[i]);
+                        final var result = probe(solvers, w, snapshot, kept, deadline, timeLimitMillis);
+                        probes.incrementAndGet();
+                        if (result == null)
+                            unknown.set(true);
+                        else if (!result)
+                            removable.accumulateAndGet(c, Math::min);
+                    }
+                })).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while explaining a conflict", ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) ex.getCause();
+                throw new IllegalStateException(ex.getCause());
+            } finally {
+                threads.shutdown();
+            }
+
+            final var chunk = removable.get();
+            if (chunk != Integer.MAX_VALUE) {
+                conflict = IntStream.range(0, core.length).filter(i -> i / size != chunk).map(i -> core[i]).toArray();
+                chunkSize = Math.min(chunkSize, Math.max(1, conflict.length / 2));
+            } else if (chunkSize > 1) {
+                chunkSize /= 2;
+            } else {
+                // No single given can be removed, unless a probe was cut short.
+                minimal = !unknown.get();
+                break;
+            }
+        }
+        return explanation(true, minimal, side, conflict, probes.get());
+    }
+
+    /**
+     * Determine if a set of givens has a solution, using the solver of a worker.
+     * @return TRUE if it has one, FALSE if it has none, or null if the deadline was reached first
+     */
+    private static <T> Boolean probe(final List<GenSudokuCP<T>> solvers, final int worker,
+                                     final BoardSnapshot<T> snapshot, final BitSet kept,
+                                     final long deadline, final long timeLimitMillis) {
+        var solver = solvers.get(worker);
+        if (solver == null) {
+            solver = new GenSudokuCP<>(snapshot.thaw());
+            solvers.set(worker, solver);
+        }
+        if (timeLimitMillis > 0) {
+            final var remaining = (deadline - System.nanoTime()) / 1_000_000;
+            if (remaining <= 0)
+                return null;
+            solver.setTimeLimit(remaining);
+        }
+        return solver.isSatisfiableWithGivens(kept);
+    }
+
+    /**
+     * Find two givens with the same value in the same row, column, or section.
+     * @return the cells of the givens, or null if there are none
+     */
+    private static int[] findClash(final int dimensionality, final int[] cells) {
+        final var seen = new int[dimensionality * dimensionality + 1];
+        for (final var unit : Geometry.of(dimensionality).units()) {
+            Arrays.fill(seen, -1);
+            for (final var cell : unit) {
+                final var code = cells[cell];
+                if (code == 0)
+                    continue;
+                if (seen[code] >= 0)
+                    return new int[] {Math.min(seen[code], cell), Math.max(seen[code], cell)};
+                seen[code] = cell;
+            }
+        }
+        return null;
+    }
+
+    private static Explanation explanation(final boolean infeasible, final boolean minimal, final int side,
+                                           final int[] conflict, final long probes) {
+        final var coordinates = new ArrayList<int[]>(conflict.length);
+        for (final var cell : conflict)
+            coordinates.add(new int[] {cell / side, cell % side});
+        return new Explanation(infeasible, minimal, Collections.unmodifiableList(coordinates), probes);
+    }
+}
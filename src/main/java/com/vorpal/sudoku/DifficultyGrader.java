@@ -0,0 +1,216 @@
+// DifficultyGrader.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.stream.Stream;
+
+/**
+ * Grades the difficulty of puzzles by combining three measures, none of which depend on the machine:
+ * 1. the hardest Technique that a person would need to solve the puzzle (see LogicalSolver);
+ * 2. the effort the constraint program needs to find the solution and prove it unique (see GenSudokuCP); and
+ * 3. how few clues there are, and how unevenly they are spread over the rows, columns, and sections.
+ *
+ * The score is a weighted sum of these measures: with the default weights, puzzles that can be solved with
+ * singles alone score between roughly 2 and 4, and puzzles that require guessing score 6 or more.
+ *
+ * A grader is immutable, and thus thread-safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class DifficultyGrader {
+    /**
+     * The grade of a puzzle, along with the measures from which it was computed.
+     */
+    public static final class Grade {
+        private final GenSudokuCP.Status status;
+        private final double score;
+        private final Technique hardestTechnique;
+        private final long nodes;
+        private final long backtracks;
+        private final int clues;
+        private final int minCluesPerUnit;
+        private final double clueImbalance;
+
+        private Grade(final GenSudokuCP.Status status, final double score, final Technique hardestTechnique,
+                      final long nodes, final long backtracks,
+                      final int clues, final int minCluesPerUnit, final double clueImbalance) {
+            this.status = status;
+            this.score = score;
+            this.hardestTechnique = hardestTechnique;
+            this.nodes = nodes;
+            this.backtracks = backtracks;
+            this.clues = clues;
+            this.minCluesPerUnit = minCluesPerUnit;
+            this.clueImbalance = clueImbalance;
+        }
+
+        /**
+         * Only puzzles with a unique solution are graded.
+         * @return true if the puzzle has a unique solution, and false otherwise
+         */
+        public boolean isUnique() {
+            return status == GenSudokuCP.Status.UNIQUE;
+        }
+
+        /**
+         * The outcome of solving the puzzle, which tells why a puzzle that is not unique was not graded.
+         * @return the status
+         */
+        public GenSudokuCP.Status getStatus() {
+            return status;
+        }
+
+        /**
+         * The difficulty of the puzzle.
+         * @return the score, or NaN if the puzzle does not have a unique solution
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * The hardest technique needed to solve the puzzle, or GUESS if the techniques are not enough.
+         * @return the technique, or null if the puzzle has no empty cells
+         */
+        public Technique getHardestTechnique() {
+            return hardestTechnique;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getBacktracks() {
+            return backtracks;
+        }
+
+        public int getClues() {
+            return clues;
+        }
+
+        public int getMinCluesPerUnit() {
+            return minCluesPerUnit;
+        }
+
+        /**
+         * The coefficient of variation of the number of clues in each row, column, and section.
+         * @return the imbalance, which is 0 if the clues are spread perfectly evenly
+         */
+        public double getClueImbalance() {
+            return clueImbalance;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Grade(score=%.2f, status=%s, technique=%s, nodes=%d, backtracks=%d, clues=%d, "
+                            + "minCluesPerUnit=%d, clueImbalance=%.3f)",
+                    score, status, hardestTechnique, nodes, backtracks, clues, minCluesPerUnit, clueImbalance);
+        }
+    }
+
+    private final double techniqueWeight;
+    private final double searchWeight;
+    private final double sparsityWeight;
+    private final double imbalanceWeight;
+
+    /**
+     * Create a grader with the default weights.
+     */
+    public DifficultyGrader() {
+        this(1.0, 0.5, 2.0, 1.0);
+    }
+
+    /**
+     * Create a grader with the specified weights.
+     * @param techniqueWeight the weight of the rating of the hardest technique
+     * @param searchWeight the weight of log2(1 + backtracks needed by the constraint program)
+     * @param sparsityWeight the weight of the fraction of the cells that are empty
+     * @param imbalanceWeight the weight of the coefficient of variation of the clues per unit
+     */
+    public DifficultyGrader(final double techniqueWeight, final double searchWeight,
+                            final double sparsityWeight, final double imbalanceWeight) {
+        this.techniqueWeight = techniqueWeight;
+        this.searchWeight = searchWeight;
+        this.sparsityWeight = sparsityWeight;
+        this.imbalanceWeight = imbalanceWeight;
+    }
+
+    /**
+     * Grade a puzzle. The board is not modified.
+     * @param board the puzzle
+     * @return its grade
+     */
+    public <T> Grade grade(final GenSudokuBoard<T> board) {
+        return grade(board, 0);
+    }
+
+    /**
+     * Grade a puzzle, giving up if the constraint program takes too long. The board is not modified.
+     * @param board the puzzle
+     * @param timeLimitMillis the time limit for the constraint program in milliseconds, or 0 for no limit
+     * @return its grade, whose status is LIMIT_REACHED if the time limit was reached
+     */
+    public <T> Grade grade(final GenSudokuBoard<T> board, final long timeLimitMillis) {
+        // Freezing the board would make the caller's next modification of it copy its contents.
+        final var snapshot = board.snapshot();
+        final var dimensionality = snapshot.getDimensionality();
+        final var side = dimensionality * dimensionality;
+        final var cells = snapshot.getCells();
+
+        // Clue count and distribution.
+        final var cellUnits = Geometry.of(dimensionality).cellUnits();
+        final var perUnit = new int[3 * side];
+        var clues = 0;
+        for (var cell = 0; cell < cells.length; ++cell)
+            if (cells[cell] != 0) {
+                ++clues;
+                ++perUnit[cellUnits[3 * cell]];
+                ++perUnit[cellUnits[3 * cell + 1]];
+                ++perUnit[cellUnits[3 * cell + 2]];
+            }
+        var minPerUnit = side;
+        var sumSquares = 0.0;
+        for (final var n : perUnit) {
+            minPerUnit = Math.min(minPerUnit, n);
+            sumSquares += (double) n * n;
+        }
+        final var mean = (double) clues / side;
+        final var imbalance = clues == 0 ? 0.0
+                : Math.sqrt(Math.max(0.0, sumSquares / perUnit.length - mean * mean)) / mean;
+
+        // Search effort.
+        final var solver = new GenSudokuCP<>(snapshot.thaw());
+        solver.setTimeLimit(timeLimitMillis);
+        final var unique = solver.solve();
+        final var nodes = solver.getNodeCount();
+        final var backtracks = solver.getBacktrackCount();
+
+        // Hardest technique, which is only meaningful if the solution is unique.
+        Technique hardest = Technique.GUESS;
+        if (unique && dimensionality <= LogicalSolver.MAX_DIMENSIONALITY) {
+            final var logical = new LogicalSolver(dimensionality);
+            logical.solve(cells);
+            hardest = logical.getHardest();
+        }
+
+        final var score = !unique ? Double.NaN
+                : techniqueWeight * (hardest == null ? 0.0 : hardest.getRating())
+                + searchWeight * Math.log(1 + backtracks) / Math.log(2)
+                + sparsityWeight * (1.0 - (double) clues / cells.length)
+                + imbalanceWeight * imbalance;
+
+        return new Grade(solver.getStatus(), score, hardest, nodes, backtracks, clues, minPerUnit, imbalance);
+    }
+
+    /**
+     * Grade a stream of puzzles in parallel, as a stage of a pipeline.
+     * The grades are produced in the order of the puzzles, which must not be modified until they are graded.
+     * The work is done in the common ForkJoinPool, unless the terminal operation is invoked from within another.
+     * @param boards the puzzles
+     * @return their grades
+     */
+    public <T> Stream<Grade> gradeAll(final Stream<? extends GenSudokuBoard<T>> boards) {
+        return boards.parallel().map(this::grade);
+    }
+}
@@ -4,16 +4,20 @@
 
 package com.vorpal.sudoku;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * A generic Sudoku board of a specified dimensionality over a given set of symbols.
+ *
+ * Boards are mutable and not thread-safe: use freeze to obtain an immutable BoardSnapshot that can be shared
+ * between threads, and thaw (or copyFrom) to turn a snapshot back into a board.
  * @param <T>
  */
-public class GenSudokuBoard<T> implements Serializable {
+public class GenSudokuBoard<T> implements Board<T>, Serializable {
     // This is truly horrible. Why doesn't Java have pairs or tuples?
     public class Pair {
         final int x, y;
@@ -34,13 +38,20 @@ public class GenSudokuBoard<T> implements Serializable {
     // The dimensionality of the board, which is the square root of the number of digits.
     private final int dimensionality;
     private final int numDigits;
-    private final ArrayList<ArrayList<T>> board;
 
-    // The values of T which appear as valid entries on the board, minus the special zero element.
-    private final Set<T> validEntries;
+    // The symbols of the board, which number the zero element as 0 and the valid entries as 1 through numDigits.
+    private final Alphabet<T> alphabet;
 
-    // The special instance of T representing zero.
-    private final T zero;
+    // The codes of the entries of the board, stored row by row, i.e. (x, y) is at index x * numDigits + y.
+    // This array may be shared with snapshots of the board, in which case it is copied before it is modified.
+    private int[] cells;
+    private transient boolean shared;
+
+    // The hash code, cached until the board is next modified.
+    private transient int hash;
+
+    // The units of the board, shared by all boards of its dimensionality, and looked up again after deserialization.
+    private transient Geometry geometry;
 
     /**
      * Create a generic dimensionality^2 x dimensionality^2 Sudoku board with dimensionality x dimensionality subgrids.
@@ -58,21 +69,42 @@ public class GenSudokuBoard<T> implements Serializable {
 
         this.dimensionality = dimensionality;
         this.numDigits = dimensionality * dimensionality;
-        this.zero = zero;
-        this.validEntries = validEntries.stream()
-                .filter(x -> !zero.equals(x))
-                .collect(Collectors.toUnmodifiableSet());
+        this.alphabet = Alphabet.of(zero, validEntries);
 
         if (validEntries.size() != numDigits)
             throw new IllegalArgumentException("validEntries must contain " + numDigits + " digits");
 
-        board = new ArrayList<>(numDigits);
-        for (var x = 0; x < numDigits; ++x) {
-            final var empty = new ArrayList<T>(numDigits);
-            for (var y = 0; y < numDigits; ++y)
-                empty.add(y, zero);
-            board.add(empty);
-        }
+        cells = new int[numDigits * numDigits];
+        geometry = Geometry.of(dimensionality);
+    }
+
+    /**
+     * Create a board that shares the contents of a snapshot until it is first modified.
+     * @param snapshot the snapshot
+     */
+    GenSudokuBoard(final BoardSnapshot<T> snapshot) {
+        dimensionality = snapshot.getDimensionality();
+        numDigits = dimensionality * dimensionality;
+        alphabet = snapshot.getAlphabet();
+        cells = snapshot.getCells();
+        shared = true;
+        geometry = Geometry.of(dimensionality);
+    }
+
+    /**
+     * Write the numbering of the symbols after the fields, so that the codes can be translated if the JVM reading
+     * the board numbers them differently.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(alphabet.getSymbols());
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        cells = alphabet.recode((List<?>) in.readObject(), cells);
+        // The array may also belong to a snapshot that was written to the same stream.
+        shared = true;
     }
 
     /**
@@ -83,12 +115,25 @@ public class GenSudokuBoard<T> implements Serializable {
         return dimensionality;
     }
 
+    /**
+     * Accessor for the geometry, which lists the cells of the rows, columns, and sections.
+     * @return geometry
+     */
+    final Geometry getGeometry() {
+        var g = geometry;
+        if (g == null) {
+            g = Geometry.of(dimensionality);
+            geometry = g;
+        }
+        return g;
+    }
+
     /**
      * Accessor for zero element.
      * @return zero
      */
     final T getZero() {
-        return zero;
+        return alphabet.getZero();
     }
 
     /**
@@ -96,14 +141,24 @@ public class GenSudokuBoard<T> implements Serializable {
      * @return immutable set of valid entries
      */
     final Set<T> getValidEntries() {
-        return validEntries;
+        return alphabet.getValidEntries();
+    }
+
+    /**
+     * Accessor for the alphabet, which numbers the symbols of the board.
+     * @return alphabet
+     */
+    final Alphabet<T> getAlphabet() {
+        return alphabet;
     }
+
     /**
      * Completely clear the contents of the board, setting everything to zero.
      */
     @SuppressWarnings("WeakerAccess")
     public void clear() {
-        board.forEach(x -> Collections.fill(x, zero));
+        beforeWrite();
+        Arrays.fill(cells, 0);
     }
 
     /**
@@ -114,7 +169,7 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public T get(int x, int y) {
-        return get(new Pair(x, y));
+        return alphabet.symbol(cells[index(x, y)]);
     }
 
     /**
@@ -124,7 +179,7 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public T get(final Pair p) {
-        return board.get(p.x).get(p.y);
+        return alphabet.symbol(cells[p.x * numDigits + p.y]);
     }
 
     /**
@@ -136,7 +191,7 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public void set(final int x, final int y, final T value) {
-        set(new Pair(x, y), value);
+        setCode(index(x, y), code(value));
     }
 
     /**
@@ -147,9 +202,50 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public void set(final Pair p, final T value) {
-        if (!validEntries.contains(value) && !value.equals(zero))
+        setCode(p.x * numDigits + p.y, code(value));
+    }
+
+    /**
+     * Look up the code of a value, making sure that it may appear on the board.
+     * @param value the value
+     * @return its code
+     */
+    private int code(final T value) {
+        final var code = alphabet.code(value);
+        if (code < 0)
             throw new IllegalArgumentException("Value not legal: " + value);
-        board.get(p.x).set(p.y, value);
+        return code;
+    }
+
+    /**
+     * The codes of the cells, row by row, for subclasses that specialise the checks.
+     * The array belongs to the board and may be shared with snapshots, so it must not be modified: use setCode.
+     * @return the codes
+     */
+    final int[] codes() {
+        return cells;
+    }
+
+    /**
+     * Set the code of a cell, copying the contents of the board first if they are shared with a snapshot.
+     * @param idx the index of the cell
+     * @param code the code
+     */
+    final void setCode(final int idx, final int code) {
+        beforeWrite();
+        cells[idx] = code;
+    }
+
+    /**
+     * Prepare to modify the board: if its contents are shared with a snapshot, take a private copy of them,
+     * and invalidate the cached hash code.
+     */
+    private void beforeWrite() {
+        if (shared) {
+            cells = cells.clone();
+            shared = false;
+        }
+        hash = 0;
     }
 
     /**
@@ -161,13 +257,107 @@ public class GenSudokuBoard<T> implements Serializable {
     public void copyFrom(final GenSudokuBoard<T> other) {
         if (!(numDigits == other.numDigits
               && dimensionality == other.dimensionality
-              && zero.equals(other.zero)
-              && validEntries.equals(other.validEntries)))
+              && alphabet == other.alphabet))
+            throw new IllegalArgumentException("copyFrom requires board with same parameters");
+
+        // Every code on the other board is legal for this one, so there is no need to go through set.
+        // If the contents are shared, there is no need to copy them first, as they are about to be overwritten.
+        if (shared) {
+            cells = new int[cells.length];
+            shared = false;
+        }
+        hash = 0;
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+    }
+
+    /**
+     * Make this board's contents the same as the supplied snapshot.
+     * This takes constant time: the contents are shared with the snapshot until this board is next modified.
+     * This will throw an exception if the snapshot doesn't have the same parameters.
+     * @param snapshot the snapshot
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void copyFrom(final BoardSnapshot<T> snapshot) {
+        if (!(dimensionality == snapshot.getDimensionality() && alphabet == snapshot.getAlphabet()))
+            throw new IllegalArgumentException("copyFrom requires snapshot with same parameters");
+
+        cells = snapshot.getCells();
+        shared = true;
+        hash = 0;
+    }
+
+    /**
+     * Make this board's contents the image of the supplied board under a transform.
+     * This will throw an exception if the other board doesn't have the same parameters, or the transform is for a
+     * different dimensionality.
+     * @param other the other board, which may be this board
+     * @param transform the transform
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void copyFrom(final GenSudokuBoard<T> other, final Transform transform) {
+        if (!(dimensionality == other.dimensionality && alphabet == other.alphabet))
             throw new IllegalArgumentException("copyFrom requires board with same parameters");
+        if (other == this) {
+            transform(transform);
+            return;
+        }
+        checkTransform(transform);
+
+        // If the contents are shared, there is no need to copy them first, as they are about to be overwritten.
+        if (shared) {
+            cells = new int[cells.length];
+            shared = false;
+        }
+        hash = 0;
+        transform.apply(other.cells, cells);
+    }
+
+    /**
+     * Transform the contents of this board in place.
+     * This will throw an exception if the transform is for a different dimensionality.
+     * @param transform the transform
+     */
+    @SuppressWarnings("WeakerAccess")
+    public void transform(final Transform transform) {
+        checkTransform(transform);
+        if (shared) {
+            final var transformed = new int[cells.length];
+            transform.apply(cells, transformed);
+            cells = transformed;
+            shared = false;
+            hash = 0;
+        } else {
+            hash = 0;
+            transform.applyInPlace(cells);
+        }
+    }
+
+    private void checkTransform(final Transform transform) {
+        if (transform.getDimensionality() != dimensionality)
+            throw new IllegalArgumentException("transform requires board with dimensionality "
+                    + transform.getDimensionality());
+    }
 
-        for (var x = 0; x < numDigits; ++x)
-            for (var y = 0; y < numDigits; ++y)
-                set(x, y, other.get(x, y));
+    /**
+     * Take an immutable snapshot of the contents of this board.
+     * This takes constant time: the contents are shared with the snapshot until this board is next modified.
+     * Unlike the board, the snapshot can be freely shared between threads.
+     * @return a snapshot of the board
+     */
+    @SuppressWarnings("WeakerAccess")
+    public BoardSnapshot<T> freeze() {
+        shared = true;
+        return new BoardSnapshot<>(dimensionality, alphabet, cells);
+    }
+
+    /**
+     * Take a snapshot of the contents of this board for a caller that only reads the board. Unlike freeze, this does
+     * not make the board copy its contents on its next modification: the contents are copied now, unless they are
+     * already shared.
+     * @return a snapshot of the board
+     */
+    BoardSnapshot<T> snapshot() {
+        return new BoardSnapshot<>(dimensionality, alphabet, shared ? cells : cells.clone());
     }
 
     /**
@@ -177,7 +367,8 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isRowComplete(final int row) {
-        return checkRowProperty(row, this::isCompleteArea);
+        checkCoordinate(row);
+        return isCompleteUnit(getGeometry().unit(row));
     }
 
     /**
@@ -187,7 +378,8 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isColumnComplete(final int column) {
-        return checkColumnProperty(column, this::isCompleteArea);
+        checkCoordinate(column);
+        return isCompleteUnit(getGeometry().unit(numDigits + column));
     }
 
     /**
@@ -198,7 +390,8 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isSectionComplete(final int x, final int y) {
-        return checkSectionProperty(x, y, this::isCompleteArea);
+        checkSection(x, y);
+        return isCompleteUnit(getGeometry().unit(2 * numDigits + x * dimensionality + y));
     }
 
     /**
@@ -208,7 +401,8 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isRowValid(final int row) {
-        return checkRowProperty(row, this::isValidArea);
+        checkCoordinate(row);
+        return isValidUnit(getGeometry().unit(row));
     }
 
     /**
@@ -218,7 +412,8 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isColumnValid(final int column) {
-        return checkColumnProperty(column, this::isValidArea);
+        checkCoordinate(column);
+        return isValidUnit(getGeometry().unit(numDigits + column));
     }
 
     /**
@@ -229,16 +424,21 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isSectionValid(final int x, final int y) {
-        return checkSectionProperty(x, y, this::isValidArea);
+        checkSection(x, y);
+        return isValidUnit(getGeometry().unit(2 * numDigits + x * dimensionality + y));
     }
 
     /**
      * Check if the board is complete, i.e. all elements are valid, and there are no zero elements.
+     * Every code on the board is that of a valid entry or zero, so this only needs to look for zeros.
      * @return true if complete, and false otherwise
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isComplete() {
-        return checkProperty(this::isCompleteArea);
+        for (final var code : cells)
+            if (code == 0)
+                return false;
+        return true;
     }
 
     /**
@@ -247,7 +447,10 @@ public class GenSudokuBoard<T> implements Serializable {
      */
     @SuppressWarnings("WeakerAccess")
     public boolean isValid() {
-        return checkProperty(this::isValidArea);
+        for (final var unit : getGeometry().units())
+            if (!isValidUnit(unit))
+                return false;
+        return true;
     }
 
     /**
@@ -260,149 +463,53 @@ public class GenSudokuBoard<T> implements Serializable {
     }
 
     /**
-     * Check that a given property holds for every row, column, and section of the board.
-     * @param propertyChecker the property to check
-     * @return true if the property holds, and false otherwise
+     * Check if a unit is complete, i.e. it holds no zeros.
      */
-    private boolean checkProperty(final Function<List<T>, Boolean> propertyChecker) {
-        for (var i = 0; i < numDigits; ++i) {
-            if (!checkRowProperty(i, propertyChecker))
-                return false;
-            if (!checkColumnProperty(i, propertyChecker))
+    private boolean isCompleteUnit(final int[] unit) {
+        for (final var cell : unit)
+            if (cells[cell] == 0)
                 return false;
-        }
-        for (var x = 0; x < dimensionality; ++x)
-            for (var y = 0; y < dimensionality; ++y)
-                if (!checkSectionProperty(x, y, propertyChecker))
-                    return false;
         return true;
     }
 
-    private boolean checkRowProperty(final int row, final Function<List<T>, Boolean> propertyChecker) {
-        return propertyChecker.apply(extract(rowIterator(row)));
-    }
-
-    private boolean checkColumnProperty(final int column, final Function<List<T>, Boolean> propertyChecker) {
-        return propertyChecker.apply(extract(columnIterator(column)));
-    }
-
-    private boolean checkSectionProperty(final int x, final int y, final Function<List<T>, Boolean> propertyChecker) {
-        return propertyChecker.apply(extract(sectionIterator(x, y)));
-    }
-
-    /**
-     * Extract the values on a part of the board, as dictated by the coordinates of an Iterator.
-     * @param sectionIndices the iterator of coordinates
-     * @return a list of the values on the board at the specified coordinates
-     */
-    private List<T> extract(final Iterator<Pair> sectionIndices) {
-        Objects.requireNonNull(sectionIndices);
-
-        // We expect the initial capacity to be numDigits.
-        final var values = new ArrayList<T>(numDigits);
-        sectionIndices.forEachRemaining(p -> values.add(get(p)));
-        return Collections.unmodifiableList(values);
-    }
-
     /**
-     * Provide an iterator to traverse a row of the board.
-     * @param row the row
-     * @return an Iterator over the coordinates of the row
+     * Check if a unit is valid, i.e. no code other than zero appears in it more than once.
+     * The codes seen so far are kept as a bitmask, so boards with fewer than 64 digits need no allocation.
      */
-    private Iterator<Pair> rowIterator(final int row) {
-        checkCoordinate(row);
-        return new Iterator<>() {
-            int pos = 0;
-
-            @Override
-            public boolean hasNext() {
-                return pos < numDigits;
-            }
-
-            @Override
-            public Pair next() {
-                return new Pair(row, pos++);
-            }
-        };
+    private boolean isValidUnit(final int[] unit) {
+        if (numDigits >= Long.SIZE)
+            return isValidLargeUnit(unit);
+
+        var seen = 0L;
+        for (final var cell : unit) {
+            final var bit = 1L << cells[cell];
+            if ((seen & bit) != 0 && bit != 1L)
+                return false;
+            seen |= bit;
+        }
+        return true;
     }
 
-    /**
-     * Provide an iterator to traverse a column of the board.
-     * @param col the column
-     * @return an Iterator over the coordinates of the column
-     */
-    private Iterator<Pair> columnIterator(final int col) {
-        checkCoordinate(col);
-        return new Iterator<>() {
-            int pos = 0;
-
-            @Override
-            public boolean hasNext() {
-                return pos < numDigits;
-            }
-
-            @Override
-            public Pair next() {
-                return new Pair(pos++, col);
-            }
-        };
+    private boolean isValidLargeUnit(final int[] unit) {
+        final var seen = new BitSet(numDigits + 1);
+        for (final var cell : unit) {
+            final var code = cells[cell];
+            if (code != 0 && seen.get(code))
+                return false;
+            seen.set(code);
+        }
+        return true;
     }
 
     /**
-     * Provide an iterator to traverse a section (one of the subgrids) of the board.
-     * @param x the x-coordinate of the section
-     * @param y the y-coordinate of the section
-     * @return an Iterator over the coordinates of the section
+     * Check if the coordinates of a section are legal.
+     * Throw an IllegalArgumentException if they are not.
+     * @param x the x coordinate of the section
+     * @param y the y coordinate of the section
      */
-    private Iterator<Pair> sectionIterator(final int x, final int y) {
+    private void checkSection(final int x, final int y) {
         if (x < 0 || x >= dimensionality || y < 0 || y >= dimensionality)
             throw new IllegalArgumentException("Illegal quadrant: " + pairToString(x, y));
-
-        return new Iterator<>() {
-            int idx = 0;
-
-            @Override
-            public boolean hasNext() {
-                return idx < numDigits;
-            }
-
-            @Override
-            public Pair next() {
-                int xpos = x * dimensionality + idx % dimensionality;
-                int ypos = y * dimensionality + idx / dimensionality;
-                ++idx;
-                return new Pair(xpos, ypos);
-            }
-        };
-    }
-
-    /**
-     * Check a list of elements to see if it is complete, i.e. every space is filled with a valid nonzero value.
-     * @param lst the list of elements
-     * @return true if it is complete, and false otherwise
-     */
-    private boolean isCompleteArea(final List<T> lst) {
-        // Since zero is not in validEntries, checking that lst does not contain zero is extraneous, but I'll
-        // leave it in as a necessary condition all the same.
-        return validEntries.containsAll(lst) && !lst.contains(zero);
-    }
-
-    /**
-     * Check a list of elements to see if it is valid, i.e. there are no repeats other than possibly zero,
-     * and every element is valid.
-     * @param lst the list of elements
-     * @return true if valid, and false otherwise
-     */
-    private boolean isValidArea(final List<T> lst) {
-        // Count the zeros.
-        final var numZeros = Collections.frequency(lst, zero);
-
-        // Now find the unique list without the zeroes.
-        final var unique = new HashSet<>(lst);
-        unique.remove(zero);
-
-        return unique.size() + numZeros == lst.size() && validEntries.containsAll(unique);
-
     }
 
     /**
@@ -415,6 +522,19 @@ public class GenSudokuBoard<T> implements Serializable {
             throw new IllegalArgumentException("Illegal coordinate: " + c);
     }
 
+    /**
+     * Find the index of a position in the cells array.
+     * Throw an IllegalArgumentException if the position does not fall within the board.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the index of (x, y)
+     */
+    private int index(final int x, final int y) {
+        if (x < 0 || x >= numDigits || y < 0 || y >= numDigits)
+            throw new IllegalArgumentException("Illegal coordinates: " + pairToString(x, y));
+        return x * numDigits + y;
+    }
+
     /**
      * Quick formatting of a pair as a String.
      * @param x x element
@@ -431,14 +551,18 @@ public class GenSudokuBoard<T> implements Serializable {
         if (!(o instanceof GenSudokuBoard)) return false;
         GenSudokuBoard<?> that = (GenSudokuBoard<?>) o;
         return dimensionality == that.dimensionality &&
-                numDigits == that.numDigits &&
-                Objects.equals(board, that.board) &&
-                Objects.equals(validEntries, that.validEntries) &&
-                Objects.equals(zero, that.zero);
+                alphabet == that.alphabet &&
+                hashCode() == that.hashCode() &&
+                Arrays.equals(cells, that.cells);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(dimensionality, numDigits, board, validEntries, zero);
+        var h = hash;
+        if (h == 0) {
+            h = 31 * (31 * dimensionality + alphabet.hashCode()) + Arrays.hashCode(cells);
+            hash = h;
+        }
+        return h;
     }
 }
@@ -5,28 +5,191 @@
 package com.vorpal.sudoku;
 
 import org.chocosolver.solver.Model;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.constraints.PropagatorPriority;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.search.SearchState;
 import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.ESat;
+import org.chocosolver.util.criteria.Criterion;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Takes a GenSudoku problem, represents it as a constraint program, and then allows solving.
  *
  * NOTE: Intermediate steps here may not be as expected, as entries in the board are represented as integers
- * through a map, thus being a permutation of the valid elements for the puzzle. We reverse the permutation when
- * the solution is confirmed to be achieved, so that writing the solution to the board provides the expected
- * final result.
+ * through the board's Alphabet, thus being a permutation of the valid elements for the puzzle. We reverse the
+ * permutation when the solution is confirmed to be achieved, so that writing the solution to the board provides
+ * the expected final result.
  */
 @SuppressWarnings("WeakerAccess")
 public class GenSudokuCP<T> {
-    // The board.
-    private final GenSudokuBoard<T> sudokuBoard;
+    /**
+     * The outcome of the last call to solve.
+     */
+    public enum Status {
+        // solve has not been called.
+        NOT_SOLVED,
+
+        // There is exactly one solution, which has been written to the board.
+        UNIQUE,
+
+        // There are no solutions.
+        NO_SOLUTION,
+
+        // There is more than one solution.
+        MULTIPLE_SOLUTIONS,
+
+        // The time or node limit was reached before the search could determine which of the above holds.
+        LIMIT_REACHED
+    }
+
+    /**
+     * The values that each cell may still take after propagation, as returned by propagate.
+     */
+    public static final class Candidates<T> {
+        private final int side;
+        private final Alphabet<T> alphabet;
+
+        // Bit c - 1 of word w of cell i, at masks[i * words + w / 64], is set if the code c is a candidate.
+        private final int words;
+        private final long[] masks;
+
+        private Candidates(final int side, final Alphabet<T> alphabet, final long[] masks) {
+            this.side = side;
+            this.alphabet = alphabet;
+            this.words = (side + Long.SIZE - 1) / Long.SIZE;
+            this.masks = masks;
+        }
+
+        /**
+         * Propagation may find that the board has no solution, in which case no cell has any candidates.
+         * @return true if propagation found a contradiction, and false otherwise
+         */
+        public boolean isContradiction() {
+            return masks == null;
+        }
+
+        /**
+         * The candidates of a cell.
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @return an unmodifiable set of the candidates, in the order of the alphabet
+         */
+        public Set<T> get(final int x, final int y) {
+            final var candidates = new LinkedHashSet<T>();
+            if (masks != null) {
+                final var base = index(x, y) * words;
+                for (var code = 1; code <= side; ++code)
+                    if ((masks[base + (code - 1) / Long.SIZE] & (1L << (code - 1))) != 0)
+                        candidates.add(alphabet.symbol(code));
+            }
+            return Collections.unmodifiableSet(candidates);
+        }
+
+        /**
+         * Check if a value is a candidate of a cell.
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @param value the value
+         * @return true if the value is a candidate, and false otherwise
+         */
+        public boolean contains(final int x, final int y, final T value) {
+            final var code = alphabet.code(value);
+            if (masks == null || code <= 0)
+                return false;
+            return (masks[index(x, y) * words + (code - 1) / Long.SIZE] & (1L << (code - 1))) != 0;
+        }
+
+        /**
+         * The number of candidates of a cell.
+         * @param x the x coordinate
+         * @param y the y coordinate
+         * @return the number of candidates, which is 1 if the value of the cell is determined
+         */
+        public int count(final int x, final int y) {
+            if (masks == null)
+                return 0;
+            final var base = index(x, y) * words;
+            var count = 0;
+            for (var w = 0; w < words; ++w)
+                count += Long.bitCount(masks[base + w]);
+            return count;
+        }
+
+        private int index(final int x, final int y) {
+            if (x < 0 || x >= side || y < 0 || y >= side)
+                throw new IllegalArgumentException(String.format("Illegal coordinates: (%d,%d)", x, y));
+            return x * side + y;
+        }
+    }
+
+    /**
+     * Requires that some variables are not all equal to the values of a known solution, so that a search finds a
+     * different one. This could be posted as a disjunction of inequalities, but that would leave reified
+     * constraints and their variables in the model after it is unposted.
+     */
+    private static final class DifferentFrom extends Propagator<IntVar> {
+        private final int[] values;
+
+        DifferentFrom(final IntVar[] vars, final int[] values) {
+            super(vars, PropagatorPriority.LINEAR, false);
+            this.values = values;
+        }
+
+        @Override
+        public void propagate(final int evtmask) throws ContradictionException {
+            // If only one variable may still differ, it must.
+            var free = -1;
+            for (var i = 0; i < vars.length; ++i) {
+                if (!vars[i].contains(values[i])) {
+                    setPassive();
+                    return;
+                }
+                if (!vars[i].isInstantiated()) {
+                    if (free >= 0)
+                        return;
+                    free = i;
+                }
+            }
+            if (free < 0)
+                fails();
+            vars[free].removeValue(values[free], this);
+            setPassive();
+        }
+
+        @Override
+        public ESat isEntailed() {
+            var undecided = false;
+            for (var i = 0; i < vars.length; ++i) {
+                if (!vars[i].contains(values[i]))
+                    return ESat.TRUE;
+                undecided |= !vars[i].isInstantiated();
+            }
+            return undecided ? ESat.UNDEFINED : ESat.FALSE;
+        }
+    }
+
+    // The number of subproblems per thread that solveParallel aims for, so that the threads stay busy even though
+    // some subproblems are much harder than others.
+    private static final int SUBPROBLEMS_PER_THREAD = 8;
+
+    // The board, which changes if the solver is rebound to another.
+    private GenSudokuBoard<T> sudokuBoard;
 
     // Side of the board, i.e. # rows and # columns.
     private final int side;
 
-    // Valid entries, in order.
-    private final List<T> validEntries;
+    // The symbols of the board: the value of a variable is the code of its symbol in the alphabet.
+    private final Alphabet<T> alphabet;
 
     // The model of the board as a CP.
     private final Model model;
@@ -34,6 +197,55 @@ public class GenSudokuCP<T> {
     // The variables.
     private final IntVar[][] vs;
 
+    // The constraints fixing the givens, indexed by x * side + y, or null for empty cells, and their codes.
+    private final Constraint[] givens;
+    private final int[] givenCodes;
+
+    // The allDifferent constraints of the rows, columns, and sections, in that order.
+    private final Constraint[] units;
+
+    // The trace of the search, or null if tracing is disabled.
+    private SearchTrace trace;
+
+    // The cells whose givens have been removed from the model, by liftGiven or isSatisfiableWithGivens.
+    private final BitSet liftedGivens = new BitSet();
+
+    // The stop criteria added by analyses, which, like the limits, must survive resets of the solver.
+    private final List<Criterion> stopCriteria = new ArrayList<>();
+
+    // The outcome of the last call to solve.
+    private Status status = Status.NOT_SOLVED;
+
+    // The codes of the solutions found by the last call to solve, by cell, which addClue and removeClue reuse as
+    // witnesses: the first is set if the status is UNIQUE, and both are set if it is MULTIPLE_SOLUTIONS, unless
+    // the search that found them did not keep them.
+    private int[] firstSolution;
+    private int[] secondSolution;
+
+    // The constraint excluding a known solution, posted by the last edit, which is removed by the next reset.
+    private Constraint exclusion;
+
+    // The limits on solve, where 0 means no limit, and the deadline of the current call to solve.
+    private long timeLimitNanos;
+    private long nodeLimit;
+    private long deadline;
+
+    // The threads and the pool of models used by solveParallel(int), which are kept for the calls that follow.
+    private ForkJoinPool parallelThreads;
+    private SolverPool parallelSolvers;
+
+    /**
+     * Create the best solver for a board: a SudokuCP for 9x9 boards over the digits, which solves them with a search
+     * dedicated to them, and a GenSudokuCP otherwise.
+     * @param board the board
+     * @return the solver
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> GenSudokuCP<T> of(final GenSudokuBoard<T> board) {
+        if (board.getAlphabet() == SudokuBoard.DIGITS)
+            return (GenSudokuCP<T>) new SudokuCP((GenSudokuBoard<Integer>) board);
+        return new GenSudokuCP<>(board);
+    }
 
     public GenSudokuCP(final GenSudokuBoard<T> sudokuBoard) {
         this.sudokuBoard = sudokuBoard;
@@ -44,78 +256,717 @@ public class GenSudokuCP<T> {
         side = dimensionaity * dimensionaity;
 
         final var zero = sudokuBoard.getZero();
-        validEntries = List.copyOf(sudokuBoard.getValidEntries());
 
-        // We want a map between validEntries and integers, as we will model using integers.
-        final var tmpMap = new HashMap<T, Integer>();
-        tmpMap.put(zero, 0);
-        for (int i = 0; i < validEntries.size(); ++i)
-            tmpMap.put(validEntries.get(i), i+1);
-        final var entryMap = Collections.unmodifiableMap(tmpMap);
+        // The alphabet maps the valid entries to [1, alphabet.size()], which we use to model with integers.
+        // Its numbering is stable, which keeps the search, and thus the statistics below, reproducible between runs.
+        alphabet = sudokuBoard.getAlphabet();
 
-        // Now we create one entry for every cell on the board, allowing the value to fall in [1, validEntries.size()].
-        vs = model.intVarMatrix(side, side, 1, validEntries.size());
+        // Now we create one entry for every cell on the board, allowing the value to fall in [1, alphabet.size()].
+        vs = model.intVarMatrix(side, side, 1, alphabet.size());
 
         // Iterate over the board, setting the fixed entries via constraints.
+        givens = new Constraint[side * side];
+        givenCodes = new int[side * side];
         for (var x = 0; x < side; ++x)
             for (var y = 0; y < side; ++y) {
                 final var c = sudokuBoard.get(x, y);
-                if (!c.equals(zero))
-                    model.arithm(vs[x][y], "=", entryMap.get(c)).post();
+                if (!c.equals(zero)) {
+                    givenCodes[x * side + y] = alphabet.code(c);
+                    givens[x * side + y] = model.arithm(vs[x][y], "=", givenCodes[x * side + y]);
+                    givens[x * side + y].post();
+                }
             }
 
-        // Add the row and column constraints.
+        // Add the row, column, and section constraints, numbered as the units of the geometry.
+        // Each row is posted with the column of the same number, and the sections after them: the order of the
+        // constraints decides the order of propagation, and so the node counts of the search.
+        final var geometry = sudokuBoard.getGeometry();
+        units = new Constraint[3 * side];
         for (var x = 0; x < side; ++x) {
-            final var row = new IntVar[side];
-            final var column = new IntVar[side];
-            for (var y = 0; y < side; ++y) {
-                row[y] = vs[x][y];
-                column[y] = vs[y][x];
-            }
-            model.allDifferent(row).post();
-            model.allDifferent(column).post();
-        }
-
-        // Add the section constraints.
-        for (var x = 0; x < dimensionaity; ++x) {
-            for (var y = 0; y < dimensionaity; ++y) {
-                final var section = new IntVar[side];
-                int idx = 0;
-                for (var xoff = 0; xoff < dimensionaity; ++xoff)
-                    for (var yoff = 0; yoff < dimensionaity; ++yoff)
-                        section[idx++] = vs[x * dimensionaity + xoff][y * dimensionaity + yoff];
-                model.allDifferent(section).post();
-            }
+            postUnit(geometry, x);
+            postUnit(geometry, side + x);
         }
+        for (var section = 0; section < side; ++section)
+            postUnit(geometry, 2 * side + section);
+
+        model.getSolver().addStopCriterion(this::isLimitReached);
+    }
+
+    /**
+     * Post the allDifferent constraint of a unit.
+     */
+    private void postUnit(final Geometry geometry, final int unit) {
+        final var cells = geometry.unit(unit);
+        final var unitVars = new IntVar[side];
+        for (var i = 0; i < side; ++i)
+            unitVars[i] = vs[cells[i] / side][cells[i] % side];
+        units[unit] = model.allDifferent(unitVars);
+        units[unit].post();
     }
 
     public boolean solve() {
+        deadline = System.nanoTime() + timeLimitNanos;
+
         // We want there to be exactly one solution and one solution only.
         // Thus calls to solve should return first true, then false.
-        final var solved = model.getSolver().solve();
-        if (!solved) return false;
+        final var solver = model.getSolver();
+        final var solved = solver.solve();
+        if (!solved) {
+            setOutcome(solver.getSearchState() == SearchState.STOPPED ? Status.LIMIT_REACHED : Status.NO_SOLUTION,
+                    null, null);
+            return false;
+        }
 
         // Store the solution temporarily.
-        // We convert it and copy it over to the board when we know the solution is unique.
-        final var sol = new ArrayList<ArrayList<Integer>>(side);
-        for (var x = 0; x < side; ++x) {
-            final var row = new ArrayList<Integer>();
-            for (var y = 0; y < side; ++y)
-                // Remove 1 from value so we correspond directly to validEntries.
-                row.add(vs[x][y].getValue() - 1);
-            sol.add(row);
-        }
+        // We copy it over to the board when we know the solution is unique.
+        final var sol = values();
 
         // Now make sure there are no more solutions.
-        final var moreSolutions = model.getSolver().solve();
-        if (moreSolutions)
+        final var moreSolutions = solver.solve();
+        if (moreSolutions) {
+            setOutcome(Status.MULTIPLE_SOLUTIONS, sol, values());
             return false;
+        }
+        if (solver.getSearchState() == SearchState.STOPPED) {
+            setOutcome(Status.LIMIT_REACHED, null, null);
+            return false;
+        }
+        setOutcome(Status.UNIQUE, sol, null);
+        return true;
+    }
 
-        // Translate and copy the solution to the board.
-        for (var x = 0; x < side; ++x)
-            for (var y = 0; y < side; ++y)
-                sudokuBoard.set(x, y, validEntries.get(sol.get(x).get(y)));
+    /**
+     * Add a clue to the puzzle, or change the value of one, and check again whether it has a unique solution.
+     *
+     * This is much cheaper than solving the edited puzzle with a new solver: the model is changed in place, and the
+     * solutions found by the last call to solve, addClue, or removeClue are reused as witnesses. If the puzzle had a
+     * unique solution and it agrees with the clue, it is still the unique solution, and there is no search at all;
+     * if a puzzle had several solutions and the clue keeps only one of the known ones, only a second solution needs
+     * to be looked for. Otherwise, the puzzle is solved as by solve.
+     *
+     * Afterwards, the board holds the clues, and the solution if it is unique. The limits apply as for solve.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param value the value of the clue
+     * @return true if there is a unique solution, which is written to the board, and false otherwise
+     */
+    public boolean addClue(final int x, final int y, final T value) {
+        final var code = alphabet.code(value);
+        if (code <= 0)
+            throw new IllegalArgumentException("Value not legal: " + value);
+        return editClue(cell(x, y), code);
+    }
 
-        return true;
+    /**
+     * Remove a clue from the puzzle, and check again whether it has a unique solution.
+     *
+     * As for addClue, the solutions found last are reused: if the puzzle had several solutions, it still does, and if
+     * it had a unique solution, that is still a solution, so only a second one needs to be looked for.
+     *
+     * Afterwards, the board holds the clues, and the solution if it is unique. The limits apply as for solve.
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true if there is a unique solution, which is written to the board, and false otherwise
+     */
+    public boolean removeClue(final int x, final int y) {
+        return editClue(cell(x, y), 0);
+    }
+
+    /**
+     * Change the clue in a cell, and determine the outcome, reusing the known solutions where possible.
+     * @param cell the cell
+     * @param code the code of the clue, or 0 to remove it
+     */
+    private boolean editClue(final int cell, final int code) {
+        final var previous = givenCodes[cell];
+
+        // The solutions are only known if they were found with all the givens in the model.
+        final var known = liftedGivens.isEmpty() ? status : Status.NOT_SOLVED;
+        final var first = isWitness(firstSolution, cell, code) ? firstSolution : null;
+        final var second = isWitness(secondSolution, cell, code) ? secondSolution : null;
+
+        reset();
+        setGiven(cell, code);
+        for (var c = 0; c < givenCodes.length; ++c)
+            sudokuBoard.setCode(c, givenCodes[c]);
+        deadline = System.nanoTime() + timeLimitNanos;
+
+        // If no given was removed, every solution of the puzzle is a solution of the old one.
+        final var narrowed = previous == 0 || previous == code;
+        if (known == Status.MULTIPLE_SOLUTIONS && first != null && second != null) {
+            setOutcome(Status.MULTIPLE_SOLUTIONS, first, second);
+            return false;
+        }
+        if (narrowed && (known == Status.UNIQUE || known == Status.NO_SOLUTION)) {
+            setOutcome(first == null ? Status.NO_SOLUTION : Status.UNIQUE, first, null);
+            return first != null;
+        }
+        if ((known == Status.UNIQUE || known == Status.MULTIPLE_SOLUTIONS) && (first != null || second != null))
+            return solveOtherThan(first != null ? first : second);
+        return solve();
+    }
+
+    /**
+     * Check if a known solution also satisfies a changed clue, so that it is still a solution.
+     */
+    private static boolean isWitness(final int[] solution, final int cell, final int code) {
+        return solution != null && (code == 0 || solution[cell] == code);
+    }
+
+    /**
+     * Determine the outcome when one solution of the puzzle is known, by looking for a different one.
+     * @param witness the codes of the known solution
+     */
+    private boolean solveOtherThan(final int[] witness) {
+        final var free = new ArrayList<IntVar>();
+        final var values = new ArrayList<Integer>();
+        for (var cell = 0; cell < witness.length; ++cell)
+            if (givenCodes[cell] == 0) {
+                free.add(vs[cell / side][cell % side]);
+                values.add(witness[cell]);
+            }
+
+        // If every cell holds a clue, the witness is the only possible solution.
+        if (free.isEmpty()) {
+            setOutcome(Status.UNIQUE, witness, null);
+            return true;
+        }
+
+        // The constraint stays in the model until the next reset, so that the counts of the search can be read.
+        exclusion = new Constraint("DifferentFrom", new DifferentFrom(free.toArray(new IntVar[0]),
+                values.stream().mapToInt(Integer::intValue).toArray()));
+        exclusion.post();
+        final var solver = model.getSolver();
+        if (solver.solve())
+            setOutcome(Status.MULTIPLE_SOLUTIONS, witness, values());
+        else if (solver.getSearchState() == SearchState.STOPPED)
+            setOutcome(Status.LIMIT_REACHED, null, null);
+        else
+            setOutcome(Status.UNIQUE, witness, null);
+        return status == Status.UNIQUE;
+    }
+
+    /**
+     * The codes of the current values of the variables, by cell.
+     */
+    private int[] values() {
+        final var codes = new int[side * side];
+        for (var cell = 0; cell < codes.length; ++cell)
+            codes[cell] = vs[cell / side][cell % side].getValue();
+        return codes;
+    }
+
+    /**
+     * Replace the given in a cell, without resetting the search.
+     * @param cell the cell
+     * @param code the code of the given, or 0 for none
+     */
+    private void setGiven(final int cell, final int code) {
+        final var lifted = liftedGivens.get(cell);
+        if (code == givenCodes[cell]) {
+            if (lifted)
+                model.post(givens[cell]);
+        } else {
+            if (givens[cell] != null && !lifted)
+                model.unpost(givens[cell]);
+            givenCodes[cell] = code;
+            givens[cell] = code == 0 ? null : model.arithm(vs[cell / side][cell % side], "=", code);
+            if (givens[cell] != null)
+                givens[cell].post();
+        }
+        liftedGivens.clear(cell);
+    }
+
+    private int cell(final int x, final int y) {
+        if (x < 0 || x >= side || y < 0 || y >= side)
+            throw new IllegalArgumentException(String.format("Illegal coordinates: (%d,%d)", x, y));
+        return x * side + y;
+    }
+
+    /**
+     * Make this solver solve another board with the same dimensionality and symbols, as though it were newly created
+     * for it: the limits, the trace, the stop criteria, and the status are all cleared. Only the givens that differ
+     * between the boards are changed in the model, which is much cheaper than building a new one.
+     * @param board the board
+     */
+    void rebind(final GenSudokuBoard<T> board) {
+        if (board.getAlphabet() != alphabet)
+            throw new IllegalArgumentException("rebind requires board with same parameters");
+        disableTrace();
+        stopCriteria.clear();
+        timeLimitNanos = 0;
+        nodeLimit = 0;
+        reset();
+
+        final var codes = board.codes();
+        for (var cell = 0; cell < codes.length; ++cell)
+            setGiven(cell, codes[cell]);
+
+        sudokuBoard = board;
+        setOutcome(Status.NOT_SOLVED, null, null);
+    }
+
+    /**
+     * Accessor for the alphabet of the boards this solver can solve.
+     * @return alphabet
+     */
+    Alphabet<T> getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Solve the board like solve, but with the search split across threads, for single puzzles too hard for one.
+     * This uses a fork-join pool and a SolverPool that belong to this solver, and are kept for later calls with the
+     * same parallelism: see solveParallel(ForkJoinPool, SolverPool).
+     * @param parallelism the number of threads
+     * @return true if there is a unique solution, which is written to the board, and false otherwise
+     * @throws IllegalStateException if tracing is enabled
+     */
+    public boolean solveParallel(final int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be a positive integer");
+        if (parallelThreads == null || parallelThreads.getParallelism() != parallelism) {
+            if (parallelThreads != null)
+                parallelThreads.shutdown();
+            parallelThreads = new ForkJoinPool(parallelism);
+            parallelSolvers = new SolverPool(parallelism * SolverPool.estimateBytes(sudokuBoard.getDimensionality()));
+        }
+        return solveParallel(parallelThreads, parallelSolvers);
+    }
+
+    /**
+     * Solve the board like solve, but with the search split across the threads of a fork-join pool.
+     *
+     * The cells with the fewest candidates after propagation are fixed to each combination of their candidates in
+     * turn, until there are several subproblems per thread, which are then solved on the pool, each with a model
+     * from the SolverPool. The number of solutions found so far is shared by all the searches, so that as soon
+     * as two solutions have been found anywhere, they all stop, as they do if the call is interrupted or one of them
+     * throws. The time limit applies to the whole call, while the node limit applies to each subproblem, as do the
+     * stop criteria. The node, backtrack, and fail counts are not updated. The searches cannot be traced, as a trace
+     * records a single search.
+     * @param threads the threads to search on
+     * @param solvers the pool from which to take the models of the subproblems
+     * @return true if there is a unique solution, which is written to the board, and false otherwise
+     * @throws IllegalStateException if tracing is enabled
+     */
+    public boolean solveParallel(final ForkJoinPool threads, final SolverPool solvers) {
+        if (trace != null)
+            throw new IllegalStateException("solveParallel cannot be traced");
+        deadline = System.nanoTime() + timeLimitNanos;
+
+        final var candidates = propagate();
+        if (candidates.isContradiction()) {
+            setOutcome(Status.NO_SOLUTION, null, null);
+            return false;
+        }
+        final var subproblems = split(candidates, SUBPROBLEMS_PER_THREAD * threads.getParallelism());
+
+        final var found = new AtomicInteger();
+        final var solution = new AtomicReference<int[]>();
+        final var limited = new AtomicBoolean();
+        final var cancelled = new AtomicBoolean();
+        final Criterion stop = () -> found.get() >= 2 || cancelled.get();
+        final var criteria = List.copyOf(stopCriteria);
+        try {
+            threads.submit(() -> subproblems.parallelStream().forEach(codes -> {
+                if (!stop.isMet())
+                    solveSubproblem(codes, solvers, criteria, stop, found, solution, limited);
+            })).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            setOutcome(Status.LIMIT_REACHED, null, null);
+            return false;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            // Stop any searches still running, if the call was interrupted or a search threw.
+            cancelled.set(true);
+        }
+
+        // Only one of the solutions is kept, so none are kept as witnesses if there are several.
+        if (found.get() >= 2)
+            setOutcome(Status.MULTIPLE_SOLUTIONS, null, null);
+        else if (limited.get())
+            setOutcome(Status.LIMIT_REACHED, null, null);
+        else if (found.get() == 0)
+            setOutcome(Status.NO_SOLUTION, null, null);
+        else
+            setOutcome(Status.UNIQUE, solution.get(), null);
+        return status == Status.UNIQUE;
+    }
+
+    /**
+     * Split the search into subproblems, by fixing cells to each of their candidates, fewest candidates first.
+     * Every cell with a single candidate is fixed to it, and combinations that put the same value twice in a unit are
+     * left out.
+     * @param candidates the candidates at the root
+     * @param target the number of subproblems to aim for
+     * @return the codes of the cells of each subproblem, with 0 for the cells left to the search
+     */
+    private List<int[]> split(final Candidates<T> candidates, final int target) {
+        final var root = new int[side * side];
+        final var open = new ArrayList<Integer>();
+        for (var cell = 0; cell < root.length; ++cell) {
+            if (candidates.count(cell / side, cell % side) == 1)
+                root[cell] = candidateCodes(candidates, cell)[0];
+            else
+                open.add(cell);
+        }
+        open.sort(Comparator.<Integer>comparingInt(cell -> candidates.count(cell / side, cell % side))
+                .thenComparingInt(cell -> cell));
+
+        var subproblems = new ArrayList<int[]>();
+        subproblems.add(root);
+        for (final var cell : open) {
+            if (subproblems.size() >= target)
+                break;
+            final var next = new ArrayList<int[]>();
+            for (final var codes : subproblems)
+                for (final var code : candidateCodes(candidates, cell))
+                    if (!isTaken(codes, cell, code)) {
+                        final var fixed = codes.clone();
+                        fixed[cell] = code;
+                        next.add(fixed);
+                    }
+            subproblems = next;
+        }
+        return subproblems;
+    }
+
+    private int[] candidateCodes(final Candidates<T> candidates, final int cell) {
+        final var codes = new int[candidates.count(cell / side, cell % side)];
+        var n = 0;
+        for (var w = 0; w < candidates.words; ++w)
+            for (var mask = candidates.masks[cell * candidates.words + w]; mask != 0; mask &= mask - 1)
+                codes[n++] = w * Long.SIZE + Long.numberOfTrailingZeros(mask) + 1;
+        return codes;
+    }
+
+    /**
+     * Check if a code already appears in the row, column, or section of a cell.
+     */
+    private boolean isTaken(final int[] codes, final int cell, final int code) {
+        for (final var peer : sudokuBoard.getGeometry().peers(cell))
+            if (codes[peer] == code)
+                return true;
+        return false;
+    }
+
+    /**
+     * Search a subproblem of solveParallel for up to two solutions, counting them in found, and keeping the first
+     * one found overall in solution. The search stops when any of the criteria or stop is met. If it is stopped by a
+     * limit before two solutions are found anywhere, limited is set.
+     */
+    private void solveSubproblem(final int[] codes, final SolverPool solvers, final List<Criterion> criteria,
+                                 final Criterion stop, final AtomicInteger found,
+                                 final AtomicReference<int[]> solution, final AtomicBoolean limited) {
+        if (timeLimitNanos > 0 && deadline - System.nanoTime() <= 0) {
+            limited.set(true);
+            return;
+        }
+
+        final var board = new BoardSnapshot<>(sudokuBoard.getDimensionality(), alphabet, codes).thaw();
+        final var sub = solvers.acquire(board);
+        try {
+            // The subproblem shares the deadline of the whole call, to the nanosecond, and the stop criteria.
+            sub.timeLimitNanos = timeLimitNanos;
+            sub.deadline = deadline;
+            sub.setNodeLimit(nodeLimit);
+            for (final var criterion : criteria)
+                sub.addStopCriterion(criterion);
+            sub.addStopCriterion(stop);
+
+            final var solver = sub.model.getSolver();
+            for (var n = 0; n < 2 && solver.solve(); ++n)
+                if (found.incrementAndGet() == 1) {
+                    final var values = new int[side * side];
+                    for (var cell = 0; cell < values.length; ++cell)
+                        values[cell] = sub.vs[cell / side][cell % side].getValue();
+                    solution.set(values);
+                }
+            if (solver.getSearchState() == SearchState.STOPPED && found.get() < 2)
+                limited.set(true);
+        } catch (RuntimeException ex) {
+            // The model may have been left in a bad state, so it is not reused.
+            solvers.discard(sub);
+            throw ex;
+        }
+        solvers.release(sub);
+    }
+
+    /**
+     * Find the candidates of every cell by propagating the constraints at the root, without searching.
+     * This costs a fraction of solve, and the values it removes can never appear in a solution.
+     * Any search in progress is discarded, and the board is not modified.
+     * @return the candidates, or a contradiction if propagation alone shows that the board has no solution
+     */
+    public Candidates<T> propagate() {
+        final var solver = model.getSolver();
+        reset();
+        final var environment = model.getEnvironment();
+        environment.worldPush();
+        try {
+            solver.propagate();
+            final var words = (side + Long.SIZE - 1) / Long.SIZE;
+            final var masks = new long[side * side * words];
+            for (var x = 0; x < side; ++x)
+                for (var y = 0; y < side; ++y) {
+                    final var base = (x * side + y) * words;
+                    final var domain = vs[x][y];
+                    for (var code = domain.getLB(); code <= domain.getUB(); code = domain.nextValue(code))
+                        masks[base + (code - 1) / Long.SIZE] |= 1L << (code - 1);
+                }
+            return new Candidates<>(side, alphabet, masks);
+        } catch (ContradictionException ex) {
+            return new Candidates<>(side, alphabet, null);
+        } finally {
+            environment.worldPop();
+            // The propagators now believe that they are at a fixpoint, so the engine must start afresh.
+            reset();
+        }
+    }
+
+    /**
+     * Accessor for status.
+     * @return the outcome of the last call to solve
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Limit the time that each call to solve may take. If the limit is reached, solve returns false, and the
+     * status is LIMIT_REACHED.
+     * @param millis the limit in milliseconds, or 0 for no limit: limits too large to count in nanoseconds are
+     *               capped at Long.MAX_VALUE nanoseconds, which is hundreds of years
+     */
+    public void setTimeLimit(final long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("time limit must be nonnegative");
+        timeLimitNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Limit the number of nodes that each call to solve may explore. If the limit is reached, solve returns
+     * false, and the status is LIMIT_REACHED. Unlike a time limit, this does not depend on the machine.
+     * @param nodes the limit, or 0 for no limit
+     */
+    public void setNodeLimit(final long nodes) {
+        if (nodes < 0)
+            throw new IllegalArgumentException("node limit must be nonnegative");
+        nodeLimit = nodes;
+    }
+
+    private boolean isLimitReached() {
+        return (timeLimitNanos > 0 && System.nanoTime() - deadline > 0)
+                || (nodeLimit > 0 && model.getSolver().getNodeCount() >= nodeLimit);
+    }
+
+    /**
+     * The number of nodes explored by the search so far. After solve, this is the effort that was needed to
+     * find a solution and prove it unique, which, unlike the time taken, does not depend on the machine.
+     * @return the number of nodes
+     */
+    public long getNodeCount() {
+        return model.getSolver().getNodeCount();
+    }
+
+    /**
+     * The number of backtracks made by the search so far.
+     * @return the number of backtracks
+     */
+    public long getBacktrackCount() {
+        return model.getSolver().getBackTrackCount();
+    }
+
+    /**
+     * The number of failures encountered by the search so far.
+     * @return the number of failures
+     */
+    public long getFailCount() {
+        return model.getSolver().getFailCount();
+    }
+
+    /**
+     * Start tracing the search, discarding any previous trace. The trace records the events of every subsequent
+     * call to solve, until tracing is disabled.
+     * @param capacity the number of events to keep: once the trace is full, the oldest events are overwritten
+     * @return the trace
+     */
+    public SearchTrace enableTrace(final int capacity) {
+        disableTrace();
+        trace = new SearchTrace(capacity, sudokuBoard.getDimensionality(), alphabet, vs, units, givens);
+        trace.attach(model.getSolver());
+        return trace;
+    }
+
+    /**
+     * Stop tracing the search. The trace keeps the events recorded so far.
+     */
+    public void disableTrace() {
+        if (trace != null) {
+            trace.detach();
+            trace = null;
+        }
+    }
+
+    /**
+     * Add a stop criterion to the search, which is kept when the search is reset.
+     * If it stops a call to solve, the status is LIMIT_REACHED.
+     * @param criterion the criterion
+     */
+    void addStopCriterion(final Criterion criterion) {
+        stopCriteria.add(criterion);
+        model.getSolver().addStopCriterion(criterion);
+    }
+
+    /**
+     * Check if solve must search the model, rather than letting a subclass search the board in its own way:
+     * a trace or a stop criterion observes the search of the model, and lifted givens change the model.
+     * @return true if the model must be searched
+     */
+    boolean isModelSearchRequired() {
+        return trace != null || !stopCriteria.isEmpty() || !liftedGivens.isEmpty();
+    }
+
+    /**
+     * Accessor for the board, which a subclass that searches the board in its own way writes the solution to.
+     * @return the board
+     */
+    GenSudokuBoard<T> getBoard() {
+        return sudokuBoard;
+    }
+
+    /**
+     * Accessor for the codes of the givens, by cell, with 0 for the cells that are not given.
+     * The array is that of the solver, and must not be modified.
+     * @return the codes of the givens
+     */
+    int[] getGivenCodes() {
+        return givenCodes;
+    }
+
+    long getTimeLimitNanos() {
+        return timeLimitNanos;
+    }
+
+    long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Record the outcome of a search, writing the solution to the board if it is unique.
+     * @param status the outcome
+     * @param first the codes of the first solution found, by cell, or null if it was not kept
+     * @param second the codes of the second solution found, by cell, or null if it was not kept
+     */
+    void setOutcome(final Status status, final int[] first, final int[] second) {
+        this.status = status;
+        firstSolution = first;
+        secondSolution = second;
+        if (status == Status.UNIQUE)
+            for (var cell = 0; cell < first.length; ++cell)
+                sudokuBoard.setCode(cell, first[cell]);
+    }
+
+    /**
+     * Discard any search in progress, returning the model to its state before the first call to solve.
+     * Choco's reset also removes the stop criteria, so they are added back.
+     */
+    private void reset() {
+        final var solver = model.getSolver();
+        solver.reset();
+        solver.addStopCriterion(this::isLimitReached);
+        for (final var criterion : stopCriteria)
+            solver.addStopCriterion(criterion);
+        if (exclusion != null) {
+            model.unpost(exclusion);
+            exclusion = null;
+        }
+    }
+
+    /**
+     * Accessor for the model, for analyses that add their own constraints to it.
+     * @return model
+     */
+    Model getModel() {
+        return model;
+    }
+
+    /**
+     * Accessor for the variable of a cell.
+     * @param cell the index x * side + y of the cell
+     * @return the variable, whose value is the code of the cell's symbol
+     */
+    IntVar getVariable(final int cell) {
+        return vs[cell / side][cell % side];
+    }
+
+    /**
+     * Temporarily remove the given in a cell from the model: see restoreGiven.
+     * @param cell the index x * side + y of the cell, which must hold a given
+     */
+    void liftGiven(final int cell) {
+        reset();
+        model.unpost(givens[cell]);
+        liftedGivens.set(cell);
+    }
+
+    /**
+     * Restore a given removed by liftGiven.
+     * @param cell the index x * side + y of the cell
+     */
+    void restoreGiven(final int cell) {
+        reset();
+        model.post(givens[cell]);
+        liftedGivens.clear(cell);
+    }
+
+    /**
+     * Determine if the model has a solution that also satisfies some temporary constraints.
+     * The search starts from scratch, and the temporary constraints are removed afterwards.
+     * Note that if the solver has a stop criterion, a search that is stopped early also returns false.
+     * @param extra the temporary constraints
+     * @return true if there is a solution, and false otherwise
+     */
+    boolean isSatisfiableWith(final Constraint... extra) {
+        reset();
+        model.post(extra);
+        deadline = System.nanoTime() + timeLimitNanos;
+        final var satisfiable = model.getSolver().solve();
+        reset();
+        model.unpost(extra);
+        return satisfiable;
+    }
+
+    /**
+     * Determine if the model has a solution with only some of its givens, within the limits.
+     * The search starts from scratch. The other givens are left out of the model until they are restored by a later
+     * call, or by restoreGiven, so that successive calls with similar sets of givens change the model very little.
+     * @param kept the cells whose givens to keep
+     * @return TRUE if there is a solution, FALSE if there is none, or null if a limit was reached first
+     */
+    Boolean isSatisfiableWithGivens(final BitSet kept) {
+        reset();
+        for (var cell = 0; cell < givens.length; ++cell) {
+            if (givens[cell] == null || kept.get(cell) != liftedGivens.get(cell))
+                continue;
+            if (kept.get(cell)) {
+                model.post(givens[cell]);
+                liftedGivens.clear(cell);
+            } else {
+                model.unpost(givens[cell]);
+                liftedGivens.set(cell);
+            }
+        }
+
+        final var solver = model.getSolver();
+        deadline = System.nanoTime() + timeLimitNanos;
+        final var satisfiable = solver.solve();
+        final var stopped = !satisfiable && solver.getSearchState() == SearchState.STOPPED;
+        reset();
+        return satisfiable ? Boolean.TRUE : stopped ? null : Boolean.FALSE;
     }
 }
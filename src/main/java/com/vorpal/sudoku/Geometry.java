@@ -0,0 +1,146 @@
+// Geometry.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shape of a Sudoku board of a given dimensionality: which cells make up each unit, which units each cell
+ * belongs to, and which other cells each cell shares a unit with.
+ *
+ * Cells are numbered row by row, i.e. (x, y) is cell x * side + y, and units are numbered as everywhere else: rows are
+ * units 0 to side-1, columns side to 2side-1, and sections 2side to 3side-1, with section (x, y) being
+ * 2side + x * dimensionality + y. The cells of a section are listed row by row.
+ *
+ * Geometries are immutable and cached, so that boards, solvers, and checkers of the same dimensionality share one set
+ * of tables rather than recomputing coordinates on every call. The arrays returned by the accessors belong to the
+ * geometry, and must not be modified.
+ */
+final class Geometry {
+    private static final Map<Integer, Geometry> cache = new ConcurrentHashMap<>();
+
+    private final int dimensionality;
+    private final int side;
+    private final int numCells;
+
+    // The cells of each unit.
+    private final int[][] units;
+
+    // The row, column, and section units of each cell: those of cell c are at 3c, 3c + 1, and 3c + 2.
+    private final int[] cellUnits;
+
+    // The other cells sharing a unit with each cell, in increasing order.
+    private final int[][] peers;
+
+    private Geometry(final int dimensionality) {
+        this.dimensionality = dimensionality;
+        side = dimensionality * dimensionality;
+        numCells = side * side;
+
+        units = new int[3 * side][side];
+        cellUnits = new int[3 * numCells];
+        for (var x = 0; x < side; ++x)
+            for (var y = 0; y < side; ++y) {
+                final var cell = x * side + y;
+                final var section = (x / dimensionality) * dimensionality + y / dimensionality;
+                units[x][y] = cell;
+                units[side + y][x] = cell;
+                units[2 * side + section][(x % dimensionality) * dimensionality + y % dimensionality] = cell;
+                cellUnits[3 * cell] = x;
+                cellUnits[3 * cell + 1] = side + y;
+                cellUnits[3 * cell + 2] = 2 * side + section;
+            }
+
+        // A cell has side-1 peers in each of its units, less the 2(dimensionality-1) that its section shares with its
+        // row and column.
+        final var numPeers = 3 * (side - 1) - 2 * (dimensionality - 1);
+        peers = new int[numCells][];
+        final var seen = new boolean[numCells];
+        for (var cell = 0; cell < numCells; ++cell) {
+            Arrays.fill(seen, false);
+            for (var k = 0; k < 3; ++k)
+                for (final var other : units[cellUnits[3 * cell + k]])
+                    seen[other] = true;
+            seen[cell] = false;
+            final var cellPeers = new int[numPeers];
+            var n = 0;
+            for (var other = 0; other < numCells; ++other)
+                if (seen[other])
+                    cellPeers[n++] = other;
+            peers[cell] = cellPeers;
+        }
+    }
+
+    /**
+     * Get the geometry of boards of a dimensionality.
+     * @param dimensionality the dimensionality, which must be positive
+     * @return the unique geometry for that dimensionality
+     */
+    static Geometry of(final int dimensionality) {
+        if (dimensionality <= 0)
+            throw new IllegalArgumentException("dimensionality must be a positive integer");
+        return cache.computeIfAbsent(dimensionality, Geometry::new);
+    }
+
+    int getDimensionality() {
+        return dimensionality;
+    }
+
+    int getSide() {
+        return side;
+    }
+
+    int getNumCells() {
+        return numCells;
+    }
+
+    /**
+     * The cells of every unit, indexed by unit.
+     * @return the units
+     */
+    int[][] units() {
+        return units;
+    }
+
+    /**
+     * The cells of a unit.
+     * @param unit the unit
+     * @return its cells
+     */
+    int[] unit(final int unit) {
+        return units[unit];
+    }
+
+    /**
+     * The units of every cell: the row, column, and section units of cell c are at 3c, 3c + 1, and 3c + 2.
+     * @return the units of the cells
+     */
+    int[] cellUnits() {
+        return cellUnits;
+    }
+
+    int rowOf(final int cell) {
+        return cellUnits[3 * cell];
+    }
+
+    int columnOf(final int cell) {
+        return cellUnits[3 * cell + 1];
+    }
+
+    int sectionOf(final int cell) {
+        return cellUnits[3 * cell + 2];
+    }
+
+    /**
+     * The cells sharing a row, column, or section with a cell, other than the cell itself.
+     * @param cell the cell
+     * @return its peers, in increasing order
+     */
+    int[] peers(final int cell) {
+        return peers[cell];
+    }
+}
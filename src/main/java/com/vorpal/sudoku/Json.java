@@ -0,0 +1,187 @@
+// Json.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for SudokuService, so that the library does not need a dependency for it: parsing a flat object
+ * whose values are strings, numbers, booleans, or null, and writing one.
+ */
+final class Json {
+    private Json() {}
+
+    /**
+     * Parse a flat JSON object.
+     * @param text the text of the object
+     * @return its members, with numbers as Doubles, in order
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    static Map<String, Object> parseObject(final String text) {
+        final var parser = new Parser(text);
+        final var object = new LinkedHashMap<String, Object>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                final var key = parser.string();
+                parser.expect(':');
+                object.put(key, parser.value());
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.end();
+        return object;
+    }
+
+    /**
+     * Write a flat JSON object.
+     * @param object the members, whose values must be strings, numbers, booleans, or null
+     * @return the text of the object
+     */
+    static String writeObject(final Map<String, ?> object) {
+        final var json = new StringBuilder("{");
+        for (final var entry : object.entrySet()) {
+            if (json.length() > 1)
+                json.append(',');
+            quote(json, entry.getKey());
+            json.append(':');
+            final var value = entry.getValue();
+            if (value instanceof String)
+                quote(json, (String) value);
+            else if (value instanceof Double && !Double.isFinite((Double) value))
+                json.append("null");
+            else
+                json.append(value);
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Append a string to JSON text as a JSON string, escaping it as needed.
+     */
+    static void quote(final StringBuilder json, final String s) {
+        json.append('"');
+        for (var i = 0; i < s.length(); ++i) {
+            final var c = s.charAt(i);
+            switch (c) {
+                case '"':  json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        json.append(String.format("\\u%04x", (int) c));
+                    else
+                        json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(final String text) {
+            this.text = text;
+        }
+
+        private void skipWhitespace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+                ++pos;
+        }
+
+        boolean consume(final char c) {
+            skipWhitespace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                ++pos;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(final char c) {
+            if (!consume(c))
+                throw error("expected '" + c + "'");
+        }
+
+        void end() {
+            skipWhitespace();
+            if (pos != text.length())
+                throw error("unexpected trailing characters");
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (pos == text.length())
+                throw error("expected a value");
+            final var c = text.charAt(pos);
+            if (c == '"')
+                return string();
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            final var start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0)
+                ++pos;
+            try {
+                return Double.parseDouble(text.substring(start, pos));
+            } catch (NumberFormatException ex) {
+                throw error("expected a value");
+            }
+        }
+
+        String string() {
+            expect('"');
+            final var s = new StringBuilder();
+            while (pos < text.length()) {
+                final var c = text.charAt(pos++);
+                if (c == '"')
+                    return s.toString();
+                if (c != '\\') {
+                    s.append(c);
+                    continue;
+                }
+                if (pos == text.length())
+                    break;
+                final var escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'n': s.append('\n'); break;
+                    case 'r': s.append('\r'); break;
+                    case 't': s.append('\t'); break;
+                    case 'b': s.append('\b'); break;
+                    case 'f': s.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > text.length())
+                            throw error("bad unicode escape");
+                        try {
+                            s.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: s.append(escaped);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException("Malformed JSON at position " + pos + ": " + message);
+        }
+    }
+}
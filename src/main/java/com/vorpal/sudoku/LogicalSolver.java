@@ -0,0 +1,391 @@
+// LogicalSolver.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Solves a board the way a person would, by repeatedly applying the easiest Technique that makes progress,
+ * and records which techniques were needed. It never guesses: if no technique applies, it gives up.
+ *
+ * The solver works on the codes of the cells (see Alphabet), with the candidates of each cell stored as a bitmask
+ * in which bit c - 1 represents code c. This limits it to boards with at most 64 symbols, i.e. dimensionality 8.
+ *
+ * A solver can be reused for any number of boards of its dimensionality, but is not thread-safe.
+ */
+final class LogicalSolver {
+    enum Outcome {
+        SOLVED,
+        STUCK,
+        CONTRADICTION
+    }
+
+    static final int MAX_DIMENSIONALITY = 8;
+
+    private final int dimensionality;
+    private final int side;
+    private final int numCells;
+    private final long full;
+
+    // The units and peers of the cells, shared with every board of the dimensionality.
+    private final Geometry geometry;
+
+    // units[u] holds the cells of unit u: rows are units [0, side), columns [side, 2 side), sections [2 side, 3 side).
+    private final int[][] units;
+
+    // The state of the current board.
+    private final int[] cells;
+    private final long[] candidates;
+    private int placed;
+    private boolean contradiction;
+
+    // How many times each technique made progress.
+    private final int[] uses = new int[Technique.values().length];
+
+    LogicalSolver(final int dimensionality) {
+        if (dimensionality <= 0 || dimensionality > MAX_DIMENSIONALITY)
+            throw new IllegalArgumentException("LogicalSolver supports dimensionality 1 to " + MAX_DIMENSIONALITY);
+
+        this.dimensionality = dimensionality;
+        side = dimensionality * dimensionality;
+        numCells = side * side;
+        full = side == 64 ? -1L : (1L << side) - 1;
+
+        geometry = Geometry.of(dimensionality);
+        units = geometry.units();
+
+        cells = new int[numCells];
+        candidates = new long[numCells];
+    }
+
+    int getDimensionality() {
+        return dimensionality;
+    }
+
+    /**
+     * Solve a board as far as the techniques allow.
+     * @param givens the codes of the cells of the board, which are not modified
+     * @return the outcome
+     */
+    Outcome solve(final int[] givens) {
+        if (givens.length != numCells)
+            throw new IllegalArgumentException("board must have " + numCells + " cells");
+
+        Arrays.fill(cells, 0);
+        Arrays.fill(candidates, full);
+        Arrays.fill(uses, 0);
+        placed = 0;
+        contradiction = false;
+
+        for (var cell = 0; cell < numCells; ++cell)
+            if (givens[cell] != 0)
+                place(cell, givens[cell]);
+
+        while (!contradiction && placed < numCells) {
+            if (!step())
+                return Outcome.STUCK;
+        }
+        return contradiction ? Outcome.CONTRADICTION : Outcome.SOLVED;
+    }
+
+    /**
+     * The codes of the cells as far as they were solved, with 0 for unsolved cells.
+     * @return the cells, which are overwritten by the next call to solve
+     */
+    int[] getCells() {
+        return cells;
+    }
+
+    /**
+     * The number of times that a technique made progress during the last call to solve.
+     * @param technique the technique
+     * @return the number of uses
+     */
+    int getUses(final Technique technique) {
+        return uses[technique.ordinal()];
+    }
+
+    /**
+     * The hardest technique needed during the last call to solve, or GUESS if it got stuck.
+     * @return the hardest technique, or null if the board was already complete
+     */
+    Technique getHardest() {
+        if (!contradiction && placed < numCells)
+            return Technique.GUESS;
+        for (var i = uses.length - 1; i >= 0; --i)
+            if (uses[i] > 0)
+                return Technique.values()[i];
+        return null;
+    }
+
+    /**
+     * Apply the easiest technique that makes progress.
+     * @return true if some technique made progress, and false otherwise
+     */
+    private boolean step() {
+        for (final var technique : Technique.values()) {
+            final boolean progress;
+            switch (technique) {
+                case HIDDEN_SINGLE:     progress = hiddenSingles(); break;
+                case NAKED_SINGLE:      progress = nakedSingles(); break;
+                case LOCKED_CANDIDATES: progress = lockedCandidates(); break;
+                case NAKED_PAIR:        progress = nakedSubsets(2); break;
+                case X_WING:            progress = xWings(); break;
+                case HIDDEN_PAIR:       progress = hiddenSubsets(2); break;
+                case NAKED_TRIPLE:      progress = nakedSubsets(3); break;
+                case HIDDEN_TRIPLE:     progress = hiddenSubsets(3); break;
+                default:                progress = false;
+            }
+            if (progress) {
+                ++uses[technique.ordinal()];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Place a code in a cell, and remove it from the candidates of the cell's peers.
+     */
+    private void place(final int cell, final int code) {
+        final var bit = 1L << (code - 1);
+        if (cells[cell] != 0 || (candidates[cell] & bit) == 0) {
+            contradiction = true;
+            return;
+        }
+        cells[cell] = code;
+        candidates[cell] = bit;
+        ++placed;
+        for (final var peer : geometry.peers(cell))
+            eliminate(peer, bit);
+    }
+
+    /**
+     * Remove candidates from a cell.
+     * @return true if any candidates were removed
+     */
+    private boolean eliminate(final int cell, final long bits) {
+        if ((candidates[cell] & bits) == 0)
+            return false;
+        candidates[cell] &= ~bits;
+        if (candidates[cell] == 0)
+            contradiction = true;
+        return true;
+    }
+
+    private boolean nakedSingles() {
+        var progress = false;
+        for (var cell = 0; cell < numCells && !contradiction; ++cell)
+            if (cells[cell] == 0 && Long.bitCount(candidates[cell]) == 1) {
+                place(cell, Long.numberOfTrailingZeros(candidates[cell]) + 1);
+                progress = true;
+            }
+        return progress;
+    }
+
+    private boolean hiddenSingles() {
+        var progress = false;
+        for (final var unit : units) {
+            for (var code = 1; code <= side && !contradiction; ++code) {
+                final var bit = 1L << (code - 1);
+                var count = 0;
+                var where = -1;
+                var isPlaced = false;
+                for (final var cell : unit) {
+                    if (cells[cell] == code) {
+                        isPlaced = true;
+                        break;
+                    }
+                    if (cells[cell] == 0 && (candidates[cell] & bit) != 0) {
+                        ++count;
+                        where = cell;
+                    }
+                }
+                if (isPlaced)
+                    continue;
+                if (count == 0) {
+                    contradiction = true;
+                } else if (count == 1) {
+                    place(where, code);
+                    progress = true;
+                }
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Pointing and claiming: if the candidates for a code in one unit all lie in a second unit, the code can be
+     * eliminated from the rest of the second unit.
+     */
+    private boolean lockedCandidates() {
+        var progress = false;
+        for (final var unit : units)
+            for (var code = 1; code <= side; ++code) {
+                final var bit = 1L << (code - 1);
+                var row = -2;
+                var column = -2;
+                var section = -2;
+                for (final var cell : unit) {
+                    if (cells[cell] != 0 || (candidates[cell] & bit) == 0)
+                        continue;
+                    final var rowOf = geometry.rowOf(cell);
+                    final var columnOf = geometry.columnOf(cell);
+                    final var sectionOf = geometry.sectionOf(cell);
+                    row = row == -2 || row == rowOf ? rowOf : -1;
+                    column = column == -2 || column == columnOf ? columnOf : -1;
+                    section = section == -2 || section == sectionOf ? sectionOf : -1;
+                }
+                for (final var other : new int[] {row, column, section})
+                    if (other >= 0 && units[other] != unit)
+                        progress |= eliminateOutside(other, unit, bit);
+            }
+        return progress;
+    }
+
+    /**
+     * Eliminate candidates from the unsolved cells of one unit that are not in another.
+     */
+    private boolean eliminateOutside(final int target, final int[] keep, final long bits) {
+        var progress = false;
+        for (final var cell : units[target])
+            if (cells[cell] == 0 && !contains(keep, cell))
+                progress |= eliminate(cell, bits);
+        return progress;
+    }
+
+    private static boolean contains(final int[] unit, final int cell) {
+        for (final var c : unit)
+            if (c == cell)
+                return true;
+        return false;
+    }
+
+    /**
+     * Naked subsets: if k unsolved cells of a unit have only k candidates between them, those candidates can be
+     * eliminated from the other cells of the unit.
+     */
+    private boolean nakedSubsets(final int k) {
+        final var chosen = new int[k];
+        for (final var unit : units)
+            if (nakedSubsets(unit, k, 0, 0, 0L, chosen))
+                return true;
+        return false;
+    }
+
+    private boolean nakedSubsets(final int[] unit, final int k, final int start, final int depth,
+                                 final long union, final int[] chosen) {
+        if (depth == k) {
+            if (Long.bitCount(union) != k)
+                return false;
+            var progress = false;
+            for (final var cell : unit)
+                if (cells[cell] == 0 && !contains(chosen, cell))
+                    progress |= eliminate(cell, union);
+            return progress;
+        }
+        for (var i = start; i < unit.length; ++i) {
+            final var cell = unit[i];
+            final var c = candidates[cell];
+            if (cells[cell] != 0 || Long.bitCount(c) > k || Long.bitCount(union | c) > k)
+                continue;
+            chosen[depth] = cell;
+            if (nakedSubsets(unit, k, i + 1, depth + 1, union | c, chosen))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hidden subsets: if k codes can only go in the same k cells of a unit, those cells can hold no other codes.
+     */
+    private boolean hiddenSubsets(final int k) {
+        // For each unit, positions[code - 1] is the bitmask of the indices in the unit where code can go.
+        final var positions = new long[side];
+        final var chosen = new int[k];
+        for (final var unit : units) {
+            Arrays.fill(positions, 0L);
+            for (var i = 0; i < side; ++i) {
+                final var cell = unit[i];
+                if (cells[cell] != 0)
+                    continue;
+                for (var c = candidates[cell]; c != 0; c &= c - 1)
+                    positions[Long.numberOfTrailingZeros(c)] |= 1L << i;
+            }
+            if (hiddenSubsets(unit, positions, k, 0, 0, 0L, chosen))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean hiddenSubsets(final int[] unit, final long[] positions, final int k, final int start,
+                                  final int depth, final long union, final int[] chosen) {
+        if (depth == k) {
+            if (Long.bitCount(union) != k)
+                return false;
+            var codes = 0L;
+            for (final var c : chosen)
+                codes |= 1L << c;
+            var progress = false;
+            for (var p = union; p != 0; p &= p - 1)
+                progress |= eliminate(unit[Long.numberOfTrailingZeros(p)], ~codes);
+            return progress;
+        }
+        for (var c = start; c < side; ++c) {
+            final var p = positions[c];
+            if (p == 0 || Long.bitCount(p) > k || Long.bitCount(union | p) > k)
+                continue;
+            chosen[depth] = c;
+            if (hiddenSubsets(unit, positions, k, c + 1, depth + 1, union | p, chosen))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * X-wing: if a code can only go in the same two columns of two rows, it can be eliminated from the rest of
+     * those columns, and symmetrically for rows.
+     */
+    private boolean xWings() {
+        for (var code = 1; code <= side; ++code) {
+            final var bit = 1L << (code - 1);
+            if (xWing(bit, 0, side) || xWing(bit, side, 0))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Look for an x-wing in the base units [base, base + side), eliminating from the cover units [cover, cover + side).
+     */
+    private boolean xWing(final long bit, final int base, final int cover) {
+        final var positions = new long[side];
+        for (var b = 0; b < side; ++b)
+            for (var i = 0; i < side; ++i) {
+                final var cell = units[base + b][i];
+                if (cells[cell] == 0 && (candidates[cell] & bit) != 0)
+                    positions[b] |= 1L << i;
+            }
+
+        for (var b1 = 0; b1 < side; ++b1) {
+            if (Long.bitCount(positions[b1]) != 2)
+                continue;
+            for (var b2 = b1 + 1; b2 < side; ++b2) {
+                if (positions[b2] != positions[b1])
+                    continue;
+                var progress = false;
+                for (var p = positions[b1]; p != 0; p &= p - 1) {
+                    final var coverUnit = units[cover + Long.numberOfTrailingZeros(p)];
+                    for (var i = 0; i < side; ++i)
+                        if (i != b1 && i != b2 && cells[coverUnit[i]] == 0)
+                            progress |= eliminate(coverUnit[i], bit);
+                }
+                if (progress)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
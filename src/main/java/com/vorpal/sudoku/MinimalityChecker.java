@@ -0,0 +1,192 @@
+// MinimalityChecker.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Determines whether a puzzle is minimal, i.e. whether removing any one of its clues makes its solution
+ * non-unique, and if not, which of its clues are redundant.
+ *
+ * Rather than solving each puzzle with a clue removed from scratch (two searches per clue, to find a solution
+ * and then prove it unique), the puzzle is solved once, and its solution S is shared by all the checks: removing
+ * the clue in cell c leaves the solution unique if and only if there is no solution with a value other than S(c)
+ * in c, since any other solution with S(c) in c would also be a solution of the original puzzle. This takes one
+ * search per clue, which is often avoided altogether when LogicalSolver can solve the reduced puzzle.
+ *
+ * The checks are spread over a number of workers on a fork-join pool of their own, each of which reuses a single
+ * GenSudokuCP for all of its clues. When we only need to know whether the puzzle is minimal, all the workers stop
+ * at the first redundant clue.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class MinimalityChecker {
+    /**
+     * The result of the analysis of a puzzle.
+     */
+    public static final class Report {
+        private final boolean unique;
+        private final List<int[]> redundantClues;
+
+        private Report(final boolean unique, final List<int[]> redundantClues) {
+            this.unique = unique;
+            this.redundantClues = redundantClues;
+        }
+
+        /**
+         * Minimality is only defined for puzzles with a unique solution.
+         * @return true if the puzzle has a unique solution, and false otherwise
+         */
+        public boolean isUnique() {
+            return unique;
+        }
+
+        /**
+         * Check if the puzzle is minimal.
+         * @return true if the puzzle has a unique solution and no redundant clues, and false otherwise
+         */
+        public boolean isMinimal() {
+            return unique && redundantClues.isEmpty();
+        }
+
+        /**
+         * The clues that can each be removed, on its own, without making the solution non-unique.
+         * Note that removing several of them at once may make the solution non-unique.
+         * @return copies of the coordinates {x, y} of the redundant clues, row by row
+         */
+        public List<int[]> getRedundantClues() {
+            final var copies = new ArrayList<int[]>(redundantClues.size());
+            for (final var clue : redundantClues)
+                copies.add(clue.clone());
+            return copies;
+        }
+    }
+
+    private final int parallelism;
+
+    /**
+     * Create a checker that uses one worker per available processor.
+     */
+    public MinimalityChecker() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a checker.
+     * @param parallelism the number of workers
+     */
+    public MinimalityChecker(final int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be a positive integer");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Find all the redundant clues of a puzzle. The board is not modified.
+     * @param board the puzzle
+     * @return the report
+     */
+    public <T> Report analyze(final GenSudokuBoard<T> board) {
+        return analyze(board, false);
+    }
+
+    /**
+     * Check whether a puzzle is minimal, stopping as soon as a redundant clue is found. The board is not modified.
+     * @param board the puzzle
+     * @return true if the puzzle has a unique solution and is minimal, and false otherwise
+     */
+    public <T> boolean isMinimal(final GenSudokuBoard<T> board) {
+        return analyze(board, true).isMinimal();
+    }
+
+    private <T> Report analyze(final GenSudokuBoard<T> board, final boolean stopEarly) {
+        final var snapshot = board.snapshot();
+        final var dimensionality = snapshot.getDimensionality();
+        final var side = dimensionality * dimensionality;
+        final var givens = snapshot.getCells();
+
+        // Solve the puzzle once: every check needs its solution.
+        final var solved = snapshot.thaw();
+        if (!new GenSudokuCP<>(solved).solve())
+            return new Report(false, Collections.emptyList());
+        final var solution = solved.freeze().getCells();
+
+        final var clues = IntStream.range(0, givens.length).filter(i -> givens[i] != 0).toArray();
+        final var next = new AtomicInteger();
+        final var stop = new AtomicBoolean();
+        final var redundant = new ConcurrentLinkedQueue<Integer>();
+
+        final var workers = Math.max(1, Math.min(parallelism, clues.length));
+        final var threads = new ForkJoinPool(workers);
+        try {
+            threads.submit(() -> IntStream.range(0, workers).parallel().forEach(w -> {
+                final var solver = new GenSudokuCP<>(snapshot.thaw());
+                solver.addStopCriterion(stop::get);
+                final var logical = dimensionality <= LogicalSolver.MAX_DIMENSIONALITY
+                        ? new LogicalSolver(dimensionality) : null;
+                final var reduced = givens.clone();
+
+                for (var i = next.getAndIncrement(); i < clues.length && !stop.get(); i = next.getAndIncrement()) {
+                    final var cell = clues[i];
+                    if (isRedundant(solver, logical, reduced, cell, solution[cell]) && !stop.get()) {
+                        redundant.add(cell);
+                        if (stopEarly)
+                            stop.set(true);
+                    }
+                }
+            })).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while checking minimality", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            threads.shutdown();
+        }
+
+        final var cells = new ArrayList<>(redundant);
+        Collections.sort(cells);
+        final var coordinates = new ArrayList<int[]>(cells.size());
+        for (final var cell : cells)
+            coordinates.add(new int[] {cell / side, cell % side});
+        return new Report(true, Collections.unmodifiableList(coordinates));
+    }
+
+    /**
+     * Check if the puzzle still has a unique solution with the clue in a cell removed.
+     * @param solver a solver for the puzzle, which is left as it was found
+     * @param logical a logical solver, or null if the puzzle is too large for one
+     * @param reduced the givens, which are left as they were found
+     * @param cell the cell
+     * @param code the code of the cell in the solution
+     * @return true if the clue is redundant, and false otherwise
+     */
+    private static boolean isRedundant(final GenSudokuCP<?> solver, final LogicalSolver logical,
+                                       final int[] reduced, final int cell, final int code) {
+        // If the techniques can solve the reduced puzzle, its solution is unique.
+        if (logical != null) {
+            reduced[cell] = 0;
+            final var outcome = logical.solve(reduced);
+            reduced[cell] = code;
+            if (outcome == LogicalSolver.Outcome.SOLVED)
+                return true;
+        }
+
+        solver.liftGiven(cell);
+        final var variable = solver.getVariable(cell);
+        final var other = solver.isSatisfiableWith(solver.getModel().arithm(variable, "!=", code));
+        solver.restoreGiven(cell);
+        return !other;
+    }
+}
@@ -0,0 +1,326 @@
+// PuzzleIndex.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * An on-disk, memory-mapped set of boards of a fixed dimensionality, for answering "have we seen this puzzle
+ * before?" over corpora too large to hold comfortably on the heap.
+ *
+ * Boards are stored in their packed encoding (see BoardSnapshot.pack) in an open-addressing hash table with
+ * linear probing, so membership tests take expected constant time. The index is append-only: boards can be
+ * added, but never removed. When the table becomes half full, it is rehashed into a file of twice the size.
+ * To find boards that are equivalent up to a relabeling of their symbols, add and look up normalized snapshots
+ * (see BoardSnapshot.normalizeSymbols).
+ *
+ * Since the packed encoding stores codes rather than symbols, the numbering of the symbols must be the same in
+ * every run that uses the index, which is the case for boards over Comparable symbols such as SudokuBoard. Boards
+ * over other symbols can only be added and looked up as normalized snapshots, whose codes do not depend on the
+ * numbering.
+ *
+ * An index is not thread-safe, and a file must not be opened by more than one index at a time.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class PuzzleIndex implements Closeable {
+    // The file starts with a header of HEADER_SIZE bytes, followed by the slots of the table.
+    private static final long MAGIC = 0x5355444f4b554958L; // SUDOKUIX
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int DIMENSIONALITY_OFFSET = 12;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int SIZE_OFFSET = 24;
+
+    private static final long MIN_CAPACITY = 1024;
+
+    // A MappedByteBuffer cannot exceed 2GB, so we map the table in segments of at most this many bytes.
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private static final byte EMPTY = 0;
+    private static final byte OCCUPIED = 1;
+
+    private final Path path;
+    private final int dimensionality;
+
+    // Each slot is a flag byte followed by the packed encoding of a board.
+    private final int packedSize;
+    private final int slotSize;
+    private final int slotsPerSegment;
+
+    // Scratch space for the packed encoding of the board being added or looked up.
+    private final byte[] key;
+
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer[] segments;
+
+    // The number of slots, which is always a power of two, and the number of occupied slots.
+    private long capacity;
+    private long size;
+
+    private PuzzleIndex(final Path path, final int dimensionality) {
+        this.path = path;
+        this.dimensionality = dimensionality;
+        packedSize = BoardCodec.packedSize(dimensionality);
+        slotSize = packedSize + 1;
+        slotsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / slotSize);
+        key = new byte[packedSize];
+    }
+
+    /**
+     * Open an index, creating it if it does not exist.
+     * @param path the file holding the index
+     * @param dimensionality the dimensionality of the boards in the index
+     * @return the index
+     * @throws IOException if the file cannot be opened, or is not an index of boards of this dimensionality
+     */
+    public static PuzzleIndex open(final Path path, final int dimensionality) throws IOException {
+        return open(path, dimensionality, 0);
+    }
+
+    /**
+     * Open an index, creating it if it does not exist, with room for at least the specified number of boards
+     * before it needs to be rehashed. Use this before bulk loading a known number of boards.
+     * @param path the file holding the index
+     * @param dimensionality the dimensionality of the boards in the index
+     * @param expectedSize the number of boards the index is expected to hold
+     * @return the index
+     * @throws IOException if the file cannot be opened, or is not an index of boards of this dimensionality
+     */
+    public static PuzzleIndex open(final Path path, final int dimensionality, final long expectedSize)
+            throws IOException {
+        if (dimensionality <= 0)
+            throw new IllegalArgumentException("dimensionality must be a positive integer");
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expectedSize must be nonnegative");
+
+        final var index = new PuzzleIndex(path, dimensionality);
+        if (Files.exists(path) && Files.size(path) > 0) {
+            index.map(path);
+            index.reserve(expectedSize);
+        } else {
+            index.create(path, capacityFor(expectedSize));
+        }
+        return index;
+    }
+
+    /**
+     * The number of boards in the index.
+     * @return the size of the index
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Check if a board is in the index.
+     * @param snapshot a snapshot of the board
+     * @return true if the board has been added to the index, and false otherwise
+     */
+    public boolean contains(final BoardSnapshot<?> snapshot) {
+        encode(snapshot);
+        return find() >= 0;
+    }
+
+    /**
+     * Add a board to the index.
+     * @param snapshot a snapshot of the board
+     * @return true if the board was added, and false if it was already in the index
+     * @throws IOException if the index needed to be rehashed and this failed
+     */
+    public boolean add(final BoardSnapshot<?> snapshot) throws IOException {
+        encode(snapshot);
+        if (find() >= 0)
+            return false;
+        reserve(size + 1);
+        insert(-find() - 1);
+        return true;
+    }
+
+    /**
+     * Add a number of boards to the index, rehashing at most once.
+     * @param snapshots snapshots of the boards
+     * @return the number of boards that were added, i.e. were not already in the index
+     * @throws IOException if the index needed to be rehashed and this failed
+     */
+    public long addAll(final Collection<? extends BoardSnapshot<?>> snapshots) throws IOException {
+        reserve(size + snapshots.size());
+        var added = 0L;
+        for (final var snapshot : snapshots) {
+            encode(snapshot);
+            final var slot = find();
+            if (slot < 0) {
+                insert(-slot - 1);
+                ++added;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Write any changes to the index through to the storage device.
+     */
+    public void force() {
+        header.force();
+        for (final var segment : segments)
+            segment.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Pack a snapshot into the key array.
+     * @param snapshot the snapshot
+     */
+    private void encode(final BoardSnapshot<?> snapshot) {
+        if (snapshot.getDimensionality() != dimensionality)
+            throw new IllegalArgumentException("index requires boards of dimensionality " + dimensionality);
+        if (!snapshot.getAlphabet().isStable() && snapshot.normalizeSymbols() != snapshot)
+            throw new IllegalArgumentException(
+                    "index requires normalized snapshots of boards over symbols without a stable numbering");
+        BoardCodec.pack(dimensionality, snapshot.getCells(), key, 0);
+    }
+
+    /**
+     * Find the key in the table.
+     * @return the slot holding the key if it is present, and otherwise -(s + 1), where s is the empty slot
+     *         in which it should be inserted
+     */
+    private long find() {
+        final var mask = capacity - 1;
+        for (var slot = BoardCodec.hash64(key, 0, packedSize) & mask;; slot = (slot + 1) & mask) {
+            final var segment = segments[(int) (slot / slotsPerSegment)];
+            final var base = (int) (slot % slotsPerSegment) * slotSize;
+            if (segment.get(base) == EMPTY)
+                return -slot - 1;
+            if (matches(segment, base + 1))
+                return slot;
+        }
+    }
+
+    private boolean matches(final MappedByteBuffer segment, final int offset) {
+        for (var i = 0; i < packedSize; ++i)
+            if (segment.get(offset + i) != key[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Write the key into an empty slot.
+     * @param slot the slot
+     */
+    private void insert(final long slot) {
+        final var segment = segments[(int) (slot / slotsPerSegment)];
+        final var base = (int) (slot % slotsPerSegment) * slotSize;
+        for (var i = 0; i < packedSize; ++i)
+            segment.put(base + 1 + i, key[i]);
+        segment.put(base, OCCUPIED);
+        header.putLong(SIZE_OFFSET, ++size);
+    }
+
+    /**
+     * Make sure that the table can hold the specified number of boards, rehashing it if necessary.
+     * @param expectedSize the number of boards
+     * @throws IOException if rehashing fails
+     */
+    private void reserve(final long expectedSize) throws IOException {
+        final var required = capacityFor(expectedSize);
+        if (required <= capacity)
+            return;
+
+        // Build the new table beside the old one, and then replace the old one with it.
+        final var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        final var rehashed = new PuzzleIndex(tmp, dimensionality);
+        rehashed.create(tmp, required);
+        for (var slot = 0L; slot < capacity; ++slot) {
+            final var segment = segments[(int) (slot / slotsPerSegment)];
+            final var base = (int) (slot % slotsPerSegment) * slotSize;
+            if (segment.get(base) == EMPTY)
+                continue;
+            for (var i = 0; i < packedSize; ++i)
+                rehashed.key[i] = segment.get(base + 1 + i);
+            rehashed.insert(-rehashed.find() - 1);
+        }
+        rehashed.close();
+        channel.close();
+
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(path);
+    }
+
+    /**
+     * The capacity of a table that can hold the specified number of boards while staying at most half full.
+     * @param expectedSize the number of boards
+     * @return the capacity, which is a power of two
+     */
+    private static long capacityFor(final long expectedSize) {
+        var capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+
+    /**
+     * Create a new, empty index file.
+     * @param file the file
+     * @param newCapacity the number of slots
+     * @throws IOException if the file cannot be created
+     */
+    private void create(final Path file, final long newCapacity) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        capacity = newCapacity;
+        size = 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        header.putLong(MAGIC_OFFSET, MAGIC);
+        header.putInt(VERSION_OFFSET, VERSION);
+        header.putInt(DIMENSIONALITY_OFFSET, dimensionality);
+        header.putLong(CAPACITY_OFFSET, capacity);
+        header.putLong(SIZE_OFFSET, size);
+        mapSegments();
+    }
+
+    /**
+     * Map an existing index file, checking that its header is consistent with this index.
+     * @param file the file
+     * @throws IOException if the file cannot be mapped or is not a compatible index
+     */
+    private void map(final Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (header.getLong(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION)
+            throw new IOException("Not a puzzle index: " + file);
+        if (header.getInt(DIMENSIONALITY_OFFSET) != dimensionality)
+            throw new IOException("Puzzle index " + file + " holds boards of dimensionality "
+                    + header.getInt(DIMENSIONALITY_OFFSET));
+        capacity = header.getLong(CAPACITY_OFFSET);
+        size = header.getLong(SIZE_OFFSET);
+        mapSegments();
+    }
+
+    private void mapSegments() throws IOException {
+        final var numSegments = (int) ((capacity + slotsPerSegment - 1) / slotsPerSegment);
+        segments = new MappedByteBuffer[numSegments];
+        for (var i = 0; i < numSegments; ++i) {
+            final var first = (long) i * slotsPerSegment;
+            final var slots = Math.min(slotsPerSegment, capacity - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + first * slotSize, slots * slotSize);
+        }
+    }
+}
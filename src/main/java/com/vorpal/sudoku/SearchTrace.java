@@ -0,0 +1,381 @@
+// SearchTrace.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.chocosolver.solver.ICause;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.Constraint;
+import org.chocosolver.solver.constraints.Propagator;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.explanations.IExplanationEngine;
+import org.chocosolver.solver.explanations.NoExplanationEngine;
+import org.chocosolver.solver.search.loop.monitors.IMonitorContradiction;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.search.loop.monitors.IMonitorUpBranch;
+import org.chocosolver.solver.search.strategy.decision.Decision;
+import org.chocosolver.solver.variables.IntVar;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A trace of the search of a GenSudokuCP, for finding out where the time goes when a puzzle is slow to solve.
+ * Enable one with GenSudokuCP.enableTrace.
+ *
+ * The trace records the events of the search into a ring buffer that is allocated up front, so that recording
+ * allocates nothing, and only the most recent events are kept once it is full:
+ * 1. decisions (a cell is set to a value) and refutations (a cell is not set to a value);
+ * 2. the values removed from the cells by propagation, and the cells that propagation fixes or whose bounds it
+ *    moves, along with the row, column, or section whose allDifferent constraint did the pruning, or the given
+ *    that did it;
+ * 3. backtracks, contradictions (and the unit whose constraint detected them), and solutions.
+ * Each event is stamped with the time since the trace was enabled, and the depth of the search.
+ * Separately from the buffer, the number of values pruned by each unit is counted over the whole search.
+ *
+ * Propagation events are captured through the solver's explanation hook, which Choco calls for every change to a
+ * domain; when no trace is enabled, that hook is Choco's own no-op, so tracing costs nothing unless it is used.
+ *
+ * The events can be exported as JSON lines, one object per event, or in a compact binary form.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SearchTrace {
+    /**
+     * The kinds of events.
+     */
+    public enum EventType {
+        // The search set a cell to a value.
+        DECISION,
+
+        // The search, having backtracked, removed the value of a decision from its cell.
+        REFUTATION,
+
+        // Propagation removed a value from a cell.
+        REMOVE,
+
+        // Propagation set a cell to a value.
+        INSTANTIATE,
+
+        // Propagation moved a bound of the values of a cell to a value.
+        BOUND,
+
+        // The search backtracked.
+        BACKTRACK,
+
+        // Propagation found that there are no solutions below the current node.
+        CONTRADICTION,
+
+        // The search found a solution.
+        SOLUTION;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+
+    // Events are packed into a long: the type, depth, source, cell, and value, from the highest bits to the lowest.
+    private static final int TYPE_SHIFT = 60;
+    private static final int DEPTH_SHIFT = 44;
+    private static final int SOURCE_SHIFT = 30;
+    private static final int CELL_SHIFT = 10;
+    private static final long DEPTH_MASK = 0xFFFF;
+    private static final long SOURCE_MASK = 0x3FFF;
+    private static final long CELL_MASK = 0xFFFFF;
+    private static final long VALUE_MASK = 0x3FF;
+
+    // The sources of events other than the units, which are numbered from 0.
+    private static final int SOURCE_NONE = 0x3FFF;
+    private static final int SOURCE_GIVEN = 0x3FFE;
+    private static final int SOURCE_DECISION = 0x3FFD;
+    private static final int SOURCE_OTHER = 0x3FFC;
+
+    // The magic number of the binary format.
+    private static final int MAGIC = 0x53545243; // STRC
+
+    private final int dimensionality;
+    private final int side;
+    private final Alphabet<?> alphabet;
+
+    // The cells of the variables, and the sources of the constraints.
+    private final Map<IntVar, Integer> cells = new IdentityHashMap<>();
+    private final Map<Constraint, Integer> sources = new IdentityHashMap<>();
+
+    // The ring buffer: the packed events and their times, and the number of events ever recorded.
+    private final long[] events;
+    private final long[] times;
+    private final int mask;
+    private long count;
+
+    // The number of values pruned by each unit.
+    private final long[] prunings;
+
+    private final long start = System.nanoTime();
+    private final Recorder recorder = new Recorder();
+    private Solver solver;
+
+    /**
+     * Create a trace of the search for a model.
+     * @param capacity the number of events to keep, which is rounded up to a power of two
+     * @param dimensionality the dimensionality of the board
+     * @param alphabet the symbols of the board
+     * @param vs the variables of the cells
+     * @param units the allDifferent constraints of the rows, columns, and sections, in that order
+     * @param givens the constraints fixing the givens, indexed by cell, or null for cells without one
+     */
+    SearchTrace(final int capacity, final int dimensionality, final Alphabet<?> alphabet,
+                final IntVar[][] vs, final Constraint[] units, final Constraint[] givens) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        final var size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        events = new long[size];
+        times = new long[size];
+        mask = size - 1;
+
+        this.dimensionality = dimensionality;
+        this.alphabet = alphabet;
+        side = dimensionality * dimensionality;
+        for (var x = 0; x < side; ++x)
+            for (var y = 0; y < side; ++y)
+                cells.put(vs[x][y], x * side + y);
+        for (var i = 0; i < units.length; ++i)
+            sources.put(units[i], i);
+        for (final var given : givens)
+            if (given != null)
+                sources.put(given, SOURCE_GIVEN);
+        prunings = new long[units.length];
+    }
+
+    /**
+     * Start recording the search of a solver.
+     */
+    void attach(final Solver solver) {
+        this.solver = solver;
+        solver.setExplainer(recorder);
+        solver.plugMonitor(recorder);
+    }
+
+    /**
+     * Stop recording.
+     */
+    void detach() {
+        solver.setExplainer(NoExplanationEngine.SINGLETON);
+        solver.unplugMonitor(recorder);
+    }
+
+    /**
+     * The number of events the trace can hold.
+     * @return the capacity
+     */
+    public int capacity() {
+        return events.length;
+    }
+
+    /**
+     * The number of events recorded since the trace was enabled or last cleared, including those that have since
+     * been overwritten.
+     * @return the count
+     */
+    public long getEventCount() {
+        return count;
+    }
+
+    /**
+     * The number of events held by the trace, i.e. the most recent ones.
+     * @return the size
+     */
+    public int size() {
+        return (int) Math.min(count, events.length);
+    }
+
+    /**
+     * The number of events that were overwritten because the trace was full.
+     * @return the number of events lost
+     */
+    public long getDropped() {
+        return count - size();
+    }
+
+    /**
+     * The number of values pruned by each unit over the whole search, which is not limited by the capacity.
+     * The units are numbered as in unitName.
+     * @return the counts, indexed by unit
+     */
+    public long[] getPrunings() {
+        return prunings.clone();
+    }
+
+    /**
+     * The name of a unit.
+     * @param unit the unit: rows are 0 to side-1, columns side to 2side-1, and sections 2side to 3side-1,
+     *             with section (x, y) being 2side + x * dimensionality + y
+     * @return a name such as "row 3", "column 0", or "section (1,2)"
+     */
+    public String unitName(final int unit) {
+        if (unit < 0 || unit >= 3 * side)
+            throw new IllegalArgumentException("Illegal unit: " + unit);
+        if (unit < side)
+            return "row " + unit;
+        if (unit < 2 * side)
+            return "column " + (unit - side);
+        final var section = unit - 2 * side;
+        return String.format("section (%d,%d)", section / dimensionality, section % dimensionality);
+    }
+
+    /**
+     * Discard all the events and prunings recorded so far.
+     */
+    public void clear() {
+        count = 0;
+        Arrays.fill(prunings, 0);
+    }
+
+    private void record(final EventType type, final int source, final int cell, final int value) {
+        final var depth = solver.getEnvironment().getWorldIndex();
+        final var idx = (int) (count++ & mask);
+        events[idx] = ((long) type.ordinal() << TYPE_SHIFT)
+                | ((depth & DEPTH_MASK) << DEPTH_SHIFT)
+                | ((source & SOURCE_MASK) << SOURCE_SHIFT)
+                | ((cell & CELL_MASK) << CELL_SHIFT)
+                | (value & VALUE_MASK);
+        times[idx] = System.nanoTime() - start;
+    }
+
+    private int source(final ICause cause) {
+        if (cause instanceof Decision)
+            return SOURCE_DECISION;
+        if (cause instanceof Propagator) {
+            final var source = sources.get(((Propagator<?>) cause).getConstraint());
+            if (source != null)
+                return source;
+        }
+        return SOURCE_OTHER;
+    }
+
+    private void recordDomainChange(final EventType type, final IntVar var, final int value, final ICause cause) {
+        final var cell = cells.get(var);
+        if (cell == null)
+            return;
+        final var source = source(cause);
+        if (source < prunings.length)
+            ++prunings[source];
+        record(type, source, cell, value);
+    }
+
+    /**
+     * Receives the events from Choco.
+     */
+    private final class Recorder implements IExplanationEngine, IMonitorUpBranch, IMonitorContradiction,
+            IMonitorSolution {
+        @Override
+        public void removeValue(final IntVar var, final int value, final ICause cause) {
+            recordDomainChange(cause instanceof Decision ? EventType.REFUTATION : EventType.REMOVE, var, value, cause);
+        }
+
+        @Override
+        public void instantiateTo(final IntVar var, final int value, final ICause cause,
+                                  final int oldLB, final int oldUB) {
+            recordDomainChange(cause instanceof Decision ? EventType.DECISION : EventType.INSTANTIATE,
+                    var, value, cause);
+        }
+
+        @Override
+        public void updateLowerBound(final IntVar var, final int old, final int value, final ICause cause) {
+            recordDomainChange(EventType.BOUND, var, value, cause);
+        }
+
+        @Override
+        public void updateUpperBound(final IntVar var, final int old, final int value, final ICause cause) {
+            recordDomainChange(EventType.BOUND, var, value, cause);
+        }
+
+        @Override
+        public void beforeUpBranch() {
+            record(EventType.BACKTRACK, SOURCE_NONE, (int) CELL_MASK, 0);
+        }
+
+        @Override
+        public void onContradiction(final ContradictionException ex) {
+            record(EventType.CONTRADICTION, source(ex.c), (int) CELL_MASK, 0);
+        }
+
+        @Override
+        public void onSolution() {
+            record(EventType.SOLUTION, SOURCE_NONE, (int) CELL_MASK, 0);
+        }
+    }
+
+    /**
+     * Write the events held by the trace as JSON lines, oldest first, e.g.
+     * {"t":15230,"event":"remove","depth":3,"x":4,"y":7,"value":"5","by":"section (1,2)"}
+     * where t is the time in nanoseconds since the trace was enabled. The cell (x and y) and value are present for
+     * decisions, refutations, and propagation, and by is present for propagation and contradictions.
+     * @param out the writer, which is not closed
+     * @throws IOException if the writer fails
+     */
+    public void writeJsonLines(final Writer out) throws IOException {
+        final var line = new StringBuilder();
+        for (var i = count - size(); i < count; ++i) {
+            final var idx = (int) (i & mask);
+            final var event = events[idx];
+            final var type = EVENT_TYPES[(int) (event >>> TYPE_SHIFT)];
+            final var source = (int) ((event >>> SOURCE_SHIFT) & SOURCE_MASK);
+            final var cell = (int) ((event >>> CELL_SHIFT) & CELL_MASK);
+            final var value = (int) (event & VALUE_MASK);
+
+            line.setLength(0);
+            line.append("{\"t\":").append(times[idx])
+                    .append(",\"event\":\"").append(type.label)
+                    .append("\",\"depth\":").append((event >>> DEPTH_SHIFT) & DEPTH_MASK);
+            if (cell != CELL_MASK) {
+                line.append(",\"x\":").append(cell / side).append(",\"y\":").append(cell % side);
+                line.append(",\"value\":");
+                if (value >= 1 && value <= alphabet.size())
+                    Json.quote(line, String.valueOf(alphabet.symbol(value)));
+                else
+                    line.append(value);
+            }
+            if (source != SOURCE_NONE && source != SOURCE_DECISION) {
+                line.append(",\"by\":");
+                Json.quote(line, sourceName(source));
+            }
+            out.append(line.append("}\n"));
+        }
+        out.flush();
+    }
+
+    private String sourceName(final int source) {
+        if (source == SOURCE_GIVEN)
+            return "given";
+        if (source == SOURCE_OTHER)
+            return "other";
+        return unitName(source);
+    }
+
+    /**
+     * Write the events held by the trace in a compact binary form: the int 0x53545243 ("STRC"), the dimensionality,
+     * and the number of events n as ints, then n packed events as longs, then their n times as longs, all big-endian.
+     * A packed event holds, from the highest bits to the lowest: the ordinal of its EventType (4 bits), the depth
+     * (16 bits), the source (14 bits: a unit, or 0x3FFE for a given, 0x3FFD for a decision, 0x3FFC for anything else,
+     * and 0x3FFF for none), the cell x * side + y (20 bits, all ones for none), and the code of the value (10 bits).
+     * @param out the stream, which is not closed
+     * @throws IOException if the stream fails
+     */
+    public void writeBinary(final OutputStream out) throws IOException {
+        final var data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(dimensionality);
+        data.writeInt(size());
+        for (var i = count - size(); i < count; ++i)
+            data.writeLong(events[(int) (i & mask)]);
+        for (var i = count - size(); i < count; ++i)
+            data.writeLong(times[(int) (i & mask)]);
+        data.flush();
+    }
+}
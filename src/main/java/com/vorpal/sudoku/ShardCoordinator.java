@@ -0,0 +1,883 @@
+// ShardCoordinator.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Solves puzzles in bulk across several worker processes on one machine, for corpora too large for one JVM.
+ *
+ * The puzzles are read as a stream, cut into shards of a fixed number of puzzles, and sent, packed by BoardCodec, to
+ * ShardWorker processes over their standard input and output (see ShardWorker for the protocol). Each worker has
+ * its own queue of shards, which are dealt out in turn as they are read; a worker whose queue is empty steals the last
+ * shard from the longest queue, so that slow workers, or hard shards, do not hold up the rest.
+ *
+ * A worker that exits or breaks the protocol, e.g. because it ran out of memory, or that does not answer a shard
+ * within the shard timeout, e.g. because it hangs, is killed and restarted, and the shard it was working on is put
+ * back at the front of its queue. A shard that is lost more than the allowed number of retries, or
+ * that is left with no workers to solve it, is reported with the status NOT_SOLVED rather than stalling the run.
+ *
+ * Only a bounded number of shards are in flight at once, and results are delivered in the order the puzzles were
+ * read, so that arbitrarily large inputs can be streamed through. Once the run is over, the aggregated statistics are
+ * returned.
+ *
+ * Run as a program, this is like BatchSolver, but with worker processes: run with --help for the options.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ShardCoordinator {
+    /**
+     * The result of solving one puzzle.
+     */
+    public static final class Result<T> {
+        private final GenSudokuBoard<T> board;
+        private final GenSudokuCP.Status status;
+        private final long nodes;
+
+        private Result(final GenSudokuBoard<T> board, final GenSudokuCP.Status status, final long nodes) {
+            this.board = board;
+            this.status = status;
+            this.nodes = nodes;
+        }
+
+        /**
+         * The solution, or the puzzle if it does not have a unique solution.
+         * @return the board
+         */
+        public GenSudokuBoard<T> getBoard() {
+            return board;
+        }
+
+        /**
+         * The outcome of solving the puzzle, which is NOT_SOLVED if its shard was lost.
+         * @return the status
+         */
+        public GenSudokuCP.Status getStatus() {
+            return status;
+        }
+
+        /**
+         * The number of nodes searched to solve the puzzle.
+         * @return the number of nodes
+         */
+        public long getNodes() {
+            return nodes;
+        }
+    }
+
+    /**
+     * The statistics of a run.
+     */
+    public static final class Stats {
+        private final Map<GenSudokuCP.Status, Long> counts = new EnumMap<>(GenSudokuCP.Status.class);
+        private final long[] boardsPerWorker;
+        private long boards;
+        private long shards;
+        private long nodes;
+        private long retries;
+        private long restarts;
+        private long steals;
+        private long timeouts;
+        private long elapsedNanos;
+
+        private Stats(final int workers) {
+            for (final var status : GenSudokuCP.Status.values())
+                counts.put(status, 0L);
+            boardsPerWorker = new long[workers];
+        }
+
+        /**
+         * The number of puzzles read.
+         * @return the number of puzzles
+         */
+        public long getBoards() {
+            return boards;
+        }
+
+        /**
+         * The number of shards the puzzles were cut into.
+         * @return the number of shards
+         */
+        public long getShards() {
+            return shards;
+        }
+
+        /**
+         * The number of puzzles with a given outcome. Puzzles in shards that were lost are counted as NOT_SOLVED.
+         * @param status the outcome
+         * @return the number of puzzles
+         */
+        public long getCount(final GenSudokuCP.Status status) {
+            return counts.get(status);
+        }
+
+        /**
+         * The number of puzzles solved by each worker, including those of shards that it stole.
+         * @param worker the worker, from 0
+         * @return the number of puzzles
+         */
+        public long getBoards(final int worker) {
+            return boardsPerWorker[worker];
+        }
+
+        /**
+         * The total number of nodes searched.
+         * @return the number of nodes
+         */
+        public long getNodes() {
+            return nodes;
+        }
+
+        /**
+         * The number of times a shard was sent again because its worker was lost.
+         * @return the number of retries
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * The number of times a worker process was restarted.
+         * @return the number of restarts
+         */
+        public long getRestarts() {
+            return restarts;
+        }
+
+        /**
+         * The number of shards taken by a worker from the queue of another.
+         * @return the number of steals
+         */
+        public long getSteals() {
+            return steals;
+        }
+
+        /**
+         * The number of times a worker was killed for not answering a shard within the shard timeout.
+         * @return the number of timeouts
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * The time the run took.
+         * @return the time in nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * The number of puzzles per second.
+         * @return the throughput
+         */
+        public double getThroughput() {
+            return elapsedNanos > 0 ? boards * 1e9 / elapsedNanos : 0.0;
+        }
+    }
+
+    // A shard of puzzles, in the packed encoding, and once it is done, the results.
+    private static final class Shard {
+        final long id;
+        final int count;
+        final byte[] packed;
+        int attempts;
+
+        // The results, which are null if the shard was lost.
+        byte[] statuses;
+        long[] nodes;
+        byte[] solutions;
+
+        Shard(final long id, final int count, final byte[] packed) {
+            this.id = id;
+            this.count = count;
+            this.packed = packed;
+        }
+    }
+
+    // How long a worker is given to exit once it is told to stop.
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    // The default shard timeout: the time limits of the puzzles plus this slack, or if there are none, a fixed time.
+    private static final long SHARD_SLACK_MILLIS = 60_000;
+    private static final long DEFAULT_SHARD_TIMEOUT_MILLIS = 600_000;
+
+    private final List<String> workerCommand;
+    private final int workers;
+    private final int shardSize;
+    private long timeLimit;
+    private long nodeLimit;
+    private int maxRetries = 3;
+    private long shardTimeout;
+
+    /**
+     * Create a coordinator that runs ShardWorker in the JVM and with the class path of this one.
+     * @param workers the number of worker processes
+     * @param shardSize the number of puzzles per shard
+     */
+    public ShardCoordinator(final int workers, final int shardSize) {
+        this(workerCommand(), workers, shardSize);
+    }
+
+    /**
+     * Create a coordinator.
+     * @param workerCommand the command that starts a worker process, which must speak the protocol of ShardWorker
+     * @param workers the number of worker processes
+     * @param shardSize the number of puzzles per shard
+     */
+    public ShardCoordinator(final List<String> workerCommand, final int workers, final int shardSize) {
+        if (workerCommand.isEmpty())
+            throw new IllegalArgumentException("worker command must not be empty");
+        if (workers <= 0)
+            throw new IllegalArgumentException("workers must be a positive integer");
+        if (shardSize <= 0)
+            throw new IllegalArgumentException("shard size must be a positive integer");
+        this.workerCommand = List.copyOf(workerCommand);
+        this.workers = workers;
+        this.shardSize = shardSize;
+    }
+
+    /**
+     * The command that runs ShardWorker in the JVM and with the class path of this one.
+     * @param args the arguments for the worker
+     * @return the command
+     */
+    public static List<String> workerCommand(final String... args) {
+        final var command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.addAll(Arrays.asList(args));
+        return command;
+    }
+
+    /**
+     * Limit the time that each puzzle may take. See GenSudokuCP.setTimeLimit.
+     * @param millis the limit in milliseconds, or 0 for no limit
+     */
+    public void setTimeLimit(final long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("time limit must be nonnegative");
+        timeLimit = millis;
+    }
+
+    /**
+     * Limit the number of nodes that each puzzle may explore. See GenSudokuCP.setNodeLimit.
+     * @param nodes the limit, or 0 for no limit
+     */
+    public void setNodeLimit(final long nodes) {
+        if (nodes < 0)
+            throw new IllegalArgumentException("node limit must be nonnegative");
+        nodeLimit = nodes;
+    }
+
+    /**
+     * Limit the time that a worker may take to answer a shard, after which it is killed and the shard is retried.
+     * The default, 0, allows the time limits of the puzzles of the shard plus a minute, or if there is no time limit,
+     * ten minutes.
+     * @param millis the timeout in milliseconds, or 0 for the default
+     */
+    public void setShardTimeout(final long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("shard timeout must be nonnegative");
+        shardTimeout = millis;
+    }
+
+    private long shardTimeoutMillis(final Shard shard) {
+        if (shardTimeout > 0)
+            return shardTimeout;
+        if (timeLimit > 0)
+            return shard.count * timeLimit + SHARD_SLACK_MILLIS;
+        return DEFAULT_SHARD_TIMEOUT_MILLIS;
+    }
+
+    /**
+     * Set how many times a shard is sent again after its worker is lost, and how many times in a row each worker is
+     * restarted without answering a shard, before giving up on them. The default is 3.
+     * @param retries the number of retries
+     */
+    public void setMaxRetries(final int retries) {
+        if (retries < 0)
+            throw new IllegalArgumentException("retries must be nonnegative");
+        maxRetries = retries;
+    }
+
+    /**
+     * Solve a stream of puzzles, which must all have the same dimensionality and symbols.
+     * The results are delivered on the calling thread, in the order in which the puzzles were read.
+     * @param puzzles the puzzles
+     * @param results the consumer of the results
+     * @return the statistics of the run
+     */
+    public <T> Stats run(final Iterator<GenSudokuBoard<T>> puzzles, final Consumer<? super Result<T>> results) {
+        final var start = System.nanoTime();
+        final var run = new Run<T>(results);
+        final var threads = new Thread[workers];
+        try {
+            final var buffer = new ArrayList<GenSudokuBoard<T>>(shardSize);
+            while (puzzles.hasNext()) {
+                buffer.add(puzzles.next());
+                if (buffer.size() == shardSize) {
+                    if (run.alphabet == null)
+                        run.begin(buffer.get(0), threads);
+                    run.submit(buffer);
+                    buffer.clear();
+                }
+            }
+            if (!buffer.isEmpty()) {
+                if (run.alphabet == null)
+                    run.begin(buffer.get(0), threads);
+                run.submit(buffer);
+            }
+            run.finish();
+        } finally {
+            run.close();
+            for (final var thread : threads)
+                if (thread != null)
+                    joinUninterruptibly(thread);
+            run.watchdog.shutdownNow();
+        }
+        run.stats.elapsedNanos = System.nanoTime() - start;
+        return run.stats;
+    }
+
+    private static void joinUninterruptibly(final Thread thread) {
+        var interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * The state of a run. The shards are guarded by the lock of the run: the reading thread waits on it for room
+     * for more shards and for finished shards, and the threads talking to the workers wait on it for shards.
+     */
+    private final class Run<T> {
+        final Consumer<? super Result<T>> results;
+        final Stats stats = new Stats(workers);
+        final List<ArrayDeque<Shard>> queues = new ArrayList<>(workers);
+        final TreeMap<Long, Shard> finished = new TreeMap<>();
+        final int maxPending = 4 * workers;
+
+        // Kills the workers that do not answer their shards in time.
+        final ScheduledExecutorService watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final var thread = new Thread(runnable, "shard-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Alphabet<T> alphabet;
+        int dimensionality;
+        long nextId;
+        long nextToDeliver;
+        int inFlight;
+        int liveWorkers;
+        boolean inputDone;
+        boolean closed;
+
+        Run(final Consumer<? super Result<T>> results) {
+            this.results = results;
+            for (var w = 0; w < workers; ++w)
+                queues.add(new ArrayDeque<>());
+        }
+
+        /**
+         * Start the workers, once the first puzzle, and thus the dimensionality, is known.
+         */
+        void begin(final GenSudokuBoard<T> first, final Thread[] threads) {
+            alphabet = first.getAlphabet();
+            dimensionality = first.getDimensionality();
+            liveWorkers = workers;
+            for (var w = 0; w < workers; ++w) {
+                final var worker = w;
+                threads[w] = new Thread(() -> work(worker), "shard-worker-" + w);
+                threads[w].setDaemon(true);
+                threads[w].start();
+            }
+        }
+
+        /**
+         * Pack a shard and queue it, after waiting for room and delivering any results that are ready.
+         */
+        void submit(final List<GenSudokuBoard<T>> boards) {
+            final var size = BoardCodec.packedSize(dimensionality);
+            final var packed = new byte[boards.size() * size];
+            for (var i = 0; i < boards.size(); ++i) {
+                final var board = boards.get(i);
+                if (board.getAlphabet() != alphabet)
+                    throw new IllegalArgumentException("all puzzles must have the same dimensionality and symbols");
+                BoardCodec.pack(dimensionality, board.codes(), packed, i * size);
+            }
+
+            drain(maxPending - 1);
+            synchronized (this) {
+                final var shard = new Shard(nextId++, boards.size(), packed);
+                stats.shards++;
+                stats.boards += shard.count;
+                if (liveWorkers == 0)
+                    lose(shard);
+                else
+                    queues.get((int) (shard.id % workers)).addLast(shard);
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait for every shard to finish, delivering the results.
+         */
+        void finish() {
+            synchronized (this) {
+                inputDone = true;
+                notifyAll();
+            }
+            drain(0);
+        }
+
+        /**
+         * Deliver results in order until at most a number of shards are left undelivered.
+         * The results are delivered without holding the lock, so that a slow consumer does not hold up the workers.
+         */
+        void drain(final long pending) {
+            while (true) {
+                final Shard shard;
+                synchronized (this) {
+                    while (nextId - nextToDeliver > pending && !finished.containsKey(nextToDeliver))
+                        waitUninterruptibly();
+                    if (nextId - nextToDeliver <= pending && !finished.containsKey(nextToDeliver))
+                        return;
+                    shard = finished.remove(nextToDeliver++);
+                }
+                deliver(shard);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            notifyAll();
+        }
+
+        private void deliver(final Shard shard) {
+            final var side = dimensionality * dimensionality;
+            final var size = BoardCodec.packedSize(dimensionality);
+            final var lost = shard.statuses == null;
+            for (var i = 0; i < shard.count; ++i) {
+                final var status = lost
+                        ? GenSudokuCP.Status.NOT_SOLVED : GenSudokuCP.Status.values()[shard.statuses[i]];
+                final var nodes = lost ? 0 : shard.nodes[i];
+                final var cells = new int[side * side];
+                BoardCodec.unpack(dimensionality, lost ? shard.packed : shard.solutions, i * size, cells);
+                stats.counts.merge(status, 1L, Long::sum);
+                stats.nodes += nodes;
+                final var board = new BoardSnapshot<>(dimensionality, alphabet, cells).thaw();
+                results.accept(new Result<>(board, status, nodes));
+            }
+        }
+
+        /**
+         * Take the next shard for a worker: the first of its own queue, or else the last of the longest queue.
+         * @return the shard, or null if there is no more work
+         */
+        synchronized Shard take(final int worker) {
+            while (!closed) {
+                var shard = queues.get(worker).pollFirst();
+                if (shard == null) {
+                    var longest = queues.get(0);
+                    for (final var queue : queues)
+                        if (queue.size() > longest.size())
+                            longest = queue;
+                    shard = longest.pollLast();
+                    if (shard != null)
+                        stats.steals++;
+                }
+                if (shard != null) {
+                    ++inFlight;
+                    return shard;
+                }
+                // Shards in flight may yet be put back, if their workers are lost.
+                if (inputDone && inFlight == 0)
+                    return null;
+                waitUninterruptibly();
+            }
+            return null;
+        }
+
+        synchronized void complete(final Shard shard, final int worker) {
+            --inFlight;
+            stats.boardsPerWorker[worker] += shard.count;
+            finished.put(shard.id, shard);
+            notifyAll();
+        }
+
+        /**
+         * Put back a shard whose worker was lost, unless it has run out of retries.
+         */
+        synchronized void retry(final Shard shard, final int worker) {
+            --inFlight;
+            if (++shard.attempts > maxRetries) {
+                lose(shard);
+            } else {
+                stats.retries++;
+                queues.get(worker).addFirst(shard);
+            }
+            notifyAll();
+        }
+
+        /**
+         * Give up on a worker that could not be restarted. Once no workers are left, all the queued shards are lost.
+         */
+        synchronized void retire() {
+            if (--liveWorkers == 0)
+                for (final var queue : queues)
+                    for (var shard = queue.pollFirst(); shard != null; shard = queue.pollFirst())
+                        lose(shard);
+            notifyAll();
+        }
+
+        synchronized void restarted() {
+            stats.restarts++;
+        }
+
+        synchronized void timedOut() {
+            stats.timeouts++;
+        }
+
+        private void lose(final Shard shard) {
+            finished.put(shard.id, shard);
+            notifyAll();
+        }
+
+        private void waitUninterruptibly() {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        /**
+         * Talk to one worker process, restarting it if it is lost, until there is no more work.
+         */
+        private void work(final int worker) {
+            Process process = null;
+            DataOutputStream to = null;
+            DataInputStream from = null;
+            var started = false;
+
+            // The worker is retired once it fails more than maxRetries times in a row.
+            var failures = 0;
+            try {
+                for (var shard = take(worker); shard != null; shard = take(worker)) {
+                    final var timedOut = new AtomicBoolean();
+                    try {
+                        if (process == null) {
+                            if (started)
+                                restarted();
+                            started = true;
+                            process = new ProcessBuilder(workerCommand)
+                                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                                    .start();
+                            to = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                            from = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+                        }
+
+                        // Killing a worker that takes too long closes its output, which ends the read below.
+                        final var running = process;
+                        final var timeout = shardTimeoutMillis(shard);
+                        final var timer = watchdog.schedule(() -> {
+                            timedOut.set(true);
+                            running.destroyForcibly();
+                        }, timeout, TimeUnit.MILLISECONDS);
+                        try {
+                            send(to, shard);
+                            receive(from, shard);
+                        } finally {
+                            timer.cancel(false);
+                        }
+                        complete(shard, worker);
+                        failures = 0;
+                    } catch (IOException | RuntimeException ex) {
+                        // Whatever went wrong, the shard must be put back, or the other workers wait for it forever.
+                        if (timedOut.get())
+                            timedOut();
+                        System.err.println("Worker " + worker + " lost on shard " + shard.id + ": "
+                                + (timedOut.get() ? "no answer within the shard timeout"
+                                : ex instanceof EOFException ? "the worker exited"
+                                : ex instanceof IOException ? ex.getMessage() : ex.toString()));
+                        if (process != null)
+                            process.destroyForcibly();
+                        process = null;
+                        retry(shard, worker);
+                        if (++failures > maxRetries) {
+                            retire();
+                            return;
+                        }
+                    }
+                }
+            } finally {
+                if (process != null)
+                    stop(process, to);
+            }
+        }
+
+        private void send(final DataOutputStream to, final Shard shard) throws IOException {
+            to.writeInt(ShardWorker.SHARD);
+            to.writeLong(shard.id);
+            to.writeInt(dimensionality);
+            to.writeLong(timeLimit);
+            to.writeLong(nodeLimit);
+            to.writeInt(shard.count);
+            to.write(shard.packed);
+            to.flush();
+        }
+
+        private void receive(final DataInputStream from, final Shard shard) throws IOException {
+            final var id = from.readLong();
+            final var count = from.readInt();
+            if (id != shard.id || count != shard.count)
+                throw new IOException("expected shard " + shard.id + " of " + shard.count + " puzzles, but got shard "
+                        + id + " of " + count);
+            final var size = BoardCodec.packedSize(dimensionality);
+            final var statuses = new byte[count];
+            final var nodes = new long[count];
+            final var solutions = new byte[count * size];
+            for (var i = 0; i < count; ++i) {
+                statuses[i] = from.readByte();
+                if (statuses[i] < 0 || statuses[i] >= GenSudokuCP.Status.values().length)
+                    throw new IOException("unknown status " + statuses[i]);
+                nodes[i] = from.readLong();
+                from.readFully(solutions, i * size, size);
+            }
+            shard.statuses = statuses;
+            shard.nodes = nodes;
+            shard.solutions = solutions;
+        }
+
+        private void stop(final Process process, final DataOutputStream to) {
+            try {
+                to.writeInt(ShardWorker.STOP);
+                to.close();
+                if (!process.waitFor(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                    process.destroyForcibly();
+            } catch (IOException ex) {
+                process.destroyForcibly();
+            } catch (InterruptedException ex) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -cp sudoku-cp-all.jar com.vorpal.sudoku.ShardCoordinator [options] [file ...]",
+            "Solves the puzzles in the files (or standard input if there are none, or for -) across worker processes.",
+            "",
+            "Options:",
+            "  -d, --dimensionality N  the dimensionality of the boards, e.g. 3 for 9x9 (default 3)",
+            "  -w, --workers N         the number of worker processes (default: number of processors)",
+            "  -s, --shard-size N      the number of puzzles per shard (default 256)",
+            "      --time-limit MS     the time limit per puzzle in milliseconds (default: none)",
+            "      --node-limit N      the node limit per puzzle (default: none)",
+            "      --retries N         the number of retries per shard and consecutive restarts per worker (default 3)",
+            "      --shard-timeout MS  the time a worker may take per shard before it is killed (default: the",
+            "                          time limits of its puzzles plus a minute, or ten minutes with no limit)",
+            "  -o, --output FILE       write the results to FILE instead of standard output",
+            "  -q, --quiet             only write the summary",
+            "  -h, --help              show this message");
+
+    public static void main(final String[] args) {
+        var dimensionality = 3;
+        var workers = Runtime.getRuntime().availableProcessors();
+        var shardSize = 256;
+        var timeLimit = 0L;
+        var nodeLimit = 0L;
+        var retries = 3;
+        var shardTimeout = 0L;
+        String output = null;
+        var quiet = false;
+        final var inputs = new ArrayList<String>();
+        try {
+            for (var i = 0; i < args.length; ++i) {
+                final var arg = args[i];
+                switch (arg) {
+                    case "-h": case "--help":
+                        System.out.println(USAGE);
+                        return;
+                    case "-d": case "--dimensionality":
+                        dimensionality = number(args, ++i, 1);
+                        break;
+                    case "-w": case "--workers":
+                        workers = number(args, ++i, 1);
+                        break;
+                    case "-s": case "--shard-size":
+                        shardSize = number(args, ++i, 1);
+                        break;
+                    case "--time-limit":
+                        timeLimit = number(args, ++i, 1);
+                        break;
+                    case "--node-limit":
+                        nodeLimit = number(args, ++i, 1);
+                        break;
+                    case "--retries":
+                        retries = number(args, ++i, 0);
+                        break;
+                    case "--shard-timeout":
+                        shardTimeout = number(args, ++i, 1);
+                        break;
+                    case "-o": case "--output":
+                        if (++i >= args.length)
+                            throw new IllegalArgumentException(arg + " requires a value");
+                        output = args[i];
+                        break;
+                    case "-q": case "--quiet":
+                        quiet = true;
+                        break;
+                    default:
+                        if (arg.startsWith("-") && !arg.equals("-"))
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        inputs.add(arg);
+                }
+            }
+            if (dimensionality * dimensionality > BoardFormat.MAX_VALUE)
+                throw new IllegalArgumentException("dimensionality must be between 1 and 5");
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (inputs.isEmpty())
+            inputs.add("-");
+
+        final var coordinator = new ShardCoordinator(workers, shardSize);
+        coordinator.setTimeLimit(timeLimit);
+        coordinator.setNodeLimit(nodeLimit);
+        coordinator.setMaxRetries(retries);
+        coordinator.setShardTimeout(shardTimeout);
+        final var write = !quiet;
+        final Stats stats;
+        try (final var out = new PrintWriter(new BufferedWriter(output == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : Files.newBufferedWriter(Paths.get(output))))) {
+            stats = coordinator.run(new Puzzles(inputs, dimensionality), result -> {
+                if (write)
+                    out.append(BoardFormat.toLine(result.getBoard())).append('\t')
+                            .append(BatchSolver.Outcome.of(result.getStatus()).toString()).append('\n');
+            });
+        } catch (IOException | UncheckedIOException ex) {
+            System.err.println("I/O error: " + ex.getMessage());
+            System.exit(2);
+            return;
+        }
+        summarize(stats, workers);
+        System.exit(stats.getCount(GenSudokuCP.Status.NOT_SOLVED) == 0 ? 0 : 1);
+    }
+
+    private static int number(final String[] args, final int i, final int min) {
+        if (i >= args.length)
+            throw new IllegalArgumentException(args[i - 1] + " requires a value");
+        try {
+            final var n = Integer.parseInt(args[i]);
+            if (n >= min)
+                return n;
+        } catch (NumberFormatException ex) {
+            // Fall through.
+        }
+        throw new IllegalArgumentException(args[i - 1] + " requires an integer of at least " + min);
+    }
+
+    private static void summarize(final Stats stats, final int workers) {
+        final var err = System.err;
+        err.printf("puzzles:    %d in %d shards in %.3f s with %d workers%n",
+                stats.getBoards(), stats.getShards(), stats.getElapsedNanos() / 1e9, workers);
+        err.printf("throughput: %.1f puzzles/s, %d nodes%n", stats.getThroughput(), stats.getNodes());
+        err.printf("recovery:   %d steals, %d retries, %d restarts, %d timeouts%n",
+                stats.getSteals(), stats.getRetries(), stats.getRestarts(), stats.getTimeouts());
+        final var perWorker = new StringJoiner(", ", "per worker: ", "");
+        for (var w = 0; w < workers; ++w)
+            perWorker.add(String.valueOf(stats.getBoards(w)));
+        err.println(perWorker);
+        final var summary = new StringJoiner(", ", "outcomes:   ", "");
+        for (final var status : GenSudokuCP.Status.values())
+            if (status != GenSudokuCP.Status.NOT_SOLVED || stats.getCount(status) > 0)
+                summary.add((status == GenSudokuCP.Status.NOT_SOLVED ? "lost"
+                        : BatchSolver.Outcome.of(status).toString()) + " " + stats.getCount(status));
+        err.println(summary);
+    }
+
+    /**
+     * The puzzles in a list of files, read one at a time. Puzzles that cannot be read are reported and skipped.
+     */
+    private static final class Puzzles implements Iterator<GenSudokuBoard<Integer>> {
+        private final Iterator<String> inputs;
+        private final int dimensionality;
+        private String input;
+        private BoardFormat.Reader reader;
+        private GenSudokuBoard<Integer> next;
+
+        Puzzles(final List<String> inputs, final int dimensionality) {
+            this.inputs = inputs.iterator();
+            this.dimensionality = dimensionality;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    if (reader == null) {
+                        if (!inputs.hasNext())
+                            return false;
+                        input = inputs.next();
+                        reader = new BoardFormat.Reader(open(input), dimensionality);
+                    }
+                    try {
+                        next = reader.next();
+                    } catch (IllegalArgumentException ex) {
+                        System.err.println(input + ": " + ex.getMessage());
+                        continue;
+                    }
+                    if (next == null) {
+                        reader.close();
+                        reader = null;
+                    }
+                }
+                return true;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public GenSudokuBoard<Integer> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            final var board = next;
+            next = null;
+            return board;
+        }
+
+        private static BufferedReader open(final String input) throws IOException {
+            return input.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(input));
+        }
+    }
+}
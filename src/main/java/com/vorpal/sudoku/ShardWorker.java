@@ -0,0 +1,119 @@
+// ShardWorker.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.io.*;
+
+/**
+ * A worker process for ShardCoordinator, which is started by the coordinator and should not be run by hand.
+ *
+ * The worker reads shards of puzzles from standard input, solves each of them with GenSudokuCP, and writes the results
+ * to standard output, one shard at a time, until it is told to stop or its input is closed. Diagnostics go to standard
+ * error, since standard output belongs to the protocol.
+ *
+ * All numbers are big-endian, as written by DataOutputStream. A message from the coordinator starts with its kind:
+ * 1. STOP (0), after which the worker exits; or
+ * 2. SHARD (1), followed by the id of the shard (long), the dimensionality (int), the time limit and the node limit per
+ *    puzzle (long, long, 0 for none), the number of puzzles (int), and the puzzles, packed by BoardCodec.
+ * The answer to a shard is its id (long) and number of puzzles (int), followed by, for each puzzle, its
+ * GenSudokuCP.Status (byte, the ordinal), the number of nodes searched (long), and the solution, or the puzzle if
+ * there is no unique solution, packed by BoardCodec.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ShardWorker {
+    // The kinds of messages from the coordinator.
+    static final int STOP = 0;
+    static final int SHARD = 1;
+
+    // Solvers are reused for puzzle after puzzle, within this budget.
+    private static final long POOL_BUDGET_BYTES = 16L << 20;
+
+    private static final String USAGE =
+            "Usage: java -cp sudoku-cp-all.jar com.vorpal.sudoku.ShardWorker [--exit-after N] [--stall-on ID]";
+
+    private ShardWorker() {}
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        // For testing recovery: exit without answering the given shard, as if the worker had crashed, or never answer
+        // the shard with the given id, as if the worker had hung.
+        var exitAfter = 0;
+        var stallOn = -1L;
+        try {
+            for (var i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException(args[i] + " requires a value");
+                if (args[i].equals("--exit-after"))
+                    exitAfter = Integer.parseInt(args[i + 1]);
+                else if (args[i].equals("--stall-on"))
+                    stallOn = Long.parseLong(args[i + 1]);
+                else
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        final var in = new DataInputStream(new BufferedInputStream(System.in));
+        final var out = new DataOutputStream(new BufferedOutputStream(System.out));
+        final var pool = new SolverPool(POOL_BUDGET_BYTES);
+        var shards = 0;
+        while (true) {
+            final int kind;
+            try {
+                kind = in.readInt();
+            } catch (EOFException ex) {
+                return;
+            }
+            if (kind == STOP)
+                return;
+            if (kind != SHARD)
+                throw new IOException("Unknown message: " + kind);
+
+            final var id = in.readLong();
+            final var dimensionality = in.readInt();
+            final var timeLimit = in.readLong();
+            final var nodeLimit = in.readLong();
+            final var count = in.readInt();
+            if (dimensionality <= 0 || dimensionality * dimensionality > BoardFormat.MAX_VALUE || count < 0)
+                throw new IOException("Bad shard " + id + ": dimensionality " + dimensionality + ", "
+                        + count + " puzzles");
+            final var size = BoardCodec.packedSize(dimensionality);
+            final var packed = new byte[count * size];
+            in.readFully(packed);
+            if (++shards == exitAfter)
+                Runtime.getRuntime().halt(3);
+            if (id == stallOn)
+                Thread.sleep(Long.MAX_VALUE);
+
+            out.writeLong(id);
+            out.writeInt(count);
+            final var template = BoardFormat.newBoard(dimensionality);
+            final var side = dimensionality * dimensionality;
+            final var cells = new int[side * side];
+            final var solution = new byte[size];
+            for (var i = 0; i < count; ++i) {
+                BoardCodec.unpack(dimensionality, packed, i * size, cells);
+                final var board = new BoardSnapshot<>(dimensionality, template.getAlphabet(), cells.clone()).thaw();
+                final var solver = pool.acquire(board);
+                try {
+                    solver.setTimeLimit(timeLimit);
+                    solver.setNodeLimit(nodeLimit);
+                    solver.solve();
+                } catch (RuntimeException ex) {
+                    pool.discard(solver);
+                    throw ex;
+                }
+                out.writeByte(solver.getStatus().ordinal());
+                out.writeLong(solver.getNodeCount());
+                pool.release(solver);
+                BoardCodec.pack(dimensionality, board.freeze().getCells(), solution, 0);
+                out.write(solution);
+            }
+            out.flush();
+        }
+    }
+}
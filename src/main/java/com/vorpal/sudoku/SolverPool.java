@@ -0,0 +1,210 @@
+// SolverPool.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A pool of GenSudokuCP solvers, so that the model for a board of a given dimensionality and symbols is only built
+ * once, and then reused for board after board. Building the model of a 25x25 board, with its 625 variables and 75
+ * allDifferent constraints, takes far longer than changing its givens.
+ *
+ * A thread acquires a solver for its board, which is then its own to use, and releases it once done, or discards it
+ * if it may have been left in a bad state, e.g. because solving threw. A solver that is acquired again is rebound to
+ * the new board: only the givens that differ are changed, and the limits, trace, and
+ * status are cleared, so that it behaves exactly like a new solver for the board.
+ *
+ * Idle solvers are kept within a memory budget, evicting the ones released longest ago first. The memory a solver
+ * takes is estimated from the dimensionality of its board (see estimateBytes). The pool is thread-safe.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SolverPool {
+    // The retained heap of a solver after it has solved a board is about BASE_BYTES + BYTES_PER_CELL * cells,
+    // as measured for dimensionalities 2 through 5.
+    private static final long BASE_BYTES = 50_000;
+    private static final long BYTES_PER_CELL = 3_700;
+
+    private static final class Idle {
+        final Alphabet<?> alphabet;
+        final GenSudokuCP<?> solver;
+        final long bytes;
+
+        Idle(final Alphabet<?> alphabet, final GenSudokuCP<?> solver, final long bytes) {
+            this.alphabet = alphabet;
+            this.solver = solver;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long memoryBudget;
+
+    // The idle solvers by alphabet, which determines the dimensionality, and all of them in order of release.
+    // In both, the solvers released longest ago come first.
+    private final Map<Alphabet<?>, ArrayDeque<Idle>> idle = new HashMap<>();
+    private final ArrayDeque<Idle> released = new ArrayDeque<>();
+    private long idleBytes;
+
+    // The solvers that have been acquired and not yet released or discarded.
+    private final Set<GenSudokuCP<?>> outstanding = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    // The metrics.
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a pool.
+     * @param memoryBudget the most memory, in bytes, that idle solvers may take
+     */
+    public SolverPool(final long memoryBudget) {
+        if (memoryBudget < 0)
+            throw new IllegalArgumentException("memory budget must be nonnegative");
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Estimate the memory taken by a solver that has solved a board.
+     * @param dimensionality the dimensionality of the board
+     * @return the estimated number of bytes
+     */
+    public static long estimateBytes(final int dimensionality) {
+        final long side = dimensionality * dimensionality;
+        return BASE_BYTES + BYTES_PER_CELL * side * side;
+    }
+
+    /**
+     * Get a solver for a board, reusing an idle one if there is one.
+     * The solver must not be used after it is released.
+     * @param board the board
+     * @return a solver for the board
+     */
+    public <T> GenSudokuCP<T> acquire(final GenSudokuBoard<T> board) {
+        final Idle reused;
+        synchronized (this) {
+            final var solvers = idle.get(board.getAlphabet());
+            reused = solvers == null ? null : solvers.pollLast();
+            if (reused == null) {
+                ++misses;
+            } else {
+                ++hits;
+                released.removeLastOccurrence(reused);
+                idleBytes -= reused.bytes;
+            }
+        }
+        if (reused == null)
+            return lend(GenSudokuCP.of(board));
+
+        // The alphabet of the board is that of the solver, so the solver is for boards of type T.
+        @SuppressWarnings("unchecked")
+        final var solver = (GenSudokuCP<T>) reused.solver;
+        solver.rebind(board);
+        return lend(solver);
+    }
+
+    private synchronized <T> GenSudokuCP<T> lend(final GenSudokuCP<T> solver) {
+        outstanding.add(solver);
+        return solver;
+    }
+
+    /**
+     * Return a solver to the pool, once it is no longer in use. If this takes the idle solvers over the memory
+     * budget, the ones released longest ago are evicted.
+     * @param solver the solver, which must have been acquired from the pool and not yet released or discarded
+     * @throws IllegalArgumentException if the solver is not outstanding from this pool
+     */
+    public synchronized void release(final GenSudokuCP<?> solver) {
+        checkOutstanding(solver);
+        final var alphabet = solver.getAlphabet();
+        final var entry = new Idle(alphabet, solver, estimateBytes((int) Math.round(Math.sqrt(alphabet.size()))));
+        idle.computeIfAbsent(alphabet, a -> new ArrayDeque<>()).addLast(entry);
+        released.addLast(entry);
+        idleBytes += entry.bytes;
+
+        while (idleBytes > memoryBudget) {
+            final var evicted = released.pollFirst();
+            idle.get(evicted.alphabet).removeFirstOccurrence(evicted);
+            idleBytes -= evicted.bytes;
+            ++evictions;
+        }
+    }
+
+    /**
+     * Give up a solver acquired from the pool without returning it, e.g. because solving threw, which may have left
+     * its model in a bad state.
+     * @param solver the solver, which must have been acquired from the pool and not yet released or discarded
+     * @throws IllegalArgumentException if the solver is not outstanding from this pool
+     */
+    public synchronized void discard(final GenSudokuCP<?> solver) {
+        checkOutstanding(solver);
+    }
+
+    private void checkOutstanding(final GenSudokuCP<?> solver) {
+        if (!outstanding.remove(solver))
+            throw new IllegalArgumentException("solver was not acquired from this pool, or was already given back");
+    }
+
+    /**
+     * Evict all idle solvers.
+     */
+    public synchronized void clear() {
+        evictions += released.size();
+        idle.clear();
+        released.clear();
+        idleBytes = 0;
+    }
+
+    /**
+     * Accessor for the memory budget.
+     * @return the most memory, in bytes, that idle solvers may take
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * The number of acquisitions that reused an idle solver.
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * The number of acquisitions that had to build a new solver.
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * The number of idle solvers evicted to stay within the memory budget, or by clear.
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * The number of idle solvers.
+     * @return the number of idle solvers
+     */
+    public synchronized int getIdleCount() {
+        return released.size();
+    }
+
+    /**
+     * The estimated memory taken by the idle solvers.
+     * @return the number of bytes
+     */
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+}
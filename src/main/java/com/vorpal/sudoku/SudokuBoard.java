@@ -11,6 +11,10 @@ import java.util.Set;
 /**
  * This is a simplified interface for GenSudokuBoard, in the standard 9x9 configuration over the numbers
  * 1 through 9, with 0 being an indicator that a position has not yet been filled.
+ *
+ * The digits are numbered in their natural order, so the code of every cell is its digit. This lets the board
+ * offer getDigit and setDigit, which skip the translation between symbols and codes, and check validity with
+ * fixed tables of the 27 units and 9-bit masks, rather than with the generic strided loops.
  */
 @SuppressWarnings("WeakerAccess")
 public final class SudokuBoard extends GenSudokuBoard<Integer> {
@@ -21,8 +25,95 @@ public final class SudokuBoard extends GenSudokuBoard<Integer> {
         digitSet = Collections.unmodifiableSet(tmpSet);
     }
 
+    // The alphabet of the digits, shared by every 9x9 board over them, e.g. those read by BoardFormat.
+    static final Alphabet<Integer> DIGITS = Alphabet.of(0, digitSet);
+
+    // The cells of the 27 units: the rows, then the columns, then the sections, row by row.
+    private static final int[][] UNITS = Geometry.of(3).units();
+
     @SuppressWarnings("WeakerAccess")
     public SudokuBoard() {
         super(3, 0, digitSet);
     }
+
+    /**
+     * Create a board that shares the contents of a snapshot of a 9x9 board over the digits until it is first modified.
+     * @param snapshot the snapshot
+     */
+    SudokuBoard(final BoardSnapshot<Integer> snapshot) {
+        super(snapshot);
+        if (snapshot.getAlphabet() != DIGITS)
+            throw new IllegalArgumentException("snapshot is not of a board over the digits");
+    }
+
+    /**
+     * Get the digit at a position on the board, without boxing it.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the digit, or 0 if the position is empty
+     */
+    public int getDigit(final int x, final int y) {
+        return codes()[index(x, y)];
+    }
+
+    /**
+     * Set the digit at a position on the board, without boxing it.
+     * Note that this method does not check if setting the position results in a legal configuration.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param digit the digit, or 0 to empty the position
+     */
+    public void setDigit(final int x, final int y, final int digit) {
+        if (digit < 0 || digit > 9)
+            throw new IllegalArgumentException("Value not legal: " + digit);
+        setCode(index(x, y), digit);
+    }
+
+    @Override
+    public boolean isComplete() {
+        for (final var digit : codes())
+            if (digit == 0)
+                return false;
+        return true;
+    }
+
+    @Override
+    public boolean isValid() {
+        final var cells = codes();
+        for (final var unit : UNITS)
+            if (!isValidUnit(cells, unit))
+                return false;
+        return true;
+    }
+
+    @Override
+    public boolean isSolved() {
+        return isComplete() && isValid();
+    }
+
+    /**
+     * Check that no digit appears twice in a unit. Bit d - 1 of the mask is set once digit d has been seen, and the
+     * empty cells, whose digit is 0, map to no bit at all.
+     */
+    private static boolean isValidUnit(final int[] cells, final int[] unit) {
+        var seen = 0;
+        var repeated = 0;
+        int bit;
+        bit = (1 << cells[unit[0]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[1]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[2]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[3]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[4]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[5]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[6]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[7]]) >>> 1; repeated |= seen & bit; seen |= bit;
+        bit = (1 << cells[unit[8]]) >>> 1; repeated |= seen & bit;
+        return repeated == 0;
+    }
+
+    private static int index(final int x, final int y) {
+        if (x < 0 || x >= 9 || y < 0 || y >= 9)
+            throw new IllegalArgumentException(String.format("Illegal coordinates: (%d,%d)", x, y));
+        return x * 9 + y;
+    }
 }
@@ -6,11 +6,89 @@ package com.vorpal.sudoku;
 
 /**
  * Takes a Sudoku problem, represents it as a CP, and then allows solving.
+ *
+ * Since 9x9 boards are by far the most common, solve does not search the constraint program, but uses a search
+ * dedicated to them (see SudokuSearch), which works on the digits directly with bitmasks. It finds the same outcome
+ * and solution, respects the same limits, and reports its own node and fail counts. The constraint program is still
+ * searched if the search must be traced, has stop criteria, or has givens lifted, and is used by everything else,
+ * e.g. propagate, solveParallel, and the searches for a second solution after addClue and removeClue.
  */
 @SuppressWarnings("WeakerAccess")
 public final class SudokuCP extends GenSudokuCP<Integer> {
+    // The search of the last call to solve, or null if it searched the constraint program.
+    private SudokuSearch search;
+
     @SuppressWarnings("WeakerAccess")
     public SudokuCP(SudokuBoard sudokuBoard) {
         super(sudokuBoard);
     }
+
+    /**
+     * Create a solver for any board over the digits, as GenSudokuCP.of does.
+     * @param board the board, whose alphabet must be SudokuBoard.DIGITS
+     */
+    SudokuCP(final GenSudokuBoard<Integer> board) {
+        super(board);
+        if (board.getAlphabet() != SudokuBoard.DIGITS)
+            throw new IllegalArgumentException("board is not over the digits");
+    }
+
+    @Override
+    public boolean solve() {
+        if (isModelSearchRequired()) {
+            search = null;
+            return super.solve();
+        }
+
+        // The codes of the digits are the digits themselves. The givens are searched rather than the board, which
+        // holds the solution once one has been found.
+        search = new SudokuSearch(getNodeLimit(), getTimeLimitNanos());
+        final var status = search.run(getGivenCodes());
+        switch (status) {
+            case UNIQUE:
+                setOutcome(status, search.getSolution().clone(), null);
+                return true;
+            case MULTIPLE_SOLUTIONS:
+                setOutcome(status, search.getSolution().clone(), search.getSecondSolution().clone());
+                return false;
+            default:
+                setOutcome(status, null, null);
+                return false;
+        }
+    }
+
+    @Override
+    void rebind(final GenSudokuBoard<Integer> board) {
+        search = null;
+        super.rebind(board);
+    }
+
+    // The edits search the constraint program, unless they fall back on solve.
+
+    @Override
+    public boolean addClue(final int x, final int y, final Integer value) {
+        search = null;
+        return super.addClue(x, y, value);
+    }
+
+    @Override
+    public boolean removeClue(final int x, final int y) {
+        search = null;
+        return super.removeClue(x, y);
+    }
+
+    @Override
+    public long getNodeCount() {
+        return search == null ? super.getNodeCount() : search.getNodeCount();
+    }
+
+    @Override
+    public long getBacktrackCount() {
+        return search == null ? super.getBacktrackCount() : search.getFailCount();
+    }
+
+    @Override
+    public long getFailCount() {
+        return search == null ? super.getFailCount() : search.getFailCount();
+    }
 }
@@ -0,0 +1,167 @@
+// SudokuSearch.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+/**
+ * A search dedicated to 9x9 boards over the digits, used by SudokuCP in place of the constraint program.
+ *
+ * The digits used in each row, column, and section are kept as 9-bit masks, indexed by unit as in Geometry, so the
+ * candidates of a cell are the complement of three masks, and placing or removing a digit is three bitwise
+ * operations. The search always branches on an empty cell with the fewest candidates, and stops at the second
+ * solution, or when a limit is reached.
+ */
+final class SudokuSearch {
+    private static final int ALL = 0x1FF;
+
+    // The row, column, and section units of each cell.
+    private static final int[] CELL_UNITS = Geometry.of(3).cellUnits();
+
+    // How many nodes are explored between checks of the time limit.
+    private static final int CLOCK_INTERVAL = 256;
+
+    private final long nodeLimit;
+    private final long deadline;
+    private final boolean timeLimited;
+
+    private final int[] cells = new int[81];
+    private final int[] used = new int[27];
+    private final int[] solution = new int[81];
+    private final int[] secondSolution = new int[81];
+
+    private int solutions;
+    private boolean stopped;
+    private long nodes;
+    private long fails;
+
+    /**
+     * Create a search.
+     * @param nodeLimit the most nodes to explore, or 0 for no limit
+     * @param timeLimitNanos the most time to take, or 0 for no limit
+     */
+    SudokuSearch(final long nodeLimit, final long timeLimitNanos) {
+        this.nodeLimit = nodeLimit;
+        this.timeLimited = timeLimitNanos > 0;
+        this.deadline = System.nanoTime() + timeLimitNanos;
+    }
+
+    /**
+     * Search for up to two solutions.
+     * @param givens the digits of the cells, row by row, with 0 for empty cells
+     * @return the outcome: UNIQUE, NO_SOLUTION, MULTIPLE_SOLUTIONS, or LIMIT_REACHED
+     */
+    GenSudokuCP.Status run(final int[] givens) {
+        for (var cell = 0; cell < 81; ++cell) {
+            final var digit = givens[cell];
+            if (digit == 0)
+                continue;
+            final var bit = 1 << (digit - 1);
+            if ((usedBy(cell) & bit) != 0)
+                return GenSudokuCP.Status.NO_SOLUTION;
+            place(cell, digit, bit);
+        }
+
+        search();
+        if (solutions >= 2)
+            return GenSudokuCP.Status.MULTIPLE_SOLUTIONS;
+        if (stopped)
+            return GenSudokuCP.Status.LIMIT_REACHED;
+        return solutions == 1 ? GenSudokuCP.Status.UNIQUE : GenSudokuCP.Status.NO_SOLUTION;
+    }
+
+    /**
+     * The first solution found.
+     * @return the digits of the cells, row by row
+     */
+    int[] getSolution() {
+        return solution;
+    }
+
+    /**
+     * The second solution found, if there is one.
+     * @return the digits of the cells, row by row
+     */
+    int[] getSecondSolution() {
+        return secondSolution;
+    }
+
+    long getNodeCount() {
+        return nodes;
+    }
+
+    long getFailCount() {
+        return fails;
+    }
+
+    private void place(final int cell, final int digit, final int bit) {
+        cells[cell] = digit;
+        used[CELL_UNITS[3 * cell]] |= bit;
+        used[CELL_UNITS[3 * cell + 1]] |= bit;
+        used[CELL_UNITS[3 * cell + 2]] |= bit;
+    }
+
+    private void remove(final int cell, final int bit) {
+        cells[cell] = 0;
+        used[CELL_UNITS[3 * cell]] &= ~bit;
+        used[CELL_UNITS[3 * cell + 1]] &= ~bit;
+        used[CELL_UNITS[3 * cell + 2]] &= ~bit;
+    }
+
+    /**
+     * The digits already used in the row, column, and section of a cell.
+     */
+    private int usedBy(final int cell) {
+        return used[CELL_UNITS[3 * cell]] | used[CELL_UNITS[3 * cell + 1]] | used[CELL_UNITS[3 * cell + 2]];
+    }
+
+    /**
+     * Fill in the empty cells, counting the solutions, until there are two or a limit is reached.
+     */
+    private void search() {
+        var best = -1;
+        var bestCandidates = 0;
+        var bestCount = 10;
+        for (var cell = 0; cell < 81; ++cell) {
+            if (cells[cell] != 0)
+                continue;
+            final var candidates = ALL & ~usedBy(cell);
+            final var count = Integer.bitCount(candidates);
+            if (count < bestCount) {
+                best = cell;
+                bestCandidates = candidates;
+                bestCount = count;
+                if (count <= 1)
+                    break;
+            }
+        }
+
+        if (best < 0) {
+            System.arraycopy(cells, 0, solutions++ == 0 ? solution : secondSolution, 0, 81);
+            return;
+        }
+        if (bestCount == 0) {
+            ++fails;
+            return;
+        }
+
+        for (var candidates = bestCandidates; candidates != 0; candidates &= candidates - 1) {
+            if (isLimitReached()) {
+                stopped = true;
+                return;
+            }
+            ++nodes;
+            final var bit = candidates & -candidates;
+            place(best, Integer.numberOfTrailingZeros(bit) + 1, bit);
+            search();
+            remove(best, bit);
+            if (solutions >= 2 || stopped)
+                return;
+        }
+    }
+
+    private boolean isLimitReached() {
+        return (nodeLimit > 0 && nodes >= nodeLimit)
+                || (timeLimited && nodes % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0);
+    }
+}
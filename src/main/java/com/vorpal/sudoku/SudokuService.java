@@ -0,0 +1,561 @@
+// SudokuService.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small HTTP service that solves, validates, and grades puzzles, using only the HTTP server that ships with the JDK.
+ *
+ * Every endpoint but /metrics takes a POST with a JSON object whose "puzzle" member holds a board in the line format
+ * (see BoardFormat), whose dimensionality is inferred from its length, and answers with a JSON object:
+ * 1. /solve answers with the status (solved, unsolvable, multiple, or limit) and, if solved, the solution;
+ * 2. /validate answers with whether the board is valid, complete, and solved;
+ * 3. /grade answers with the status and, if the puzzle has a unique solution, its grade (see DifficultyGrader);
+ * 4. a GET of /metrics answers with the request counts, batch sizes, latency percentiles, and solver pool metrics.
+ * Requests to /solve and /grade may also have a "deadlineMillis" member, of at most a day, which limits the time from
+ * when the request is received to when it is answered; puzzles that do not finish in time are answered with the
+ * status limit.
+ *
+ * Validation is cheap and is answered immediately. Solving and grading are not: rather than solving each request on
+ * its own thread as it arrives, requests are queued, and a dispatcher collects whatever arrives within a short window
+ * (up to a maximum batch size) and solves the whole batch in one parallel pass, in which up to one task per worker
+ * thread takes the puzzles of the batch in turn. The dispatcher does not wait for the pass to finish: at most one
+ * batch's worth of puzzles are with the workers at a time, which keeps the number of solvers bounded under load, and
+ * the dispatching is amortized over many small requests. The models the workers solve with are kept in a SolverPool
+ * between requests, rather than being built for each one. When the queue is full, requests are refused with 503
+ * rather than being left to wait.
+ *
+ * The HTTP handlers never wait for a puzzle: a response is written by a fixed pool of handler threads once its puzzle
+ * is done, or its deadline has passed.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class SudokuService {
+    // The number of latencies kept for the percentiles in /metrics.
+    private static final int LATENCY_WINDOW = 1024;
+
+    // How long a request waits beyond the deadline of its job before giving up on it.
+    private static final long DEADLINE_SLACK_MILLIS = 1000;
+
+    // The longest deadline a request may have, which keeps the deadlines in nanoseconds far from overflowing.
+    private static final long MAX_DEADLINE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    // The most memory that idle solvers may take.
+    private static final long POOL_BUDGET_BYTES = 64L << 20;
+
+    // A request to solve or grade a puzzle, waiting for its batch.
+    private static final class Job {
+        final GenSudokuBoard<Integer> board;
+        final boolean grade;
+        final long deadline;
+        final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+
+        Job(final GenSudokuBoard<Integer> board, final boolean grade, final long deadline) {
+            this.board = board;
+            this.grade = grade;
+            this.deadline = deadline;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+    private final BlockingQueue<Job> queue;
+    private final Semaphore inFlight;
+    private final int threads;
+    private final int maxBatchSize;
+    private final long batchWindowNanos;
+    private final long defaultDeadlineMillis;
+    private final DifficultyGrader grader = new DifficultyGrader();
+    private final SolverPool pool = new SolverPool(POOL_BUDGET_BYTES);
+    private volatile boolean running;
+
+    // The metrics.
+    private final LongAdder solveRequests = new LongAdder();
+    private final LongAdder validateRequests = new LongAdder();
+    private final LongAdder gradeRequests = new LongAdder();
+    private final LongAdder badRequests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder limitsReached = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedJobs = new LongAdder();
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long numLatencies;
+
+    /**
+     * Create a service on the given port with one worker per available processor, batches of up to 64 puzzles
+     * collected over at most 2 ms, a default deadline of 10 s, and room for 4096 waiting puzzles.
+     * @param port the port, or 0 for any free port
+     * @throws IOException if the server cannot be bound to the port
+     */
+    public SudokuService(final int port) throws IOException {
+        this(new InetSocketAddress(port), Runtime.getRuntime().availableProcessors(), 64, 2, 10_000, 4096);
+    }
+
+    /**
+     * Create a service.
+     * @param address the address on which to listen
+     * @param threads the number of workers solving puzzles
+     * @param maxBatchSize the largest number of puzzles solved in one batch
+     * @param batchWindowMillis how long to wait for more puzzles once a batch has its first, in milliseconds
+     * @param defaultDeadlineMillis the deadline for requests that do not specify one, in milliseconds, of at most a day
+     * @param queueCapacity the largest number of puzzles that may be waiting for a batch
+     * @throws IOException if the server cannot be bound to the address
+     */
+    public SudokuService(final InetSocketAddress address, final int threads, final int maxBatchSize,
+                         final long batchWindowMillis, final long defaultDeadlineMillis,
+                         final int queueCapacity) throws IOException {
+        if (threads <= 0 || maxBatchSize <= 0 || queueCapacity <= 0)
+            throw new IllegalArgumentException("threads, batch size, and queue capacity must be positive integers");
+        if (batchWindowMillis < 0 || defaultDeadlineMillis <= 0 || defaultDeadlineMillis > MAX_DEADLINE_MILLIS)
+            throw new IllegalArgumentException("illegal batch window or deadline");
+
+        this.threads = threads;
+        this.maxBatchSize = maxBatchSize;
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+        this.defaultDeadlineMillis = defaultDeadlineMillis;
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(maxBatchSize);
+        workers = Executors.newFixedThreadPool(threads, daemon("sudoku-worker"));
+        handlers = Executors.newFixedThreadPool(threads, daemon("sudoku-http"));
+        dispatcher = daemon("sudoku-dispatcher").newThread(this::dispatch);
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(handlers);
+        server.createContext("/solve", exchange -> handle(exchange, "POST", this::solve));
+        server.createContext("/validate", exchange -> handle(exchange, "POST", this::validate));
+        server.createContext("/grade", exchange -> handle(exchange, "POST", this::grade));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET",
+                request -> CompletableFuture.completedFuture(metrics())));
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return runnable -> {
+            final var thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        running = true;
+        dispatcher.start();
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests, and refuse any puzzles still waiting.
+     */
+    public void stop() {
+        running = false;
+        server.stop(0);
+        dispatcher.interrupt();
+        workers.shutdownNow();
+        handlers.shutdownNow();
+        for (var job = queue.poll(); job != null; job = queue.poll())
+            job.result.completeExceptionally(new RejectedExecutionException("service stopped"));
+    }
+
+    /**
+     * The port on which the service is listening, which is useful if it was created with port 0.
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // The status of a response, and its body.
+    private static final class Response {
+        final int code;
+        final Map<String, ?> body;
+
+        Response(final int code, final Map<String, ?> body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+
+    private interface Endpoint {
+        CompletableFuture<Response> apply(Map<String, Object> request);
+    }
+
+    /**
+     * Answer a request, once the endpoint's response is ready, on a handler thread.
+     */
+    private void handle(final HttpExchange exchange, final String method, final Endpoint endpoint) throws IOException {
+        CompletableFuture<Response> response;
+        try {
+            if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().add("Allow", method);
+                response = CompletableFuture.completedFuture(error(405, "use " + method));
+            } else {
+                final var request = method.equals("POST") ? Json.parseObject(read(exchange)) : Map.<String, Object>of();
+                response = endpoint.apply(request);
+            }
+        } catch (IllegalArgumentException ex) {
+            badRequests.increment();
+            response = CompletableFuture.completedFuture(error(400, ex.getMessage()));
+        } catch (RuntimeException ex) {
+            response = CompletableFuture.completedFuture(error(500, "internal error: " + ex));
+        }
+
+        response.whenCompleteAsync((result, ex) -> {
+            try {
+                respond(exchange, result != null ? result : error(500, "internal error: " + ex));
+            } catch (IOException ignored) {
+                // The client has gone, so there is no one to tell.
+            } finally {
+                exchange.close();
+            }
+        }, handlers);
+    }
+
+    private static void respond(final HttpExchange exchange, final Response response) throws IOException {
+        final var bytes = Json.writeObject(response.body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.code, bytes.length);
+        try (final var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String read(final HttpExchange exchange) throws IOException {
+        try (final var in = exchange.getRequestBody()) {
+            final var bytes = new ByteArrayOutputStream();
+            final var buffer = new byte[4096];
+            for (var n = in.read(buffer); n >= 0; n = in.read(buffer))
+                bytes.write(buffer, 0, n);
+            return bytes.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Response error(final int code, final String message) {
+        final var body = new LinkedHashMap<String, Object>();
+        body.put("error", message);
+        return new Response(code, body);
+    }
+
+    private static GenSudokuBoard<Integer> puzzle(final Map<String, Object> request) {
+        final var puzzle = request.get("puzzle");
+        if (!(puzzle instanceof String))
+            throw new IllegalArgumentException("\"puzzle\" must be a string");
+        return BoardFormat.fromLine((String) puzzle);
+    }
+
+    private CompletableFuture<Response> validate(final Map<String, Object> request) {
+        validateRequests.increment();
+        final var start = System.nanoTime();
+        final var board = puzzle(request);
+        final var body = new LinkedHashMap<String, Object>();
+        body.put("valid", board.isValid());
+        body.put("complete", board.isComplete());
+        body.put("solved", board.isSolved());
+        recordLatency(System.nanoTime() - start);
+        return CompletableFuture.completedFuture(new Response(200, body));
+    }
+
+    private CompletableFuture<Response> solve(final Map<String, Object> request) {
+        solveRequests.increment();
+        return submit(request, false);
+    }
+
+    private CompletableFuture<Response> grade(final Map<String, Object> request) {
+        gradeRequests.increment();
+        return submit(request, true);
+    }
+
+    /**
+     * Queue a puzzle for the next batch, to be answered once it is solved or graded, or its deadline has passed.
+     */
+    private CompletableFuture<Response> submit(final Map<String, Object> request, final boolean grade) {
+        final var start = System.nanoTime();
+        final var board = puzzle(request);
+        var deadlineMillis = defaultDeadlineMillis;
+        final var requested = request.get("deadlineMillis");
+        if (requested != null) {
+            if (!(requested instanceof Double && (Double) requested > 0 && (Double) requested <= MAX_DEADLINE_MILLIS))
+                throw new IllegalArgumentException("\"deadlineMillis\" must be a positive number of at most "
+                        + MAX_DEADLINE_MILLIS);
+            deadlineMillis = (long) Math.ceil((Double) requested);
+        }
+
+        final var job = new Job(board, grade, start + TimeUnit.MILLISECONDS.toNanos(deadlineMillis));
+        if (!queue.offer(job)) {
+            rejected.increment();
+            return CompletableFuture.completedFuture(error(503, "too many puzzles waiting"));
+        }
+
+        return job.result
+                .completeOnTimeout(limit(), deadlineMillis + DEADLINE_SLACK_MILLIS, TimeUnit.MILLISECONDS)
+                .handle((body, ex) -> {
+                    if (ex != null) {
+                        final var cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                        if (cause instanceof RejectedExecutionException)
+                            return error(503, cause.getMessage());
+                        return error(500, "internal error: " + cause);
+                    }
+                    if ("limit".equals(body.get("status")))
+                        limitsReached.increment();
+                    recordLatency(System.nanoTime() - start);
+                    return new Response(200, body);
+                });
+    }
+
+    private static Map<String, Object> limit() {
+        final var body = new LinkedHashMap<String, Object>();
+        body.put("status", "limit");
+        return body;
+    }
+
+    /**
+     * The status of a solved or graded puzzle, as reported by the service.
+     */
+    private static String status(final GenSudokuCP.Status status) {
+        switch (status) {
+            case UNIQUE:             return "solved";
+            case NO_SOLUTION:        return "unsolvable";
+            case MULTIPLE_SOLUTIONS: return "multiple";
+            case LIMIT_REACHED:      return "limit";
+            default:                 throw new IllegalStateException("puzzle was not solved");
+        }
+    }
+
+    /**
+     * Collect batches of jobs from the queue, and solve each batch in one parallel pass, without waiting for the pass
+     * to finish. The next batch is collected while the current one runs, and is handed over once as many of the jobs
+     * before it have finished, so under load the batches grow to the maximum size.
+     */
+    private void dispatch() {
+        final var batch = new ArrayList<Job>(maxBatchSize);
+        try {
+            while (running) {
+                batch.add(queue.take());
+                final var until = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < maxBatchSize) {
+                    final var job = queue.poll(until - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (job == null)
+                        break;
+                    batch.add(job);
+                }
+
+                batches.increment();
+                batchedJobs.add(batch.size());
+                inFlight.acquire(batch.size());
+                pass(batch.toArray(new Job[0]));
+                batch.clear();
+            }
+        } catch (InterruptedException | RejectedExecutionException ex) {
+            // The service is stopping, so refuse the jobs that were not handed over.
+            for (final var job : batch)
+                job.result.completeExceptionally(new RejectedExecutionException("service stopped"));
+        }
+    }
+
+    /**
+     * Solve the jobs of a batch on up to one task per worker thread, each of which takes the next job of the batch
+     * until there are none left, so that a slow puzzle holds up only the task solving it.
+     * @throws RejectedExecutionException if the workers have been shut down, and no task could be started
+     */
+    private void pass(final Job[] jobs) {
+        final var next = new AtomicInteger();
+        final var tasks = Math.min(threads, jobs.length);
+        for (var t = 0; t < tasks; ++t) {
+            try {
+                workers.execute(() -> {
+                    for (var i = next.getAndIncrement(); i < jobs.length; i = next.getAndIncrement())
+                        execute(jobs[i]);
+                });
+            } catch (RejectedExecutionException ex) {
+                // The tasks already started take every job, so the batch is only lost if none were.
+                if (t > 0)
+                    return;
+                inFlight.release(jobs.length);
+                throw ex;
+            }
+        }
+    }
+
+    private void execute(final Job job) {
+        try {
+            job.result.complete(run(job));
+        } catch (RuntimeException ex) {
+            job.result.completeExceptionally(ex);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private Map<String, Object> run(final Job job) {
+        final var remaining = TimeUnit.NANOSECONDS.toMillis(job.deadline - System.nanoTime());
+        if (remaining <= 0)
+            return limit();
+
+        final var body = new LinkedHashMap<String, Object>();
+        if (job.grade) {
+            final var grade = grader.grade(job.board, remaining);
+            body.put("status", status(grade.getStatus()));
+            if (grade.isUnique()) {
+                body.put("score", grade.getScore());
+                body.put("technique", String.valueOf(grade.getHardestTechnique()));
+                body.put("nodes", grade.getNodes());
+                body.put("backtracks", grade.getBacktracks());
+                body.put("clues", grade.getClues());
+            }
+        } else {
+            // A solver whose search threw may be left in a bad state, so it is discarded rather than reused.
+            final var solver = pool.acquire(job.board);
+            final boolean solved;
+            try {
+                solver.setTimeLimit(remaining);
+                solved = solver.solve();
+            } catch (RuntimeException ex) {
+                pool.discard(solver);
+                throw ex;
+            }
+            body.put("status", status(solver.getStatus()));
+            pool.release(solver);
+            if (solved)
+                body.put("solution", BoardFormat.toLine(job.board));
+        }
+        return body;
+    }
+
+    private synchronized void recordLatency(final long nanos) {
+        latencies[(int) (numLatencies++ % LATENCY_WINDOW)] = nanos;
+    }
+
+    private Response metrics() {
+        final long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(numLatencies, LATENCY_WINDOW));
+        }
+        Arrays.sort(sorted);
+
+        final var numBatches = batches.sum();
+        final var body = new LinkedHashMap<String, Object>();
+        body.put("solveRequests", solveRequests.sum());
+        body.put("validateRequests", validateRequests.sum());
+        body.put("gradeRequests", gradeRequests.sum());
+        body.put("badRequests", badRequests.sum());
+        body.put("rejected", rejected.sum());
+        body.put("limitsReached", limitsReached.sum());
+        body.put("batches", numBatches);
+        body.put("meanBatchSize", numBatches == 0 ? 0.0 : (double) batchedJobs.sum() / numBatches);
+        body.put("queued", queue.size());
+        body.put("latencyP50Millis", BatchSolver.percentile(sorted, 50));
+        body.put("latencyP90Millis", BatchSolver.percentile(sorted, 90));
+        body.put("latencyP99Millis", BatchSolver.percentile(sorted, 99));
+        body.put("latencyMaxMillis", BatchSolver.percentile(sorted, 100));
+        body.put("poolHits", pool.getHits());
+        body.put("poolMisses", pool.getMisses());
+        body.put("poolEvictions", pool.getEvictions());
+        body.put("poolIdle", pool.getIdleCount());
+        body.put("poolIdleBytes", pool.getIdleBytes());
+        return new Response(200, body);
+    }
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -cp sudoku-cp-all.jar com.vorpal.sudoku.SudokuService [options]",
+            "Serves /solve, /validate, /grade, and /metrics over HTTP.",
+            "",
+            "Options:",
+            "  -p, --port N           the port on which to listen (default 8080)",
+            "  -t, --threads N        the number of solver threads (default: number of processors)",
+            "      --batch-size N     the largest number of puzzles solved in one batch (default 64)",
+            "      --batch-window MS  how long to collect a batch, in milliseconds (default 2)",
+            "      --deadline MS      the default deadline per request, in milliseconds (default 10000)",
+            "      --queue N          the largest number of puzzles waiting for a batch (default 4096)",
+            "      --warmup N         solve N rounds of warm-up puzzles before listening (default 0)",
+            "  -h, --help             show this message");
+
+    public static void main(final String[] args) throws IOException {
+        var port = 8080;
+        var threads = Runtime.getRuntime().availableProcessors();
+        var batchSize = 64;
+        var batchWindow = 2;
+        var deadline = 10_000;
+        var queueCapacity = 4096;
+        var warmupRounds = 0;
+        try {
+            for (var i = 0; i < args.length; ++i) {
+                final var arg = args[i];
+                switch (arg) {
+                    case "-h": case "--help":
+                        System.out.println(USAGE);
+                        return;
+                    case "-p": case "--port":
+                        port = nonNegative(arg, args, ++i);
+                        break;
+                    case "-t": case "--threads":
+                        threads = nonNegative(arg, args, ++i);
+                        break;
+                    case "--batch-size":
+                        batchSize = nonNegative(arg, args, ++i);
+                        break;
+                    case "--batch-window":
+                        batchWindow = nonNegative(arg, args, ++i);
+                        break;
+                    case "--deadline":
+                        deadline = nonNegative(arg, args, ++i);
+                        break;
+                    case "--queue":
+                        queueCapacity = nonNegative(arg, args, ++i);
+                        break;
+                    case "--warmup":
+                        warmupRounds = nonNegative(arg, args, ++i);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            final var service = new SudokuService(new InetSocketAddress(port), threads, batchSize,
+                    batchWindow, deadline, queueCapacity);
+            Warmup.run(warmupRounds);
+            service.start();
+            System.err.println("Listening on port " + service.getPort());
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        // The server's threads are daemons, so keep the JVM alive until it is killed.
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int nonNegative(final String option, final String[] args, final int i) {
+        if (i >= args.length)
+            throw new IllegalArgumentException(option + " requires a value");
+        try {
+            final var n = Integer.parseInt(args[i]);
+            if (n >= 0)
+                return n;
+        } catch (NumberFormatException ex) {
+            // Fall through.
+        }
+        throw new IllegalArgumentException(option + " requires a non-negative integer");
+    }
+}
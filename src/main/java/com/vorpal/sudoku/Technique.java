@@ -0,0 +1,40 @@
+// Technique.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+/**
+ * The logical techniques used by LogicalSolver, in increasing order of difficulty.
+ *
+ * The ratings are loosely based on those of Sudoku Explainer, so that a puzzle that can be solved with singles
+ * alone rates below 2.5, and one that requires guessing rates 5.0 or above.
+ */
+@SuppressWarnings("WeakerAccess")
+public enum Technique {
+    HIDDEN_SINGLE(1.5),
+    NAKED_SINGLE(2.3),
+    LOCKED_CANDIDATES(2.6),
+    NAKED_PAIR(3.0),
+    X_WING(3.2),
+    HIDDEN_PAIR(3.4),
+    NAKED_TRIPLE(3.6),
+    HIDDEN_TRIPLE(4.0),
+
+    // Not a technique as such: the puzzle cannot be solved by the techniques above, and requires search.
+    GUESS(5.0);
+
+    private final double rating;
+
+    Technique(final double rating) {
+        this.rating = rating;
+    }
+
+    /**
+     * Accessor for rating.
+     * @return the difficulty rating of the technique
+     */
+    public double getRating() {
+        return rating;
+    }
+}
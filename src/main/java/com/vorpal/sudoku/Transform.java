@@ -0,0 +1,353 @@
+// Transform.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An immutable symmetry of Sudoku boards of a given dimensionality: a rearrangement of the cells, combined with a
+ * relabeling of the symbols, that takes valid boards to valid boards and solved boards to solved boards.
+ *
+ * The basic transforms are transposition, rotation, reflection, permutation of the rows within a band or the columns
+ * within a stack, permutation of the bands or stacks, and relabeling of the symbols. They are composed with then,
+ * and however many are composed, the result is a single table giving the cell each cell takes its value from, and a
+ * single table relabeling the codes of the symbols, so a board is transformed in one pass over its cells.
+ *
+ * Boards are transformed in place with GenSudokuBoard.transform, which follows the cycles of the rearrangement,
+ * precomputed here, so that it needs no scratch space; or into another board with GenSudokuBoard.copyFrom.
+ * Neither allocates, unless the contents of the board being written are shared with a snapshot.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class Transform {
+    private final int dimensionality;
+
+    // Cell i of a transformed board takes its value from cell source[i] of the original.
+    private final int[] source;
+
+    // Code c of a transformed board becomes relabel[c], where relabel[0] is always 0.
+    private final int[] relabel;
+
+    // One cell of each cycle of source, including the cells that stay where they are, which are still relabeled.
+    private final int[] cycles;
+
+    private Transform(final int dimensionality, final int[] source, final int[] relabel) {
+        this.dimensionality = dimensionality;
+        this.source = source;
+        this.relabel = relabel;
+
+        final var visited = new boolean[source.length];
+        final var leaders = new int[source.length];
+        var count = 0;
+        for (var i = 0; i < source.length; ++i) {
+            if (visited[i])
+                continue;
+            leaders[count++] = i;
+            for (var j = i; !visited[j]; j = source[j])
+                visited[j] = true;
+        }
+        cycles = Arrays.copyOf(leaders, count);
+    }
+
+    // A rearrangement of the cells: the index of the cell that (x, y) takes its value from.
+    private interface CellMap {
+        int source(int x, int y);
+    }
+
+    private static Transform ofCells(final int dimensionality, final CellMap map) {
+        final var side = checkDimensionality(dimensionality);
+        final var source = new int[side * side];
+        for (var x = 0; x < side; ++x)
+            for (var y = 0; y < side; ++y)
+                source[x * side + y] = map.source(x, y);
+        return new Transform(dimensionality, source, identityCodes(side));
+    }
+
+    /**
+     * The transform that changes nothing.
+     * @param dimensionality the dimensionality of the boards
+     * @return the identity
+     */
+    public static Transform identity(final int dimensionality) {
+        return ofCells(dimensionality, (x, y) -> x * dimensionality * dimensionality + y);
+    }
+
+    /**
+     * Swap the rows and the columns.
+     * @param dimensionality the dimensionality of the boards
+     * @return the transform taking (x, y) to (y, x)
+     */
+    public static Transform transpose(final int dimensionality) {
+        return ofCells(dimensionality, (x, y) -> y * dimensionality * dimensionality + x);
+    }
+
+    /**
+     * Rotate the board clockwise by a number of quarter turns.
+     * @param dimensionality the dimensionality of the boards
+     * @param quarterTurns the number of quarter turns, which may be negative for counterclockwise rotation
+     * @return the rotation
+     */
+    public static Transform rotate(final int dimensionality, final int quarterTurns) {
+        final var side = dimensionality * dimensionality;
+        switch (Math.floorMod(quarterTurns, 4)) {
+            case 1:
+                return ofCells(dimensionality, (x, y) -> (side - 1 - y) * side + x);
+            case 2:
+                return ofCells(dimensionality, (x, y) -> (side - 1 - x) * side + side - 1 - y);
+            case 3:
+                return ofCells(dimensionality, (x, y) -> y * side + side - 1 - x);
+            default:
+                return identity(dimensionality);
+        }
+    }
+
+    /**
+     * Reflect the board left to right, reversing the order of the columns.
+     * @param dimensionality the dimensionality of the boards
+     * @return the reflection
+     */
+    public static Transform reflectHorizontally(final int dimensionality) {
+        final var side = dimensionality * dimensionality;
+        return ofCells(dimensionality, (x, y) -> x * side + side - 1 - y);
+    }
+
+    /**
+     * Reflect the board top to bottom, reversing the order of the rows.
+     * @param dimensionality the dimensionality of the boards
+     * @return the reflection
+     */
+    public static Transform reflectVertically(final int dimensionality) {
+        final var side = dimensionality * dimensionality;
+        return ofCells(dimensionality, (x, y) -> (side - 1 - x) * side + y);
+    }
+
+    /**
+     * Permute the rows within a band, i.e. a horizontal strip of sections.
+     * @param dimensionality the dimensionality of the boards
+     * @param band the band, in [0, dimensionality)
+     * @param order row i of the band of the result is row order[i] of the band of the original
+     * @return the permutation
+     */
+    public static Transform permuteRowsInBand(final int dimensionality, final int band, final int... order) {
+        checkIndex(dimensionality, band, "band");
+        checkPermutation(dimensionality, order);
+        final var side = dimensionality * dimensionality;
+        return ofCells(dimensionality, (x, y) ->
+                (x / dimensionality == band ? band * dimensionality + order[x % dimensionality] : x) * side + y);
+    }
+
+    /**
+     * Permute the columns within a stack, i.e. a vertical strip of sections.
+     * @param dimensionality the dimensionality of the boards
+     * @param stack the stack, in [0, dimensionality)
+     * @param order column i of the stack of the result is column order[i] of the stack of the original
+     * @return the permutation
+     */
+    public static Transform permuteColumnsInStack(final int dimensionality, final int stack, final int... order) {
+        checkIndex(dimensionality, stack, "stack");
+        checkPermutation(dimensionality, order);
+        final var side = dimensionality * dimensionality;
+        return ofCells(dimensionality, (x, y) ->
+                x * side + (y / dimensionality == stack ? stack * dimensionality + order[y % dimensionality] : y));
+    }
+
+    /**
+     * Permute the bands, keeping the order of the rows within each.
+     * @param dimensionality the dimensionality of the boards
+     * @param order band i of the result is band order[i] of the original
+     * @return the permutation
+     */
+    public static Transform permuteBands(final int dimensionality, final int... order) {
+        checkPermutation(dimensionality, order);
+        final var side = dimensionality * dimensionality;
+        return ofCells(dimensionality, (x, y) ->
+                (order[x / dimensionality] * dimensionality + x % dimensionality) * side + y);
+    }
+
+    /**
+     * Permute the stacks, keeping the order of the columns within each.
+     * @param dimensionality the dimensionality of the boards
+     * @param order stack i of the result is stack order[i] of the original
+     * @return the permutation
+     */
+    public static Transform permuteStacks(final int dimensionality, final int... order) {
+        checkPermutation(dimensionality, order);
+        final var side = dimensionality * dimensionality;
+        return ofCells(dimensionality, (x, y) ->
+                x * side + order[y / dimensionality] * dimensionality + y % dimensionality);
+    }
+
+    /**
+     * Relabel the symbols, by their codes. The codes of the valid entries of a board are 1 through
+     * dimensionality^2, in the natural order of the symbols if they have one: for a SudokuBoard, they are the digits.
+     * @param dimensionality the dimensionality of the boards
+     * @param codes code i + 1 becomes codes[i]
+     * @return the relabeling
+     */
+    public static Transform relabel(final int dimensionality, final int... codes) {
+        final var side = checkDimensionality(dimensionality);
+        if (codes.length != side)
+            throw new IllegalArgumentException("relabeling must have " + side + " codes");
+        final var relabel = new int[side + 1];
+        final var seen = new boolean[side + 1];
+        for (var i = 0; i < side; ++i) {
+            final var code = codes[i];
+            if (code < 1 || code > side || seen[code])
+                throw new IllegalArgumentException("not a relabeling of 1 through " + side);
+            seen[code] = true;
+            relabel[i + 1] = code;
+        }
+        final var source = new int[side * side];
+        for (var i = 0; i < source.length; ++i)
+            source[i] = i;
+        return new Transform(dimensionality, source, relabel);
+    }
+
+    /**
+     * Relabel the symbols of boards like the given one.
+     * @param board a board, whose dimensionality and symbols the transform is for
+     * @param mapping the symbol each symbol becomes: symbols that are not keys are left alone
+     * @return the relabeling
+     */
+    public static <T> Transform relabel(final GenSudokuBoard<T> board, final Map<T, T> mapping) {
+        final var alphabet = board.getAlphabet();
+        final var side = alphabet.size();
+        final var codes = new int[side];
+        for (var code = 1; code <= side; ++code) {
+            final var symbol = alphabet.symbol(code);
+            final var image = mapping.getOrDefault(symbol, symbol);
+            codes[code - 1] = alphabet.code(image);
+            if (codes[code - 1] <= 0)
+                throw new IllegalArgumentException("Value not legal: " + image);
+        }
+        return relabel(board.getDimensionality(), codes);
+    }
+
+    /**
+     * Choose a transform at random from those generated by the basic transforms, e.g. to generate variants of a
+     * puzzle.
+     * @param dimensionality the dimensionality of the boards
+     * @param random the source of randomness
+     * @return the transform
+     */
+    public static Transform random(final int dimensionality, final Random random) {
+        final var side = checkDimensionality(dimensionality);
+        var transform = random.nextBoolean() ? transpose(dimensionality) : identity(dimensionality);
+        transform = transform.then(permuteBands(dimensionality, shuffle(dimensionality, random)))
+                .then(permuteStacks(dimensionality, shuffle(dimensionality, random)));
+        for (var i = 0; i < dimensionality; ++i)
+            transform = transform.then(permuteRowsInBand(dimensionality, i, shuffle(dimensionality, random)))
+                    .then(permuteColumnsInStack(dimensionality, i, shuffle(dimensionality, random)));
+        final var codes = shuffle(side, random);
+        for (var i = 0; i < side; ++i)
+            ++codes[i];
+        return transform.then(relabel(dimensionality, codes));
+    }
+
+    private static int[] shuffle(final int n, final Random random) {
+        final var order = new int[n];
+        for (var i = 0; i < n; ++i) {
+            final var j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Compose this transform with another.
+     * @param next the transform to apply after this one
+     * @return the transform that applies this one, and then next
+     */
+    public Transform then(final Transform next) {
+        if (next.dimensionality != dimensionality)
+            throw new IllegalArgumentException("transforms must have the same dimensionality");
+        final var composedSource = new int[source.length];
+        for (var i = 0; i < source.length; ++i)
+            composedSource[i] = source[next.source[i]];
+        final var composedRelabel = new int[relabel.length];
+        for (var c = 0; c < relabel.length; ++c)
+            composedRelabel[c] = next.relabel[relabel[c]];
+        return new Transform(dimensionality, composedSource, composedRelabel);
+    }
+
+    /**
+     * The transform that undoes this one.
+     * @return the inverse
+     */
+    public Transform inverse() {
+        final var inverseSource = new int[source.length];
+        for (var i = 0; i < source.length; ++i)
+            inverseSource[source[i]] = i;
+        final var inverseRelabel = new int[relabel.length];
+        for (var c = 0; c < relabel.length; ++c)
+            inverseRelabel[relabel[c]] = c;
+        return new Transform(dimensionality, inverseSource, inverseRelabel);
+    }
+
+    /**
+     * Accessor for dimensionality.
+     * @return dimensionality
+     */
+    public int getDimensionality() {
+        return dimensionality;
+    }
+
+    /**
+     * Transform the codes of a board in place, following each cycle of the rearrangement with a single saved value.
+     * @param cells the codes of the board, row by row
+     */
+    void applyInPlace(final int[] cells) {
+        for (final var start : cycles) {
+            final var first = cells[start];
+            var i = start;
+            for (var j = source[i]; j != start; j = source[j]) {
+                cells[i] = relabel[cells[j]];
+                i = j;
+            }
+            cells[i] = relabel[first];
+        }
+    }
+
+    /**
+     * Transform the codes of a board into another array.
+     * @param from the codes of the original board, row by row
+     * @param to the array to hold the codes of the transformed board, which must not be from
+     */
+    void apply(final int[] from, final int[] to) {
+        for (var i = 0; i < to.length; ++i)
+            to[i] = relabel[from[source[i]]];
+    }
+
+    private static int checkDimensionality(final int dimensionality) {
+        if (dimensionality <= 0)
+            throw new IllegalArgumentException("dimensionality must be a positive integer");
+        return dimensionality * dimensionality;
+    }
+
+    private static void checkIndex(final int dimensionality, final int index, final String name) {
+        if (index < 0 || index >= dimensionality)
+            throw new IllegalArgumentException("Illegal " + name + ": " + index);
+    }
+
+    private static void checkPermutation(final int n, final int[] order) {
+        if (order.length != n)
+            throw new IllegalArgumentException("permutation must have " + n + " elements");
+        final var seen = new boolean[n];
+        for (final var i : order) {
+            if (i < 0 || i >= n || seen[i])
+                throw new IllegalArgumentException("not a permutation of 0 through " + (n - 1));
+            seen[i] = true;
+        }
+    }
+
+    private static int[] identityCodes(final int side) {
+        final var codes = new int[side + 1];
+        for (var c = 0; c <= side; ++c)
+            codes[c] = c;
+        return codes;
+    }
+}
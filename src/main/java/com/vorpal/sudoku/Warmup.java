@@ -0,0 +1,142 @@
+// Warmup.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Warms up a JVM for solving, and measures how long that takes.
+ *
+ * The first puzzles a JVM solves are much slower than the rest, since the classes of the solver and of Choco must be
+ * loaded and the JIT has yet to compile the hot paths. Processes that must be fast from their first puzzle, such as
+ * services, can call run before accepting any work, to solve a small embedded set of representative puzzles with
+ * every solver: the logical techniques, the dedicated 9x9 search of SudokuCP through a SolverPool that rebinds its
+ * solver from puzzle to puzzle, as the services do, and the constraint program of GenSudokuCP. This loads the
+ * classes, and with enough rounds, gets the hot paths compiled.
+ *
+ * Loading the classes can also be avoided altogether with an application class-data sharing archive, which the
+ * appcds Maven profile builds by running this class (see the README).
+ *
+ * Run as a program, this is a benchmark of the time to the first solution and the time to steady state:
+ * the embedded puzzles are solved in rounds until the time per round stops improving.
+ * With --rounds N, it instead just solves N rounds and exits, as a training run for the archive.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class Warmup {
+    // Puzzles from easy (singles only) to hard (search needed), one with many solutions, and one with none.
+    private static final String[] PUZZLES = {
+            "100089457738000000040010000004050906000000000000000728080001000007008095060090300",
+            "000000000100006002832000100900008000007000040003047891000960500004000006005030200",
+            "010940070000006010087001090020400700800000001004008020060800450070200000090067083",
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000",
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050",
+            "610940070000006010087001090020400700800000001004008020060800450070200000090067083",
+    };
+
+    // The steady state is reached when the last STEADY_ROUNDS rounds are all within STEADY_TOLERANCE of their median.
+    private static final int STEADY_ROUNDS = 5;
+    private static final double STEADY_TOLERANCE = 0.1;
+    private static final int MAX_ROUNDS = 500;
+
+    private static final String USAGE = "Usage: java -cp sudoku-cp-all.jar com.vorpal.sudoku.Warmup [--rounds N]";
+
+    private Warmup() {}
+
+    /**
+     * Solve the embedded puzzles a number of times with each solver.
+     * A single round loads the classes; a few dozen get most of the hot paths compiled.
+     * @param rounds the number of rounds
+     */
+    public static void run(final int rounds) {
+        final var pool = new SolverPool(SolverPool.estimateBytes(3));
+        for (var i = 0; i < rounds; ++i)
+            round(pool);
+    }
+
+    /**
+     * Solve each embedded puzzle once with each solver.
+     * @param pool the pool of the SudokuCP solvers, which keeps one solver to rebind between rounds
+     * @return the time the round took, in nanoseconds
+     */
+    private static long round(final SolverPool pool) {
+        final var start = System.nanoTime();
+        final var logical = new LogicalSolver(3);
+        for (final var puzzle : PUZZLES) {
+            final var board = BoardFormat.fromLine(puzzle);
+            board.isValid();
+            logical.solve(board.codes());
+
+            final var solver = pool.acquire(board);
+            solver.solve();
+            pool.release(solver);
+            board.isSolved();
+
+            new GenSudokuCP<>(BoardFormat.fromLine(puzzle)).solve();
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(final String[] args) {
+        if (args.length == 2 && args[0].equals("--rounds")) {
+            var rounds = -1;
+            try {
+                rounds = Integer.parseInt(args[1]);
+            } catch (NumberFormatException ex) {
+                // Fall through.
+            }
+            if (rounds < 0) {
+                System.err.println("--rounds requires a non-negative integer");
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            run(rounds);
+            return;
+        }
+        if (args.length != 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        final var mainStart = System.nanoTime();
+        final var jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        final var mainStartMillis = System.currentTimeMillis();
+
+        final var first = BoardFormat.fromLine(PUZZLES[0]);
+        GenSudokuCP.of(first).solve();
+        final var firstSolve = System.nanoTime() - mainStart;
+
+        final var pool = new SolverPool(SolverPool.estimateBytes(3));
+        final var times = new long[MAX_ROUNDS];
+        var rounds = 0;
+        var steady = false;
+        while (rounds < MAX_ROUNDS && !steady) {
+            times[rounds++] = round(pool);
+            steady = rounds >= STEADY_ROUNDS && isSteady(Arrays.copyOfRange(times, rounds - STEADY_ROUNDS, rounds));
+        }
+        final var toSteady = System.nanoTime() - mainStart;
+        final var steadyTime = times[rounds - 1];
+
+        final var out = System.out;
+        out.printf("first solve:  %.1f ms after main (%d ms after JVM start)%n",
+                firstSolve / 1e6, mainStartMillis - jvmStartMillis + firstSolve / 1_000_000);
+        out.printf("first round:  %.1f ms for %d puzzles%n", times[0] / 1e6, PUZZLES.length);
+        out.printf("%s %.1f ms after main, in %d rounds%n",
+                steady ? "steady state:" : "no steady state, stopped", toSteady / 1e6, rounds);
+        out.printf("last round:   %.1f ms (%.1fx faster than the first)%n",
+                steadyTime / 1e6, (double) times[0] / steadyTime);
+    }
+
+    private static boolean isSteady(final long[] times) {
+        final var sorted = times.clone();
+        Arrays.sort(sorted);
+        final var median = sorted[sorted.length / 2];
+        for (final var time : times)
+            if (Math.abs(time - median) > STEADY_TOLERANCE * median)
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,84 @@
+// TestBatchSolver.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+class TestBatchSolver {
+    private static final String extreme =
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+    private static final String simple =
+            "100089457738000000040010000004050906000000000000000728080001000007008095060090300";
+    private static final String multiple =
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050";
+    private static final String unsolvable =
+            "110940070000006010087001090020400700800000001004008020060800450070200000090067083";
+
+    @Test
+    @DisplayName("Parse the command line")
+    void parseTest() {
+        assertTrue(new BatchSolver().parse(new String[0]));
+        assertTrue(new BatchSolver().parse(new String[] {"-d", "2", "-t", "3", "--backend", "Hybrid",
+                "--time-limit", "100", "--node-limit", "1000", "-q", "-o", "out.txt", "a.txt", "-"}));
+        assertFalse(new BatchSolver().parse(new String[] {"-q", "--help", "--unknown"}));
+
+        for (final var args : Arrays.asList(
+                new String[] {"--unknown"},
+                new String[] {"-t"},
+                new String[] {"-t", "0"},
+                new String[] {"--node-limit", "many"},
+                new String[] {"-b", "guess"},
+                new String[] {"-d", "6"}))
+            assertThrows(IllegalArgumentException.class, () -> new BatchSolver().parse(args),
+                    String.join(" ", args));
+    }
+
+    @Test
+    @DisplayName("Solve a file of puzzles, writing the results in order")
+    void runTest() throws IOException {
+        final var input = Files.createTempFile("puzzles", ".txt");
+        final var output = Files.createTempFile("results", ".txt");
+        try {
+            Files.write(input, List.of(extreme, "# A comment", "", simple, multiple, "12345", unsolvable),
+                    StandardCharsets.UTF_8);
+
+            final var cp = new BatchSolver();
+            assertTrue(cp.parse(new String[] {"-t", "2", "-o", output.toString(), input.toString()}));
+            assertFalse(cp.run());
+            final var lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+            assertEquals(5, lines.size());
+            assertEquals(solution(extreme) + "\tsolved", lines.get(0));
+            assertEquals(solution(simple) + "\tsolved", lines.get(1));
+            assertTrue(lines.get(2).endsWith("\tmultiple"));
+            assertEquals("\terror", lines.get(3));
+            assertEquals(unsolvable + "\tunsolvable", lines.get(4).replace('.', '0'));
+
+            // The logical techniques alone cannot solve the extreme puzzle.
+            Files.write(input, List.of(extreme, simple), StandardCharsets.UTF_8);
+            final var logic = new BatchSolver();
+            assertTrue(logic.parse(new String[] {"-b", "logic", "-o", output.toString(), input.toString()}));
+            assertTrue(logic.run());
+            assertEquals(List.of(extreme.replace('0', '.') + "\tstuck", solution(simple) + "\tsolved"),
+                    Files.readAllLines(output, StandardCharsets.UTF_8));
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+
+    private static String solution(final String puzzle) {
+        final var board = BoardFormat.fromLine(puzzle);
+        assertTrue(new GenSudokuCP<>(board).solve());
+        return BoardFormat.toLine(board);
+    }
+}
@@ -0,0 +1,76 @@
+// TestBatchValidator.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+class TestBatchValidator {
+    // A solved board of the given dimensionality, from the pattern (x * d + x / d + y) mod side.
+    private static GenSudokuBoard<Integer> solved(final int dimensionality) {
+        final var side = dimensionality * dimensionality;
+        final var board = BoardFormat.newBoard(dimensionality);
+        for (var x = 0; x < side; ++x)
+            for (var y = 0; y < side; ++y)
+                board.set(x, y, (x * dimensionality + x / dimensionality + y) % side + 1);
+        return board;
+    }
+
+    @Test
+    @DisplayName("Batched checks agree with the checks of each board")
+    void agreementTest() {
+        final var random = new Random(0);
+        for (var dimensionality = 2; dimensionality <= 4; ++dimensionality) {
+            final var side = dimensionality * dimensionality;
+            final var validator = new BatchValidator(dimensionality);
+            final var boards = new ArrayList<GenSudokuBoard<Integer>>();
+
+            // More than two blocks, so that the last one is partially filled.
+            for (var i = 0; i < 2 * BatchValidator.BLOCK_SIZE + 17; ++i) {
+                final var board = solved(dimensionality);
+                assertTrue(board.isSolved());
+                // Empty a few cells, and change a few others, which usually makes the board invalid.
+                for (var n = random.nextInt(3); n > 0; --n)
+                    board.set(random.nextInt(side), random.nextInt(side), 0);
+                for (var n = random.nextInt(2); n > 0; --n)
+                    board.set(random.nextInt(side), random.nextInt(side), random.nextInt(side) + 1);
+                assertEquals(i, validator.add(board));
+                boards.add(board);
+            }
+
+            final var result = validator.validate();
+            assertEquals(boards.size(), result.size());
+            var numValid = 0;
+            var numSolved = 0;
+            for (var i = 0; i < boards.size(); ++i) {
+                final var board = boards.get(i);
+                assertEquals(board.isValid(), result.isValid(i));
+                assertEquals(board.isComplete(), result.isComplete(i));
+                assertEquals(board.isSolved(), result.isSolved(i));
+                if (board.isValid())
+                    ++numValid;
+                if (board.isSolved())
+                    ++numSolved;
+            }
+            assertEquals(numValid, result.getValid().cardinality());
+            assertEquals(numSolved, result.getSolved().cardinality());
+            assertTrue(numSolved > 0 && numValid < boards.size());
+
+            validator.clear();
+            assertEquals(0, validator.validate().size());
+        }
+    }
+
+    @Test
+    @DisplayName("Boards must have the dimensionality of the batch")
+    void dimensionalityTest() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchValidator(3).add(solved(2)));
+        assertThrows(IllegalArgumentException.class, () -> new BatchValidator(6));
+    }
+}
@@ -0,0 +1,144 @@
+// TestBoardArena.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+class TestBoardArena {
+    private static final String puzzle =
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+
+    @Test
+    @DisplayName("Add boards, and read and modify them through views")
+    void viewTest() {
+        final var arena = new BoardArena<>(new SudokuBoard());
+        final var board = BoardFormat.fromLine(puzzle);
+        for (var i = 0; i < 1000; ++i) {
+            board.set(0, 1, i % 9 + 1);
+            assertEquals(i, arena.add(board));
+        }
+        assertEquals(1000, arena.size());
+
+        final var view = arena.view(0);
+        for (var i = 0; i < arena.size(); ++i) {
+            board.set(0, 1, i % 9 + 1);
+            view.moveTo(i);
+            assertEquals(i, view.getIndex());
+            assertEquals(Integer.valueOf(8), view.get(0, 0));
+            assertEquals(Integer.valueOf(i % 9 + 1), view.get(0, 1));
+            assertEquals(board.isValid(), view.isValid());
+            assertFalse(view.isComplete());
+        }
+
+        // Solve a board in the arena, in place.
+        view.moveTo(arena.allocate());
+        assertEquals(Integer.valueOf(0), view.get(4, 4));
+        final var solved = BoardFormat.fromLine(puzzle);
+        assertTrue(new GenSudokuCP<>(solved).solve());
+        view.copyFrom(solved);
+        assertTrue(view.isSolved());
+        assertEquals(solved, view.thaw());
+        view.set(0, 0, 1);
+        assertFalse(view.isValid());
+        final var copy = new SudokuBoard();
+        view.copyTo(copy);
+        assertEquals(Integer.valueOf(1), copy.get(0, 0));
+        view.clear();
+        assertEquals(new SudokuBoard(), view.thaw());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> arena.view(arena.size()));
+        assertThrows(IllegalArgumentException.class, () -> view.set(0, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> arena.add(BoardFormat.newBoard(2)));
+    }
+
+    @Test
+    @DisplayName("Views and boards can be used alike as a Board")
+    void boardTest() {
+        final var arena = new BoardArena<>(new SudokuBoard());
+        final var solved = BoardFormat.fromLine(puzzle);
+        assertTrue(new GenSudokuCP<>(solved).solve());
+        final var snapshot = solved.freeze();
+
+        for (final var board : List.<Board<Integer>>of(arena.view(arena.allocate()), new SudokuBoard())) {
+            board.copyFrom(snapshot);
+            assertTrue(board.isSolved());
+            assertEquals(snapshot, board.freeze());
+            board.set(8, 8, board.get(8, 7));
+            assertTrue(board.isComplete());
+            assertFalse(board.isValid());
+            board.clear();
+            assertFalse(board.isComplete());
+            assertTrue(board.isValid());
+        }
+    }
+
+    @Test
+    @DisplayName("Save an arena to a file and load it back")
+    void saveLoadTest() throws IOException {
+        final var arena = new BoardArena<>(BoardFormat.newBoard(2));
+        final var board = BoardFormat.newBoard(2);
+        for (var i = 0; i < 100; ++i) {
+            board.set(i % 4, i / 4 % 4, i % 5);
+            arena.add(board);
+        }
+
+        final var path = Files.createTempFile("arena", ".bin");
+        try {
+            arena.save(path);
+            final var loaded = BoardArena.load(path, BoardFormat.newBoard(2));
+            assertEquals(arena.size(), loaded.size());
+            for (var i = 0; i < arena.size(); ++i)
+                assertEquals(arena.snapshot(i), loaded.snapshot(i));
+
+            // Changes to a loaded arena are not written to the file, and it can still grow.
+            loaded.view(0).set(0, 0, 4);
+            loaded.add(board);
+            assertEquals(arena.snapshot(0), BoardArena.load(path, BoardFormat.newBoard(2)).snapshot(0));
+            assertNotEquals(arena.snapshot(0), loaded.snapshot(0));
+            assertEquals(board.freeze(), loaded.snapshot(100));
+
+            assertThrows(IOException.class, () -> BoardArena.load(path, new SudokuBoard()));
+
+            // Codes of symbols that another run may number differently cannot be saved or loaded.
+            final var unstable = new GenSudokuBoard<Object>(2, '.', Set.of(1, "a", 2L, 'c'));
+            assertThrows(IllegalStateException.class, () -> new BoardArena<>(unstable).save(path));
+            assertThrows(IllegalArgumentException.class, () -> BoardArena.load(path, unstable));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @DisplayName("Save an arena over the file it was loaded from, with full chunks mapped from the file")
+    void saveOverLoadedTest() throws IOException {
+        // One more board than fits in a chunk, so that the first chunk of the loaded arena is mapped from the file.
+        final var count = (1 << 26) / 81 + 1;
+        final var arena = new BoardArena<>(new SudokuBoard());
+        final var view = arena.view(arena.allocate());
+        for (var i = 0; i < count; ++i)
+            view.moveTo(i == 0 ? 0 : arena.allocate()).set(i % 9, i / 9 % 9, i % 9 + 1);
+
+        final var path = Files.createTempFile("arena", ".bin");
+        try {
+            arena.save(path);
+            final var loaded = BoardArena.load(path, new SudokuBoard());
+            loaded.save(path);
+            final var reloaded = BoardArena.load(path, new SudokuBoard());
+            assertEquals(count, reloaded.size());
+            final var expected = reloaded.view(0);
+            for (final var i : new int[] {0, 3, count / 2, count - 2, count - 1})
+                assertEquals(Integer.valueOf(i % 9 + 1), expected.moveTo(i).get(i % 9, i / 9 % 9));
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
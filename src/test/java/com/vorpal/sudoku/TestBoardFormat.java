@@ -0,0 +1,120 @@
+// TestBoardFormat.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+class TestBoardFormat {
+    private static final String line =
+            "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..";
+
+    private static BoardFormat.Reader reader(final String text, final int dimensionality) {
+        return new BoardFormat.Reader(new BufferedReader(new StringReader(text)), dimensionality);
+    }
+
+    @Test
+    @DisplayName("Read boards in the line and grid formats")
+    void readTest() throws IOException {
+        final var board = BoardFormat.newBoard(3);
+        assertTrue(board instanceof SudokuBoard);
+        for (var i = 0; i < 81; ++i)
+            if (line.charAt(i) != '.')
+                board.set(i / 9, i % 9, line.charAt(i) - '0');
+
+        final var text = "# A comment\n" + line + "\n\n" + BoardFormat.toGrid(board) + line.replace('.', '0') + "\n";
+        try (final var in = reader(text, 3)) {
+            assertEquals(board, in.next());
+            assertEquals(board, in.next());
+            assertEquals(board, in.next());
+            assertNull(in.next());
+        }
+        assertEquals(line, BoardFormat.toLine(board));
+    }
+
+    @Test
+    @DisplayName("Read 16x16 boards")
+    void readHexTest() throws IOException {
+        final var row = "123456789ABCDEFG";
+        final var text = new StringBuilder();
+        for (var i = 0; i < 16; ++i)
+            text.append(row.substring(i)).append(row, 0, i).append('\n');
+        try (final var in = reader(text.toString().toLowerCase(), 4)) {
+            final var board = in.next();
+            assertEquals(16, board.get(0, 15).intValue());
+            assertEquals(10, board.get(1, 8).intValue());
+            assertTrue(board.isComplete());
+            assertNull(in.next());
+        }
+    }
+
+    @Test
+    @DisplayName("Skip malformed boards")
+    void malformedTest() throws IOException {
+        final var text = "12345\n" + line.substring(1) + "\n" + line.replace('8', 'X') + "\n" + line + "\n" + "1234";
+        try (final var in = reader(text, 3)) {
+            assertThrows(IllegalArgumentException.class, in::next);
+            assertThrows(IllegalArgumentException.class, in::next);
+            assertThrows(IllegalArgumentException.class, in::next);
+            assertEquals(line, BoardFormat.toLine(in.next()));
+            assertThrows(IllegalArgumentException.class, in::next);
+            assertNull(in.next());
+        }
+    }
+
+    @Test
+    @DisplayName("Skip the rest of a malformed grid, and read the board after it")
+    void malformedGridTest() throws IOException {
+        final var board = BoardFormat.fromLine(line);
+        final var grid = BoardFormat.toGrid(board);
+
+        // The third row of the first grid is missing a cell, and the boards are not separated by blank lines.
+        final var rows = grid.split("\n");
+        rows[2] = rows[2].substring(0, rows[2].lastIndexOf('|')) + "| . .";
+        final var text = String.join("\n", rows) + "\n" + grid + "\n" + line + "\n";
+        try (final var in = reader(text, 3)) {
+            assertThrows(IllegalArgumentException.class, in::next);
+            assertEquals(board, in.next());
+            assertEquals(board, in.next());
+            assertNull(in.next());
+        }
+
+        // A blank line ends the skipping early.
+        try (final var in = reader(rows[0] + "\n" + rows[2] + "\n\n" + grid, 3)) {
+            assertThrows(IllegalArgumentException.class, in::next);
+            assertEquals(board, in.next());
+            assertNull(in.next());
+        }
+    }
+
+    @Test
+    @DisplayName("Ignore header lines, such as those of the Project Euler puzzles")
+    void headerTest() throws IOException {
+        final var board = BoardFormat.fromLine(line);
+        final var rows = BoardFormat.toLine(board).replace('.', '0').split("(?<=\\G.{9})");
+        final var text = new StringBuilder();
+        for (var i = 1; i <= 3; ++i)
+            text.append("Grid 0").append(i).append('\n').append(String.join("\n", rows)).append('\n');
+        try (final var in = reader(text.toString(), 3)) {
+            for (var i = 0; i < 3; ++i)
+                assertEquals(board, in.next());
+            assertNull(in.next());
+        }
+
+        // A header ends the skipping of a malformed board, and a single letter is still an illegal value.
+        rows[4] = "12345678X";
+        try (final var in = reader(String.join("\n", Arrays.copyOf(rows, 5)) + "\nPuzzle 2\n" + line, 3)) {
+            assertThrows(IllegalArgumentException.class, in::next);
+            assertEquals(board, in.next());
+            assertNull(in.next());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+// TestConflictExplainer.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+class TestConflictExplainer {
+    // A board with only the givens of the conflict, or all but one of them.
+    private static GenSudokuBoard<Integer> restrict(final GenSudokuBoard<Integer> board, final List<int[]> conflict,
+                                                    final int skip) {
+        final var restricted = BoardFormat.newBoard(board.getDimensionality());
+        for (var i = 0; i < conflict.size(); ++i)
+            if (i != skip) {
+                final var cell = conflict.get(i);
+                restricted.set(cell[0], cell[1], board.get(cell[0], cell[1]));
+            }
+        return restricted;
+    }
+
+    private static boolean hasSolution(final GenSudokuBoard<Integer> board) {
+        final var solver = new GenSudokuCP<>(board);
+        solver.solve();
+        return solver.getStatus() == GenSudokuCP.Status.UNIQUE
+                || solver.getStatus() == GenSudokuCP.Status.MULTIPLE_SOLUTIONS;
+    }
+
+    // Check that the conflict has no solution, but has one without any one of its givens.
+    private static void assertMinimalConflict(final GenSudokuBoard<Integer> board,
+                                              final ConflictExplainer.Explanation explanation) {
+        assertTrue(explanation.isInfeasible());
+        assertTrue(explanation.isMinimal());
+        final var conflict = explanation.getConflict();
+        assertFalse(conflict.isEmpty());
+        assertFalse(hasSolution(restrict(board, conflict, -1)));
+        for (var i = 0; i < conflict.size(); ++i)
+            assertTrue(hasSolution(restrict(board, conflict, i)));
+    }
+
+    @Test
+    @DisplayName("Givens that clash directly are the conflict")
+    void clashTest() {
+        final var board = BoardFormat.fromLine(
+                "110940070000006010087001090020400700800000001004008020060800450070200000090067083");
+        final var explanation = new ConflictExplainer().explain(board);
+        assertTrue(explanation.isInfeasible());
+        assertTrue(explanation.isMinimal());
+        assertEquals(0, explanation.getProbes());
+        assertEquals(2, explanation.getConflict().size());
+        assertArrayEquals(new int[] {0, 0}, explanation.getConflict().get(0));
+        assertArrayEquals(new int[] {0, 1}, explanation.getConflict().get(1));
+    }
+
+    @Test
+    @DisplayName("Find a minimal conflict in a puzzle with no solution")
+    void conflictTest() {
+        final var board = BoardFormat.fromLine(
+                "610940070000006010087001090020400700800000001004008020060800450070200000090067083");
+        final var explanation = new ConflictExplainer(2).explain(board);
+        assertMinimalConflict(board, explanation);
+        assertTrue(explanation.getConflict().size() < 30);
+
+        // The result does not depend on the number of probes run at a time.
+        final var serial = new ConflictExplainer(1).explain(board);
+        assertEquals(explanation.getConflict().size(), serial.getConflict().size());
+        for (var i = 0; i < serial.getConflict().size(); ++i)
+            assertArrayEquals(explanation.getConflict().get(i), serial.getConflict().get(i));
+    }
+
+    @Test
+    @DisplayName("Find a minimal conflict in a 16x16 puzzle within a time limit")
+    void largeConflictTest() {
+        // A solved board, with the first row all given but its first cell, whose value is given in its section.
+        final var board = BoardFormat.newBoard(4);
+        for (var y = 1; y < 16; ++y)
+            board.set(0, y, y + 1);
+        board.set(1, 5, 7);
+        board.set(2, 1, 1);
+        board.set(5, 9, 3);
+        final var explanation = new ConflictExplainer().explain(board, 10_000);
+        assertMinimalConflict(board, explanation);
+    }
+
+    @Test
+    @DisplayName("Puzzles with a solution have no conflict")
+    void feasibleTest() {
+        final var board = BoardFormat.fromLine(
+                "800000000003600000070090200050007000000045700000100030001000068008500010090000400");
+        final var explanation = new ConflictExplainer().explain(board);
+        assertFalse(explanation.isInfeasible());
+        assertTrue(explanation.getConflict().isEmpty());
+        assertEquals(1, explanation.getProbes());
+        assertThrows(IllegalArgumentException.class, () -> new ConflictExplainer(0));
+    }
+}
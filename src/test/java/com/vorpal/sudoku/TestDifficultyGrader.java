@@ -0,0 +1,104 @@
+// TestDifficultyGrader.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Test DifficultyGrader and LogicalSolver using the simple, medium, hard, extreme, and multiple solution puzzles
+ * from TestSudokuCP, written one row after another.
+ */
+class TestDifficultyGrader {
+    private static final String simple =
+            "100089457738000000040010000004050906000000000000000728080001000007008095060090300";
+    private static final String medium =
+            "000000000100006002832000100900008000007000040003047891000960500004000006005030200";
+    private static final String hard =
+            "010940070000006010087001090020400700800000001004008020060800450070200000090067083";
+    private static final String extreme =
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+    private static final String multiple =
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050";
+
+    private static SudokuBoard make(final String seed) {
+        final var board = new SudokuBoard();
+        for (var i = 0; i < 81; ++i)
+            board.set(i / 9, i % 9, seed.charAt(i) - '0');
+        return board;
+    }
+
+    @Test
+    @DisplayName("LogicalSolver techniques")
+    void logicalSolverTest() {
+        final var solver = new LogicalSolver(3);
+
+        assertEquals(LogicalSolver.Outcome.SOLVED, solver.solve(make(simple).freeze().getCells()));
+        assertEquals(Technique.HIDDEN_SINGLE, solver.getHardest());
+
+        // The hard puzzle needs more than these techniques, but what they find must be correct.
+        final var hardBoard = make(hard);
+        assertEquals(LogicalSolver.Outcome.STUCK, solver.solve(hardBoard.freeze().getCells()));
+        final var partial = solver.getCells().clone();
+        assertTrue(new SudokuCP(hardBoard).solve());
+        for (var i = 0; i < 81; ++i)
+            if (partial[i] != 0)
+                assertEquals(hardBoard.freeze().getCells()[i], partial[i]);
+
+        // The extreme puzzle is well beyond these techniques.
+        assertEquals(LogicalSolver.Outcome.STUCK, solver.solve(make(extreme).freeze().getCells()));
+        assertEquals(Technique.GUESS, solver.getHardest());
+
+        // The solution found by the techniques must agree with the constraint program.
+        final var board = make(medium);
+        assertEquals(LogicalSolver.Outcome.SOLVED, solver.solve(board.freeze().getCells()));
+        assertTrue(solver.getUses(Technique.LOCKED_CANDIDATES) > 0);
+        final var logical = solver.getCells().clone();
+        assertTrue(new SudokuCP(board).solve());
+        assertArrayEquals(board.freeze().getCells(), logical);
+    }
+
+    @Test
+    @DisplayName("Grade puzzles")
+    void gradeTest() {
+        final var grader = new DifficultyGrader();
+        final var board = make(extreme);
+        final var grade = grader.grade(board);
+
+        // The board must not be solved by grading.
+        assertEquals(make(extreme), board);
+
+        assertTrue(grade.isUnique());
+        assertEquals(21, grade.getClues());
+        assertEquals(Technique.GUESS, grade.getHardestTechnique());
+        assertTrue(grade.getScore() > grader.grade(make(simple)).getScore());
+        assertTrue(grader.grade(make(medium)).getScore() > grader.grade(make(simple)).getScore());
+
+        // Grades depend only on the puzzle.
+        final var again = grader.grade(make(extreme));
+        assertEquals(grade.getNodes(), again.getNodes());
+        assertEquals(grade.getScore(), again.getScore());
+
+        final var notUnique = grader.grade(make(multiple));
+        assertFalse(notUnique.isUnique());
+        assertTrue(Double.isNaN(notUnique.getScore()));
+    }
+
+    @Test
+    @DisplayName("Grade puzzles in parallel")
+    void gradeAllTest() {
+        final var grader = new DifficultyGrader();
+        final var seeds = List.of(simple, medium, hard, extreme, multiple, simple, extreme);
+        final var grades = grader.gradeAll(seeds.stream().map(TestDifficultyGrader::make))
+                .collect(Collectors.toList());
+        assertEquals(seeds.size(), grades.size());
+        for (var i = 0; i < seeds.size(); ++i)
+            assertEquals(grader.grade(make(seeds.get(i))).toString(), grades.get(i).toString());
+    }
+}
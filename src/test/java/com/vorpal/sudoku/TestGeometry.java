@@ -0,0 +1,78 @@
+// TestGeometry.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+class TestGeometry {
+    @Test
+    @DisplayName("Geometries are cached per dimensionality")
+    void cacheTest() {
+        assertSame(Geometry.of(3), Geometry.of(3));
+        assertNotSame(Geometry.of(2), Geometry.of(3));
+        assertSame(Geometry.of(3), new SudokuBoard().getGeometry());
+        assertSame(Geometry.of(4), BoardFormat.newBoard(4).getGeometry());
+        assertThrows(IllegalArgumentException.class, () -> Geometry.of(0));
+    }
+
+    @Test
+    @DisplayName("The units are the rows, columns, and sections, numbered as in SearchTrace")
+    void unitTest() {
+        final var geometry = Geometry.of(3);
+        assertEquals(27, geometry.units().length);
+        assertArrayEquals(new int[] {18, 19, 20, 21, 22, 23, 24, 25, 26}, geometry.unit(2));
+        assertArrayEquals(new int[] {4, 13, 22, 31, 40, 49, 58, 67, 76}, geometry.unit(9 + 4));
+        assertArrayEquals(new int[] {33, 34, 35, 42, 43, 44, 51, 52, 53}, geometry.unit(18 + 5));
+
+        // Cell (4, 7) is in row 4, column 7, and section (1, 2).
+        final var cell = 4 * 9 + 7;
+        assertEquals(4, geometry.rowOf(cell));
+        assertEquals(9 + 7, geometry.columnOf(cell));
+        assertEquals(18 + 5, geometry.sectionOf(cell));
+    }
+
+    @Test
+    @DisplayName("Every cell is in exactly its own three units, and its peers are the other cells of those units")
+    void peerTest() {
+        for (var dimensionality = 1; dimensionality <= 4; ++dimensionality) {
+            final var geometry = Geometry.of(dimensionality);
+            final var side = dimensionality * dimensionality;
+            assertEquals(side * side, geometry.getNumCells());
+
+            final var membership = new int[side * side];
+            for (var unit = 0; unit < 3 * side; ++unit) {
+                assertEquals(side, Arrays.stream(geometry.unit(unit)).distinct().count());
+                for (final var cell : geometry.unit(unit)) {
+                    ++membership[cell];
+                    final var cellUnit = unit;
+                    assertTrue(Arrays.stream(new int[] {geometry.rowOf(cell), geometry.columnOf(cell),
+                            geometry.sectionOf(cell)}).anyMatch(u -> u == cellUnit));
+                }
+            }
+
+            for (var cell = 0; cell < side * side; ++cell) {
+                assertEquals(3, membership[cell]);
+
+                final var expected = new HashSet<Integer>();
+                for (var k = 0; k < 3; ++k)
+                    for (final var other : geometry.unit(geometry.cellUnits()[3 * cell + k]))
+                        expected.add(other);
+                expected.remove(cell);
+
+                final var peers = geometry.peers(cell);
+                assertEquals(3 * (side - 1) - 2 * (dimensionality - 1), peers.length);
+                for (var i = 1; i < peers.length; ++i)
+                    assertTrue(peers[i - 1] < peers[i]);
+                for (final var peer : peers)
+                    assertTrue(expected.contains(peer));
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+// TestMinimalityChecker.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Test MinimalityChecker. The 17 clue puzzle is taken from Gordon Royle's list of minimum Sudoku puzzles:
+ * since there are no 16 clue puzzles, every 17 clue puzzle is minimal.
+ */
+class TestMinimalityChecker {
+    private static final String seventeen =
+            "000000010400000000020000000000050407008000300001090000300400200050100000000806000";
+    private static final String simple =
+            "100089457738000000040010000004050906000000000000000728080001000007008095060090300";
+    private static final String extreme =
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+    private static final String multiple =
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050";
+
+    private static SudokuBoard make(final String seed) {
+        final var board = new SudokuBoard();
+        for (var i = 0; i < 81; ++i)
+            board.set(i / 9, i % 9, seed.charAt(i) - '0');
+        return board;
+    }
+
+    @Test
+    @DisplayName("Minimal puzzle")
+    void minimalTest() {
+        final var checker = new MinimalityChecker(4);
+        final var board = make(seventeen);
+        assertTrue(checker.isMinimal(board));
+        final var report = checker.analyze(board);
+        assertTrue(report.isUnique());
+        assertTrue(report.isMinimal());
+        assertTrue(report.getRedundantClues().isEmpty());
+        assertEquals(make(seventeen), board);
+    }
+
+    @Test
+    @DisplayName("Redundant clues agree with solving each reduced puzzle from scratch")
+    void redundantTest() {
+        final var board = make(simple);
+        final var report = new MinimalityChecker(3).analyze(board);
+        assertTrue(report.isUnique());
+        assertFalse(report.isMinimal());
+        assertFalse(new MinimalityChecker(3).isMinimal(board));
+        assertEquals(bruteForce(simple), report.getRedundantClues().stream()
+                .map(clue -> clue[0] + "," + clue[1]).collect(Collectors.toList()));
+
+        // The techniques cannot solve the extreme puzzle, so every check needs a search.
+        assertEquals(bruteForce(extreme), new MinimalityChecker(3).analyze(make(extreme)).getRedundantClues()
+                .stream().map(clue -> clue[0] + "," + clue[1]).collect(Collectors.toList()));
+
+        // The report cannot be changed through the clues it hands out.
+        report.getRedundantClues().get(0)[0] = -1;
+        assertNotEquals(-1, report.getRedundantClues().get(0)[0]);
+    }
+
+    private static List<String> bruteForce(final String seed) {
+        final var board = make(seed);
+
+        final var expected = new ArrayList<String>();
+        for (var x = 0; x < 9; ++x)
+            for (var y = 0; y < 9; ++y) {
+                if (board.get(x, y) == 0)
+                    continue;
+                final var reduced = make(seed);
+                reduced.set(x, y, 0);
+                if (new SudokuCP(reduced).solve())
+                    expected.add(x + "," + y);
+            }
+        return expected;
+    }
+
+    @Test
+    @DisplayName("Puzzle without a unique solution")
+    void notUniqueTest() {
+        final var report = new MinimalityChecker(2).analyze(make(multiple));
+        assertFalse(report.isUnique());
+        assertFalse(report.isMinimal());
+    }
+
+    @Test
+    @DisplayName("Stop criteria survive the resets made by liftGiven and isSatisfiableWith")
+    void stopCriterionTest() {
+        final var solver = new GenSudokuCP<>(make(extreme));
+        final var stop = new AtomicBoolean();
+        solver.addStopCriterion(stop::get);
+
+        // Cell (0, 0) holds the clue 8: without it, the puzzle has a solution with another value there.
+        solver.liftGiven(0);
+        final var other = solver.getModel().arithm(solver.getVariable(0), "!=", 8);
+        assertTrue(solver.isSatisfiableWith(other));
+        stop.set(true);
+        assertFalse(solver.isSatisfiableWith(other));
+        solver.restoreGiven(0);
+        assertFalse(solver.solve());
+    }
+
+    @Test
+    @DisplayName("The limits survive the resets made by liftGiven and isSatisfiableWith")
+    void limitTest() {
+        final var solver = new GenSudokuCP<>(make(extreme));
+        solver.setNodeLimit(2);
+        solver.liftGiven(0);
+        assertFalse(solver.isSatisfiableWith(solver.getModel().arithm(solver.getVariable(0), "!=", 8)));
+        solver.restoreGiven(0);
+        assertFalse(solver.solve());
+        assertEquals(GenSudokuCP.Status.LIMIT_REACHED, solver.getStatus());
+
+        solver.setNodeLimit(0);
+        solver.liftGiven(0);
+        assertTrue(solver.isSatisfiableWith(solver.getModel().arithm(solver.getVariable(0), "!=", 8)));
+        solver.restoreGiven(0);
+    }
+}
@@ -0,0 +1,149 @@
+// TestPerformanceBudgets.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Test that the hot paths of the boards and solvers stay within budgets of search nodes and allocated bytes.
+ *
+ * Nodes, unlike time, do not depend on the machine, so the node budgets hold on any hardware, for the puzzles of
+ * TestSudokuCP. Allocation is measured with the per-thread counters of the JVM, after a warm-up, and the budgets
+ * leave room for differences between JVMs. The budgets can be scaled or overridden with system properties, e.g.
+ * mvn test -Dsudoku.budget.nodeFactor=2 -Dsudoku.budget.solveBytes=2000000
+ * 1. sudoku.budget.nodeFactor: the factor by which to scale the node budgets of the puzzles (default 1);
+ * 2. sudoku.budget.solveBytes: the bytes that building and solving a GenSudokuCP may allocate (default 1000000);
+ * 3. sudoku.budget.searchBytes: the bytes that SudokuCP.solve may allocate (default 8192).
+ */
+class TestPerformanceBudgets {
+    // The puzzles of TestSudokuCP, with the nodes that GenSudokuCP and SudokuCP may search to solve each.
+    private static final String[] puzzles = {
+            "100089457738000000040010000004050906000000000000000728080001000007008095060090300",
+            "004009003060040820700350004000902060207000000000003100000520090008030000000000007",
+            "000000000100006002832000100900008000007000040003047891000960500004000006005030200",
+            "010940070000006010087001090020400700800000001004008020060800450070200000090067083",
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+            "100007090030020008009600500005300900010080002600004000300000010040000007007000300",
+            "610940070000006010087001090020400700800000001004008020060800450070200000090067083",
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050",
+    };
+    private static final long[] modelNodes = {5, 5, 10, 10, 300, 80, 5, 10};
+    private static final long[] searchNodes = {600, 2_500, 2_000, 200, 30_000, 3_000, 100, 600};
+
+    private static final String solution =
+            "812753649943682175675491283154237896369845721287169534521974368438526917796318452";
+
+    // How many times to run code before measuring it, so that it is compiled.
+    private static final int WARMUP = 20_000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeAll
+    static void enableAllocationCounters() {
+        final var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported())
+                threads.setThreadAllocatedMemoryEnabled(true);
+            else
+                threads = null;
+        }
+    }
+
+    private static long allocatedBytes() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    @DisplayName("Checking whether a 9x9 board is solved allocates nothing")
+    void isSolvedAllocationTest() {
+        assumeTrue(threads != null, "allocation counters are not supported");
+
+        final var board = new SudokuBoard();
+        board.copyFrom(BoardFormat.fromLine(solution));
+        final var generic = BoardFormat.fromLine(solution);
+        var solved = true;
+        for (var i = 0; i < WARMUP; ++i)
+            solved &= board.isSolved() & generic.isSolved();
+        assertTrue(solved);
+
+        // The compiler or the runtime can allocate now and then on the thread, so take the best of a few rounds.
+        var best = Long.MAX_VALUE;
+        var bestGeneric = Long.MAX_VALUE;
+        for (var round = 0; round < 5; ++round) {
+            final var start = allocatedBytes();
+            for (var i = 0; i < 10_000; ++i)
+                solved &= board.isSolved();
+            final var middle = allocatedBytes();
+            for (var i = 0; i < 10_000; ++i)
+                solved &= generic.isSolved();
+            final var end = allocatedBytes();
+            best = Math.min(best, middle - start);
+            bestGeneric = Math.min(bestGeneric, end - middle);
+        }
+        assertTrue(solved);
+        assertEquals(0, best);
+        assertEquals(0, bestGeneric);
+    }
+
+    @Test
+    @DisplayName("Solving the test puzzles stays within the node budgets")
+    void nodeBudgetTest() {
+        final var factor = Double.parseDouble(System.getProperty("sudoku.budget.nodeFactor", "1"));
+        for (var i = 0; i < puzzles.length; ++i) {
+            final var model = new GenSudokuCP<>(BoardFormat.fromLine(puzzles[i]));
+            model.solve();
+            assertTrue(model.getNodeCount() <= modelNodes[i] * factor,
+                    "GenSudokuCP searched " + model.getNodeCount() + " nodes for puzzle " + i);
+
+            final var board = new SudokuBoard();
+            board.copyFrom(BoardFormat.fromLine(puzzles[i]));
+            final var search = new SudokuCP(board);
+            search.solve();
+            assertEquals(model.getStatus(), search.getStatus());
+            assertTrue(search.getNodeCount() <= searchNodes[i] * factor,
+                    "SudokuCP searched " + search.getNodeCount() + " nodes for puzzle " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Solving the test puzzles stays within the allocation budgets")
+    void allocationBudgetTest() {
+        assumeTrue(threads != null, "allocation counters are not supported");
+        final var solveBytes = Long.getLong("sudoku.budget.solveBytes", 1_000_000);
+        final var searchBytes = Long.getLong("sudoku.budget.searchBytes", 8_192);
+
+        // Load and compile the classes of the solvers first, as that allocates far more than solving does.
+        for (var round = 0; round < 20; ++round)
+            for (final var puzzle : puzzles) {
+                new GenSudokuCP<>(BoardFormat.fromLine(puzzle)).solve();
+                final var board = new SudokuBoard();
+                board.copyFrom(BoardFormat.fromLine(puzzle));
+                new SudokuCP(board).solve();
+            }
+
+        for (var i = 0; i < puzzles.length; ++i) {
+            final var puzzle = BoardFormat.fromLine(puzzles[i]);
+            final var start = allocatedBytes();
+            new GenSudokuCP<>(puzzle).solve();
+            final var solved = allocatedBytes() - start;
+            assertTrue(solved <= solveBytes, "GenSudokuCP allocated " + solved + " bytes for puzzle " + i);
+
+            final var board = new SudokuBoard();
+            board.copyFrom(BoardFormat.fromLine(puzzles[i]));
+            final var solver = new SudokuCP(board);
+            final var before = allocatedBytes();
+            solver.solve();
+            final var searched = allocatedBytes() - before;
+            assertTrue(searched <= searchBytes, "SudokuCP.solve allocated " + searched + " bytes for puzzle " + i);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+// TestPuzzleIndex.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Set;
+
+class TestPuzzleIndex {
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        path = Files.createTempFile("sudoku", ".idx");
+        Files.delete(path);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    // A board with a handful of pseudo-random entries, which need not be valid.
+    private static BoardSnapshot<Integer> randomBoard(final Random random) {
+        final var board = new SudokuBoard();
+        for (var i = 0; i < 12; ++i)
+            board.set(random.nextInt(9), random.nextInt(9), random.nextInt(10));
+        return board.freeze();
+    }
+
+    @Test
+    @DisplayName("BoardSnapshot.pack round trip")
+    void packTest() {
+        final var snapshot = randomBoard(new Random(0));
+        final var packed = snapshot.pack();
+        assertEquals(41, packed.length);
+
+        final var cells = new int[81];
+        BoardCodec.unpack(3, packed, 0, cells);
+        assertArrayEquals(snapshot.getCells(), cells);
+    }
+
+    @Test
+    @DisplayName("PuzzleIndex add, contains, rehash and reopen")
+    void indexTest() throws IOException {
+        final var boards = new ArrayList<BoardSnapshot<Integer>>();
+        final var random = new Random(1);
+        for (var i = 0; i < 5000; ++i)
+            boards.add(randomBoard(random));
+
+        try (final var index = PuzzleIndex.open(path, 3)) {
+            // Start small enough that the table has to be rehashed several times.
+            for (final var board : boards.subList(0, 2500))
+                assertTrue(index.add(board));
+            assertFalse(index.add(boards.get(0)));
+            assertEquals(2500, index.size());
+            assertTrue(index.contains(boards.get(2499)));
+            assertFalse(index.contains(boards.get(2500)));
+        }
+
+        try (final var index = PuzzleIndex.open(path, 3, boards.size())) {
+            assertEquals(2500, index.size());
+            assertEquals(2500, index.addAll(boards));
+            assertEquals(5000, index.size());
+            for (final var board : boards)
+                assertTrue(index.contains(board));
+            assertFalse(index.contains(new SudokuBoard().freeze()));
+        }
+
+        assertThrows(IOException.class, () -> PuzzleIndex.open(path, 2));
+    }
+
+    @Test
+    @DisplayName("BoardSnapshot.normalizeSymbols")
+    void normalizeTest() {
+        final var board = new SudokuBoard();
+        board.set(0, 0, 5);
+        board.set(4, 4, 2);
+        board.set(8, 8, 5);
+
+        final var relabeled = new SudokuBoard();
+        relabeled.set(0, 0, 7);
+        relabeled.set(4, 4, 1);
+        relabeled.set(8, 8, 7);
+
+        assertNotEquals(board.freeze(), relabeled.freeze());
+        assertEquals(board.freeze().normalizeSymbols(), relabeled.freeze().normalizeSymbols());
+        assertEquals(1, board.freeze().normalizeSymbols().get(8, 8).intValue());
+    }
+
+    @Test
+    @DisplayName("PuzzleIndex only takes boards over symbols without a stable numbering once normalized")
+    void unstableTest() throws IOException {
+        final var board = new GenSudokuBoard<Object>(2, '.', Set.of(1, "a", 2L, 'c'));
+        final var symbols = board.getAlphabet().getSymbols();
+        board.set(0, 0, symbols.get(3));
+        board.set(1, 1, symbols.get(2));
+
+        try (final var index = PuzzleIndex.open(path, 2)) {
+            assertThrows(IllegalArgumentException.class, () -> index.add(board.freeze()));
+            assertTrue(index.add(board.freeze().normalizeSymbols()));
+            assertTrue(index.contains(board.freeze().normalizeSymbols()));
+        }
+    }
+}
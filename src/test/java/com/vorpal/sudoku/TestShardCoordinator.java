@@ -0,0 +1,130 @@
+// TestShardCoordinator.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TestShardCoordinator {
+    private static final String[] puzzles = {
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+            "000000000100006002832000100900008000007000040003047891000960500004000006005030200",
+            "010940070000006010087001090020400700800000001004008020060800450070200000090067083",
+            "610940070000006010087001090020400700800000001004008020060800450070200000090067083",
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050",
+    };
+
+    private static List<GenSudokuBoard<Integer>> corpus(final int size) {
+        final var boards = new ArrayList<GenSudokuBoard<Integer>>(size);
+        for (var i = 0; i < size; ++i)
+            boards.add(BoardFormat.fromLine(puzzles[i % puzzles.length]));
+        return boards;
+    }
+
+    // Check that the results are those of solving the corpus in this JVM, in order.
+    private static void assertSolved(final List<GenSudokuBoard<Integer>> corpus,
+                                     final List<ShardCoordinator.Result<Integer>> results) {
+        assertEquals(corpus.size(), results.size());
+        for (var i = 0; i < corpus.size(); ++i) {
+            final var expected = BoardFormat.fromLine(BoardFormat.toLine(corpus.get(i)));
+            final var solver = new GenSudokuCP<>(expected);
+            solver.solve();
+            assertEquals(solver.getStatus(), results.get(i).getStatus());
+            assertEquals(expected, results.get(i).getBoard());
+        }
+    }
+
+    @Test
+    @DisplayName("Shards are solved by worker processes and the results come back in order")
+    void runTest() {
+        final var corpus = corpus(203);
+        final var results = new ArrayList<ShardCoordinator.Result<Integer>>();
+        final var stats = new ShardCoordinator(3, 8).run(corpus.iterator(), results::add);
+        assertSolved(corpus, results);
+
+        assertEquals(203, stats.getBoards());
+        assertEquals(26, stats.getShards());
+        assertEquals(40, stats.getCount(GenSudokuCP.Status.NO_SOLUTION));
+        assertEquals(40, stats.getCount(GenSudokuCP.Status.MULTIPLE_SOLUTIONS));
+        assertEquals(123, stats.getCount(GenSudokuCP.Status.UNIQUE));
+        assertEquals(203, stats.getBoards(0) + stats.getBoards(1) + stats.getBoards(2));
+        assertEquals(0, stats.getRetries());
+        assertTrue(stats.getNodes() > 0);
+        assertTrue(stats.getThroughput() > 0);
+    }
+
+    @Test
+    @DisplayName("Shards of lost workers are retried on restarted workers")
+    void retryTest() {
+        final var corpus = corpus(40);
+        final var results = new ArrayList<ShardCoordinator.Result<Integer>>();
+        final var coordinator = new ShardCoordinator(ShardCoordinator.workerCommand("--exit-after", "3"), 2, 4);
+        coordinator.setMaxRetries(10);
+        final var stats = coordinator.run(corpus.iterator(), results::add);
+        assertSolved(corpus, results);
+
+        // Each worker process answers two shards, so ten shards need at least five processes.
+        assertTrue(stats.getRetries() >= 3, "retries: " + stats.getRetries());
+        assertTrue(stats.getRestarts() >= 3, "restarts: " + stats.getRestarts());
+        assertEquals(0, stats.getCount(GenSudokuCP.Status.NOT_SOLVED));
+    }
+
+    @Test
+    @DisplayName("Only consecutive failures count against a worker's restarts")
+    void consecutiveFailureTest() {
+        final var corpus = corpus(24);
+        final var results = new ArrayList<ShardCoordinator.Result<Integer>>();
+        final var coordinator = new ShardCoordinator(ShardCoordinator.workerCommand("--exit-after", "2"), 1, 4);
+        coordinator.setMaxRetries(1);
+        final var stats = coordinator.run(corpus.iterator(), results::add);
+
+        // Every process answers one shard and then crashes, so the worker fails once between successes.
+        assertSolved(corpus, results);
+        assertTrue(stats.getRestarts() >= 4, "restarts: " + stats.getRestarts());
+        assertEquals(0, stats.getCount(GenSudokuCP.Status.NOT_SOLVED));
+    }
+
+    @Test
+    @DisplayName("A worker that hangs is killed at the shard timeout, and the other steals its queued shards")
+    void timeoutTest() {
+        final var corpus = corpus(40);
+        final var results = new ArrayList<ShardCoordinator.Result<Integer>>();
+        final var coordinator = new ShardCoordinator(ShardCoordinator.workerCommand("--stall-on", "0"), 2, 4);
+        coordinator.setShardTimeout(2000);
+        coordinator.setMaxRetries(1);
+        final var stats = coordinator.run(corpus.iterator(), results::add);
+
+        // Shard 0 hangs every worker that takes it, so it is lost after its retry, and the rest are solved.
+        assertEquals(2, stats.getTimeouts());
+        assertEquals(1, stats.getRetries());
+        assertTrue(stats.getSteals() > 0, "steals: " + stats.getSteals());
+        assertEquals(4, stats.getCount(GenSudokuCP.Status.NOT_SOLVED));
+        assertSolved(corpus.subList(4, corpus.size()), results.subList(4, results.size()));
+        for (var i = 0; i < 4; ++i)
+            assertEquals(corpus.get(i), results.get(i).getBoard());
+    }
+
+    @Test
+    @DisplayName("Shards are reported as not solved once the workers cannot be restarted")
+    void lostTest() {
+        final var corpus = corpus(20);
+        final var results = new ArrayList<ShardCoordinator.Result<Integer>>();
+        final var coordinator = new ShardCoordinator(ShardCoordinator.workerCommand("--exit-after", "1"), 2, 5);
+        coordinator.setMaxRetries(0);
+        final var stats = coordinator.run(corpus.iterator(), results::add);
+
+        assertEquals(20, results.size());
+        assertEquals(20, stats.getCount(GenSudokuCP.Status.NOT_SOLVED));
+        for (var i = 0; i < corpus.size(); ++i)
+            assertEquals(corpus.get(i), results.get(i).getBoard());
+        assertEquals(0, stats.getRestarts());
+
+        assertThrows(IllegalArgumentException.class, () -> new ShardCoordinator(0, 1));
+    }
+}
@@ -0,0 +1,121 @@
+// TestSolverPool.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSolverPool {
+    private static final String[] puzzles = {
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+            "000000000100006002832000100900008000007000040003047891000960500004000006005030200",
+            "010940070000006010087001090020400700800000001004008020060800450070200000090067083",
+    };
+    private static final String unsolvable =
+            "610940070000006010087001090020400700800000001004008020060800450070200000090067083";
+    private static final String multiple =
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050";
+
+    @Test
+    @DisplayName("A reused solver behaves like a new one")
+    void reuseTest() {
+        final var pool = new SolverPool(SolverPool.estimateBytes(3) * 4);
+        GenSudokuCP<Integer> previous = null;
+        for (var round = 0; round < 2; ++round)
+            for (final var puzzle : puzzles) {
+                final var expected = BoardFormat.fromLine(puzzle);
+                assertTrue(new GenSudokuCP<>(expected).solve());
+
+                final var board = BoardFormat.fromLine(puzzle);
+                final var solver = pool.acquire(board);
+                if (previous != null)
+                    assertSame(previous, solver);
+                assertEquals(GenSudokuCP.Status.NOT_SOLVED, solver.getStatus());
+                assertTrue(solver.solve());
+                assertEquals(expected, board);
+
+                // Limits do not carry over to the next board.
+                solver.setNodeLimit(1);
+                pool.release(solver);
+                previous = solver;
+            }
+        assertEquals(1, pool.getMisses());
+        assertEquals(2 * puzzles.length - 1, pool.getHits());
+
+        final var solver = pool.acquire(BoardFormat.fromLine(unsolvable));
+        assertFalse(solver.solve());
+        assertEquals(GenSudokuCP.Status.NO_SOLUTION, solver.getStatus());
+        pool.release(solver);
+        final var again = pool.acquire(BoardFormat.fromLine(multiple));
+        assertFalse(again.solve());
+        assertEquals(GenSudokuCP.Status.MULTIPLE_SOLUTIONS, again.getStatus());
+        pool.release(again);
+
+        // The givens of the previous board are gone, so the candidates are those of the new board.
+        final var solution = BoardFormat.fromLine(puzzles[1]);
+        assertTrue(new GenSudokuCP<>(solution).solve());
+        final var candidates = pool.acquire(BoardFormat.fromLine(puzzles[1])).propagate();
+        for (var x = 0; x < 9; ++x)
+            for (var y = 0; y < 9; ++y)
+                assertTrue(candidates.contains(x, y, solution.get(x, y)));
+    }
+
+    @Test
+    @DisplayName("Idle solvers are kept by dimensionality within the memory budget")
+    void evictionTest() {
+        final var pool = new SolverPool(2 * SolverPool.estimateBytes(3) + SolverPool.estimateBytes(2));
+
+        final var small = pool.acquire(BoardFormat.newBoard(2));
+        pool.release(small);
+        final var solvers = new GenSudokuCP<?>[3];
+        for (var i = 0; i < solvers.length; ++i)
+            solvers[i] = pool.acquire(BoardFormat.fromLine(puzzles[i]));
+        for (final var solver : solvers)
+            pool.release(solver);
+        assertEquals(0, pool.getHits());
+        assertEquals(4, pool.getMisses());
+
+        // The 4x4 solver was released first, so it was evicted first, and then the first 9x9 solver.
+        assertEquals(2, pool.getEvictions());
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2 * SolverPool.estimateBytes(3), pool.getIdleBytes());
+        assertNotSame(small, pool.acquire(BoardFormat.newBoard(2)));
+        assertSame(solvers[2], pool.acquire(BoardFormat.fromLine(puzzles[0])));
+        assertSame(solvers[1], pool.acquire(BoardFormat.fromLine(puzzles[0])));
+        assertEquals(2, pool.getHits());
+
+        // A solver larger than the budget is not kept at all.
+        pool.release(pool.acquire(BoardFormat.newBoard(4)));
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(0, pool.getIdleBytes());
+
+        pool.release(pool.acquire(BoardFormat.fromLine(puzzles[0])));
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(4, pool.getEvictions());
+    }
+
+    @Test
+    @DisplayName("Only outstanding solvers can be released or discarded, once")
+    void ownershipTest() {
+        final var pool = new SolverPool(SolverPool.estimateBytes(3));
+        final var solver = pool.acquire(BoardFormat.fromLine(puzzles[0]));
+        pool.release(solver);
+        assertThrows(IllegalArgumentException.class, () -> pool.release(solver));
+        assertThrows(IllegalArgumentException.class, () -> pool.discard(solver));
+        assertThrows(IllegalArgumentException.class,
+                () -> pool.release(new GenSudokuCP<>(BoardFormat.fromLine(puzzles[0]))));
+        assertThrows(IllegalArgumentException.class, () -> new SolverPool(0).release(solver));
+
+        // A discarded solver is not reused.
+        final var reused = pool.acquire(BoardFormat.fromLine(puzzles[1]));
+        assertSame(solver, reused);
+        pool.discard(reused);
+        assertThrows(IllegalArgumentException.class, () -> pool.release(reused));
+        assertNotSame(solver, pool.acquire(BoardFormat.fromLine(puzzles[0])));
+        assertEquals(0, pool.getIdleCount());
+    }
+}
@@ -7,9 +7,17 @@ package com.vorpal.sudoku;
 import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 class TestSudokuBoard {
     private final static SudokuBoard emptyBoard      = new SudokuBoard();
@@ -123,6 +131,114 @@ class TestSudokuBoard {
         assertNotEquals(solvedBoard, incompleteBoard);
     }
 
+    @Test
+    @DisplayName("SudokuBoard.freeze and BoardSnapshot.thaw")
+    void freezeThawTest() {
+        final var snapshot = solvedBoard.freeze();
+        assertEquals(snapshot, solvedBoard.freeze());
+        assertEquals(snapshot.hashCode(), solvedBoard.freeze().hashCode());
+        assertNotEquals(snapshot, emptyBoard.freeze());
+
+        // Modifying the board must not affect the snapshot.
+        solvedBoard.set(0, 0, 0);
+        assertEquals(0, solvedBoard.get(0, 0).intValue());
+        assertEquals(boardArray[0][0], snapshot.get(0, 0).intValue());
+        assertNotEquals(snapshot, solvedBoard.freeze());
+
+        // Nor must modifying a thawed board.
+        final var thawed = snapshot.thaw();
+        assertEquals(SudokuBoard.class, thawed.getClass());
+        assertTrue(thawed.isSolved());
+        thawed.clear();
+        assertEquals(boardArray[0][0], snapshot.get(0, 0).intValue());
+        assertEquals(emptyBoard, thawed);
+
+        // Copying a snapshot back into a board restores it.
+        emptyBoard.copyFrom(snapshot);
+        assertTrue(emptyBoard.isSolved());
+        assertEquals(snapshot, emptyBoard.freeze());
+        emptyBoard.set(1, 1, 0);
+        assertEquals(boardArray[1][1], snapshot.get(1, 1).intValue());
+
+        // A read-only snapshot is a copy, so it is not affected by modifying the board either.
+        final var copy = emptyBoard.snapshot();
+        assertEquals(emptyBoard.freeze(), copy);
+        emptyBoard.set(2, 2, 0);
+        assertEquals(boardArray[2][2], copy.get(2, 2).intValue());
+
+        // Copying a board over a frozen one must not affect the snapshot.
+        final var frozen = emptyBoard.freeze();
+        emptyBoard.copyFrom(incompleteBoard);
+        assertEquals(incompleteBoard, emptyBoard);
+        assertEquals(copy.get(0, 0), frozen.get(0, 0));
+        assertEquals(0, frozen.get(2, 2).intValue());
+    }
+
+    @Test
+    @DisplayName("Alphabet.of interns alphabets, and releases them when they are no longer used")
+    void alphabetTest() {
+        assertSame(SudokuBoard.DIGITS, Alphabet.of(0, Set.of(1, 2, 3, 4, 5, 6, 7, 8, 9)));
+        assertSame(Alphabet.of('.', Set.of('x', 'y')), Alphabet.of('.', Set.of('.', 'y', 'x')));
+
+        // Collection is simulated, since System.gc() is only a hint and the test would otherwise be at its mercy.
+        final var before = Alphabet.internedCount();
+        final var alphabet = Alphabet.of("unused", Set.of("a", "b", "c", "d"));
+        assertSame(alphabet, Alphabet.of("unused", Set.of("d", "c", "b", "a")));
+        assertEquals(before + 1, Alphabet.internedCount());
+
+        assertTrue(Alphabet.collect("unused", Set.of("a", "b", "c", "d")));
+        assertFalse(Alphabet.collect("unused", Set.of("a", "b", "c", "d")));
+        assertEquals(before, Alphabet.internedCount());
+        assertFalse(Alphabet.collect("unused", Set.of("a", "b", "c", "d")));
+
+        // Once collected, the parameters are interned afresh.
+        final var fresh = Alphabet.of("unused", Set.of("a", "b", "c", "d"));
+        assertNotSame(alphabet, fresh);
+        assertSame(fresh, Alphabet.of("unused", Set.of("a", "b", "c", "d")));
+        assertEquals(before + 1, Alphabet.internedCount());
+    }
+
+    @Test
+    @DisplayName("Serialized boards and snapshots are decoded with the numbering of the reading JVM")
+    @SuppressWarnings("unchecked")
+    void serializationTest() throws IOException, ClassNotFoundException {
+        // Symbols of different classes are not numbered in a natural order, so another JVM may number them differently.
+        final var board = new GenSudokuBoard<Object>(2, '.', Set.of(1, "a", 2L, 'c'));
+        final var alphabet = board.getAlphabet();
+        assertFalse(alphabet.isStable());
+        assertTrue(SudokuBoard.DIGITS.isStable());
+        final var symbols = alphabet.getSymbols();
+        for (var i = 0; i < 4; ++i)
+            board.set(i, i, symbols.get(i + 1));
+        final var snapshot = board.freeze();
+
+        final var bytes = new ByteArrayOutputStream();
+        try (final var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(board);
+            out.writeObject(snapshot);
+        }
+        try (final var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            final var readBoard = (GenSudokuBoard<Object>) in.readObject();
+            final var readSnapshot = (BoardSnapshot<Object>) in.readObject();
+            assertEquals(board, readBoard);
+            assertEquals(snapshot, readSnapshot);
+
+            // The board and the snapshot shared their cells in the stream, and must not share them afterwards.
+            readBoard.clear();
+            assertEquals(snapshot, readSnapshot);
+        }
+
+        // Codes written under another numbering are translated into this one.
+        final var reversed = new ArrayList<Object>(symbols);
+        Collections.reverse(reversed.subList(1, reversed.size()));
+        final var cells = new int[] {0, 1, 2, 3, 4};
+        assertArrayEquals(new int[] {0, 4, 3, 2, 1}, alphabet.recode(reversed, cells));
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, cells);
+        assertSame(cells, alphabet.recode(symbols, cells));
+        assertThrows(InvalidObjectException.class, () -> alphabet.recode(List.of('.', 1, "a", 2L, 'd'), cells));
+        assertThrows(InvalidObjectException.class, () -> alphabet.recode(symbols, new int[] {5}));
+    }
+
     @Test
     @DisplayName("SudokuBoard.isValid methods")
     void validTest() {
@@ -199,4 +315,32 @@ class TestSudokuBoard {
         assertFalse(completeBoard.isSolved());
         assertTrue(solvedBoard.isSolved());
     }
+
+    @Test
+    @DisplayName("SudokuBoard.getDigit, SudokuBoard.setDigit, and the specialised checks")
+    void digitTest() {
+        for (var x = 0; x < 9; ++x)
+            for (var y = 0; y < 9; ++y)
+                assertEquals(boardArray[x][y], solvedBoard.getDigit(x, y));
+        solvedBoard.setDigit(4, 4, 0);
+        assertEquals(Integer.valueOf(0), solvedBoard.get(4, 4));
+        assertThrows(IllegalArgumentException.class, () -> solvedBoard.setDigit(0, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> solvedBoard.getDigit(9, 0));
+
+        // The checks agree with those of a generic board with the same contents, which does not specialise them.
+        final var random = new Random(0);
+        final var generic = BoardFormat.newBoard(3);
+        for (var i = 0; i < 1000; ++i) {
+            final var board = new SudokuBoard();
+            for (var x = 0; x < 9; ++x)
+                for (var y = 0; y < 9; ++y)
+                    board.setDigit(x, y, boardArray[x][y]);
+            for (var n = random.nextInt(4); n > 0; --n)
+                board.setDigit(random.nextInt(9), random.nextInt(9), random.nextInt(10));
+            generic.copyFrom(board.freeze().thaw());
+            assertEquals(generic.isValid(), board.isValid());
+            assertEquals(generic.isComplete(), board.isComplete());
+            assertEquals(generic.isSolved(), board.isSolved());
+        }
+    }
 }
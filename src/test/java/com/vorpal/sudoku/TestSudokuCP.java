@@ -8,6 +8,16 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Test the SudokuCP algorithm, which solves Sudoku boards using constraint programming via Choco-Solver.
  *
@@ -315,4 +325,377 @@ class TestSudokuCP {
         final var solver = new SudokuCP(board);
         assertFalse(solver.solve());
     }
+
+    @Test
+    @DisplayName("Status and limits")
+    void statusTest() {
+        final int[][] seed = {
+                {8, 0, 0, /**/ 0, 0, 0, /**/ 0, 0, 0},
+                {0, 0, 3, /**/ 6, 0, 0, /**/ 0, 0, 0},
+                {0, 7, 0, /**/ 0, 9, 0, /**/ 2, 0, 0},
+                /*----------------------------------*/
+                {0, 5, 0, /**/ 0, 0, 7, /**/ 0, 0, 0},
+                {0, 0, 0, /**/ 0, 4, 5, /**/ 7, 0, 0},
+                {0, 0, 0, /**/ 1, 0, 0, /**/ 0, 3, 0},
+                /*----------------------------------*/
+                {0, 0, 1, /**/ 0, 0, 0, /**/ 0, 6, 8},
+                {0, 0, 8, /**/ 5, 0, 0, /**/ 0, 1, 0},
+                {0, 9, 0, /**/ 0, 0, 0, /**/ 4, 0, 0}
+        };
+
+        final var limited = new SudokuCP(make(seed));
+        assertEquals(GenSudokuCP.Status.NOT_SOLVED, limited.getStatus());
+        limited.setNodeLimit(10);
+        assertFalse(limited.solve());
+        assertEquals(GenSudokuCP.Status.LIMIT_REACHED, limited.getStatus());
+
+        final var board = make(seed);
+        final var solver = new SudokuCP(board);
+        solver.setTimeLimit(60_000);
+        assertTrue(solver.solve());
+        assertEquals(GenSudokuCP.Status.UNIQUE, solver.getStatus());
+        assertTrue(solver.getNodeCount() > 10);
+        assertTrue(board.isSolved());
+
+        // A limit too large to count in nanoseconds is no limit at all. Multiplied out, this one wraps around to 64ns.
+        for (final var millis : new long[] {76_480_200_929_599_801L, Long.MAX_VALUE}) {
+            final var unlimited = new GenSudokuCP<>(make(seed));
+            unlimited.setTimeLimit(millis);
+            assertTrue(unlimited.solve());
+        }
+
+        // Two clashing givens.
+        seed[0][1] = 8;
+        final var unsolvable = new SudokuCP(make(seed));
+        assertFalse(unsolvable.solve());
+        assertEquals(GenSudokuCP.Status.NO_SOLUTION, unsolvable.getStatus());
+
+        final var empty = new SudokuCP(new SudokuBoard());
+        assertFalse(empty.solve());
+        assertEquals(GenSudokuCP.Status.MULTIPLE_SOLUTIONS, empty.getStatus());
+    }
+
+    @Test
+    @DisplayName("Trace the search without changing it")
+    void traceTest() throws IOException {
+        final var extreme = "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+        final var untraced = new GenSudokuCP<>(BoardFormat.fromLine(extreme));
+        assertTrue(untraced.solve());
+
+        final var board = BoardFormat.fromLine(extreme);
+        final var solver = new GenSudokuCP<>(board);
+        final var trace = solver.enableTrace(1 << 20);
+        assertTrue(solver.solve());
+        assertTrue(board.isSolved());
+        assertEquals(untraced.getNodeCount(), solver.getNodeCount());
+        assertEquals(untraced.getBacktrackCount(), solver.getBacktrackCount());
+        assertEquals(0, trace.getDropped());
+
+        // Every event is a well-formed JSON object, and the search made decisions, pruned, and backtracked.
+        final var out = new StringWriter();
+        trace.writeJsonLines(out);
+        final var lines = out.toString().split("\n");
+        assertEquals(trace.size(), lines.length);
+        final var counts = new HashMap<Object, Integer>();
+        for (final var line : lines)
+            counts.merge(Json.parseObject(line).get("event"), 1, Integer::sum);
+        assertTrue(counts.get("decision") > 0);
+        assertTrue(counts.get("remove") > 0);
+        assertTrue(counts.get("backtrack") > 0);
+        assertEquals(1, (int) counts.get("solution"));
+        assertTrue(Arrays.stream(trace.getPrunings()).sum() > 0);
+        assertEquals("section (1,2)", trace.unitName(2 * 9 + 5));
+
+        // Once full, the trace keeps only the most recent events.
+        final var smallSolver = new GenSudokuCP<>(BoardFormat.fromLine(extreme));
+        final var small = smallSolver.enableTrace(100);
+        assertEquals(128, small.capacity());
+        assertTrue(smallSolver.solve());
+        assertEquals(trace.getEventCount(), small.getEventCount());
+        assertEquals(128, small.size());
+        assertEquals(small.getEventCount() - 128, small.getDropped());
+        final var bytes = new ByteArrayOutputStream();
+        small.writeBinary(bytes);
+        assertEquals(12 + 16 * 128, bytes.size());
+
+        // Nothing more is recorded once tracing is disabled.
+        final var count = trace.getEventCount();
+        solver.disableTrace();
+        assertFalse(solver.solve());
+        assertEquals(count, trace.getEventCount());
+    }
+
+    @Test
+    @DisplayName("Symbols that need escaping are quoted in the JSON of a trace")
+    void traceEscapeTest() throws IOException {
+        final var symbols = Set.of("\"", "\\", "a\nb", "x");
+        final var solver = new GenSudokuCP<>(new GenSudokuBoard<>(2, "", symbols));
+        final var trace = solver.enableTrace(1024);
+        assertFalse(solver.solve());
+
+        final var out = new StringWriter();
+        trace.writeJsonLines(out);
+        final var values = new HashSet<Object>();
+        for (final var line : out.toString().split("\n"))
+            values.add(Json.parseObject(line).get("value"));
+        values.remove(null);
+        assertFalse(values.isEmpty());
+        assertTrue(symbols.containsAll(values), values.toString());
+    }
+
+    @Test
+    @DisplayName("Find the candidates of the cells by propagation alone")
+    void propagateTest() {
+        final var hard = "010940070000006010087001090020400700800000001004008020060800450070200000090067083";
+        final var board = BoardFormat.fromLine(hard);
+        final var solver = new GenSudokuCP<>(board);
+        final var candidates = solver.propagate();
+        assertFalse(candidates.isContradiction());
+        assertEquals(BoardFormat.fromLine(hard), board);
+
+        final var solution = BoardFormat.fromLine(hard);
+        assertTrue(new GenSudokuCP<>(solution).solve());
+        var total = 0;
+        for (var x = 0; x < 9; ++x)
+            for (var y = 0; y < 9; ++y) {
+                final var count = candidates.count(x, y);
+                assertEquals(count, candidates.get(x, y).size());
+                assertTrue(candidates.contains(x, y, solution.get(x, y)));
+                assertFalse(candidates.contains(x, y, 0));
+                if (board.get(x, y) != 0)
+                    assertEquals(1, count);
+                total += count;
+            }
+        // Propagation removes the values of the givens from their peers, and more.
+        assertTrue(total < 81 + 9 * 47);
+
+        // Propagating does not disturb solving, and solving does not disturb propagating.
+        assertTrue(solver.solve());
+        assertEquals(solution, board);
+        final var after = solver.propagate();
+        for (var x = 0; x < 9; ++x)
+            for (var y = 0; y < 9; ++y)
+                assertEquals(candidates.get(x, y), after.get(x, y));
+
+        // The limits still apply after propagating.
+        final var limited = new GenSudokuCP<>(BoardFormat.fromLine(
+                "800000000003600000070090200050007000000045700000100030001000068008500010090000400"));
+        limited.setNodeLimit(10);
+        assertFalse(limited.propagate().isContradiction());
+        assertFalse(limited.solve());
+        assertEquals(GenSudokuCP.Status.LIMIT_REACHED, limited.getStatus());
+
+        // Two clashing givens.
+        final var unsolvable = BoardFormat.fromLine("11" + hard.substring(2));
+        final var contradiction = new GenSudokuCP<>(unsolvable).propagate();
+        assertTrue(contradiction.isContradiction());
+        assertEquals(0, contradiction.count(0, 0));
+        assertTrue(contradiction.get(0, 0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Split the search for one puzzle across threads")
+    void solveParallelTest() {
+        final var puzzles = new String[] {
+                "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+                "010940070000006010087001090020400700800000001004008020060800450070200000090067083",
+                "610940070000006010087001090020400700800000001004008020060800450070200000090067083",
+                "080009743050008010010000000800005000000804000000300006000000070030500080972400050",
+        };
+        for (final var puzzle : puzzles)
+            for (var parallelism = 1; parallelism <= 4; parallelism *= 2) {
+                final var expected = BoardFormat.fromLine(puzzle);
+                final var sequential = new GenSudokuCP<>(expected);
+                final var unique = sequential.solve();
+
+                final var board = BoardFormat.fromLine(puzzle);
+                final var parallel = new GenSudokuCP<>(board);
+                assertEquals(unique, parallel.solveParallel(parallelism));
+                assertEquals(sequential.getStatus(), parallel.getStatus());
+                assertEquals(expected, board);
+            }
+
+        // A 16x16 board with a unique solution: a solved board with a few cells emptied.
+        final var board = BoardFormat.newBoard(4);
+        for (var x = 0; x < 16; ++x)
+            for (var y = 0; y < 16; ++y)
+                board.set(x, y, (x * 4 + x / 4 + y) % 16 + 1);
+        final var solution = board.freeze();
+        for (var i = 0; i < 16; ++i)
+            board.set(i, (i * 5) % 16, 0);
+        final var solver = new GenSudokuCP<>(board);
+        assertTrue(solver.solveParallel(3));
+        assertEquals(solution, board.freeze());
+
+        // An empty board has many solutions, and the search stops at the second.
+        final var empty = new GenSudokuCP<>(BoardFormat.newBoard(4));
+        assertFalse(empty.solveParallel(2));
+        assertEquals(GenSudokuCP.Status.MULTIPLE_SOLUTIONS, empty.getStatus());
+
+        // Limits apply to the split search too.
+        final var limited = new GenSudokuCP<>(BoardFormat.fromLine(puzzles[0]));
+        limited.setNodeLimit(2);
+        assertFalse(limited.solveParallel(2));
+        assertEquals(GenSudokuCP.Status.LIMIT_REACHED, limited.getStatus());
+        assertThrows(IllegalArgumentException.class, () -> limited.solveParallel(0));
+
+        // So do the stop criteria, while a trace cannot record the split search.
+        final var stopped = new GenSudokuCP<>(BoardFormat.fromLine(puzzles[0]));
+        stopped.addStopCriterion(() -> true);
+        assertFalse(stopped.solveParallel(2));
+        assertEquals(GenSudokuCP.Status.LIMIT_REACHED, stopped.getStatus());
+        final var traced = new GenSudokuCP<>(BoardFormat.fromLine(puzzles[0]));
+        traced.enableTrace(1024);
+        assertThrows(IllegalStateException.class, () -> traced.solveParallel(2));
+
+        // Threads and models supplied by the caller are reused from call to call, and a model whose search threw is
+        // discarded rather than returned to the pool.
+        final var threads = new ForkJoinPool(2);
+        try {
+            final var solvers = new SolverPool(2 * SolverPool.estimateBytes(3));
+            for (var i = 0; i < 2; ++i) {
+                final var shared = BoardFormat.fromLine(puzzles[1]);
+                assertTrue(new GenSudokuCP<>(shared).solveParallel(threads, solvers));
+                assertTrue(shared.isSolved());
+            }
+            assertTrue(solvers.getHits() > 0);
+
+            final var failing = new GenSudokuCP<>(BoardFormat.fromLine(puzzles[0]));
+            failing.addStopCriterion(() -> {
+                throw new IllegalStateException("failed");
+            });
+            solvers.clear();
+            assertThrows(IllegalStateException.class, () -> failing.solveParallel(threads, solvers));
+            assertEquals(0, solvers.getIdleCount());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("SudokuCP agrees with the constraint program")
+    void fastPathTest() {
+        final var puzzles = new String[] {
+                "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+                "000000000100006002832000100900008000007000040003047891000960500004000006005030200",
+                "610940070000006010087001090020400700800000001004008020060800450070200000090067083",
+                "080009743050008010010000000800005000000804000000300006000000070030500080972400050",
+                "110940070000006010087001090020400700800000001004008020060800450070200000090067083",
+                "000000000000000000000000000000000000000000000000000000000000000000000000000000000",
+        };
+        for (final var puzzle : puzzles) {
+            final var expected = BoardFormat.fromLine(puzzle);
+            final var generic = new GenSudokuCP<>(expected);
+            final var board = new SudokuBoard();
+            board.copyFrom(BoardFormat.fromLine(puzzle));
+            final var solver = new SudokuCP(board);
+            assertEquals(generic.solve(), solver.solve());
+            assertEquals(generic.getStatus(), solver.getStatus());
+            assertEquals(expected, board);
+        }
+
+        // The limits apply to the dedicated search.
+        final var board = new SudokuBoard();
+        board.copyFrom(BoardFormat.fromLine(puzzles[0]));
+        final var limited = new SudokuCP(board);
+        limited.setNodeLimit(5);
+        assertFalse(limited.solve());
+        assertEquals(GenSudokuCP.Status.LIMIT_REACHED, limited.getStatus());
+        assertEquals(5, limited.getNodeCount());
+
+        // A traced search is a search of the constraint program.
+        limited.setNodeLimit(0);
+        final var trace = limited.enableTrace(1 << 16);
+        assertTrue(limited.solve());
+        assertTrue(trace.getEventCount() > 0);
+        final var reference = new GenSudokuCP<>(BoardFormat.fromLine(puzzles[0]));
+        assertTrue(reference.solve());
+        assertEquals(reference.getNodeCount(), limited.getNodeCount());
+    }
+
+    @Test
+    @DisplayName("The factory picks SudokuCP for 9x9 boards over the digits, which search their givens")
+    void factoryTest() {
+        final var puzzle = "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+        final var board = BoardFormat.fromLine(puzzle);
+        final var solver = GenSudokuCP.of(board);
+        assertTrue(solver instanceof SudokuCP);
+        assertFalse(GenSudokuCP.of(BoardFormat.newBoard(2)) instanceof SudokuCP);
+        assertTrue(board.freeze().thaw() instanceof SudokuBoard);
+        assertFalse(BoardFormat.newBoard(2).freeze().thaw() instanceof SudokuBoard);
+
+        // Solving again searches the givens, not the solution now on the board, so it takes as many nodes.
+        assertTrue(solver.solve());
+        final var nodes = solver.getNodeCount();
+        assertTrue(board.isSolved());
+        assertTrue(solver.solve());
+        assertEquals(nodes, solver.getNodeCount());
+    }
+
+    @Test
+    @DisplayName("Adding and removing clues gives the same outcome as solving the edited puzzle afresh")
+    void editClueTest() {
+        final var puzzle = "010940070000006010087001090020400700800000001004008020060800450070200000090067083";
+        final var solved = BoardFormat.fromLine(puzzle);
+        assertTrue(new GenSudokuCP<>(solved).solve());
+
+        // A clue that agrees with the unique solution needs no search at all.
+        final var board = new SudokuBoard();
+        board.copyFrom(BoardFormat.fromLine(puzzle));
+        final var solver = new SudokuCP(board);
+        assertTrue(solver.solve());
+        assertTrue(solver.addClue(0, 0, solved.get(0, 0)));
+        assertEquals(0, solver.getNodeCount());
+        assertEquals(solved, board);
+
+        // One that does not leaves no solution, and the board holds just the clues.
+        final var wrong = solved.get(0, 2) % 9 + 1;
+        assertFalse(solver.addClue(0, 2, wrong));
+        assertEquals(GenSudokuCP.Status.NO_SOLUTION, solver.getStatus());
+        assertEquals(0, solver.getNodeCount());
+        assertEquals(Integer.valueOf(wrong), board.get(0, 2));
+        assertEquals(Integer.valueOf(0), board.get(0, 5));
+        assertTrue(solver.removeClue(0, 2));
+        assertEquals(solved, board);
+
+        // Random edits, on both the dedicated search and the constraint program, checked against new solvers.
+        final var random = new Random(0);
+        for (final var dedicated : new boolean[] {true, false}) {
+            final var clues = BoardFormat.fromLine(puzzle);
+            final var edited = BoardFormat.fromLine(puzzle);
+            final GenSudokuCP<Integer> incremental;
+            if (dedicated) {
+                final var sudokuBoard = new SudokuBoard();
+                sudokuBoard.copyFrom(edited);
+                incremental = new SudokuCP(sudokuBoard);
+            } else {
+                incremental = new GenSudokuCP<>(edited);
+            }
+            incremental.solve();
+
+            for (var i = 0; i < 60; ++i) {
+                final var x = random.nextInt(9);
+                final var y = random.nextInt(9);
+                final boolean unique;
+                if (random.nextInt(3) == 0) {
+                    clues.set(x, y, 0);
+                    unique = incremental.removeClue(x, y);
+                } else {
+                    final var value = random.nextInt(8) == 0 ? random.nextInt(9) + 1 : solved.get(x, y);
+                    clues.set(x, y, value);
+                    unique = incremental.addClue(x, y, value);
+                }
+
+                final var expected = clues.freeze().thaw();
+                final var fresh = new GenSudokuCP<>(expected);
+                assertEquals(fresh.solve(), unique);
+                assertEquals(fresh.getStatus(), incremental.getStatus());
+                final var actual = dedicated ? ((SudokuCP) incremental).getBoard() : edited;
+                assertEquals(expected, actual);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> solver.addClue(9, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> solver.addClue(0, 0, 0));
+    }
 }
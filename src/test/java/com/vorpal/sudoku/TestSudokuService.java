@@ -0,0 +1,142 @@
+// TestSudokuService.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class TestSudokuService {
+    private static final String medium =
+            "000000000100006002832000100900008000007000040003047891000960500004000006005030200";
+    private static final String extreme =
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+    private static final String multiple =
+            "080009743050008010010000000800005000000804000000300006000000070030500080972400050";
+
+    private SudokuService service;
+
+    @BeforeEach
+    void start() throws IOException {
+        service = new SudokuService(new InetSocketAddress("localhost", 0), 2, 16, 5, 10_000, 64);
+        service.start();
+    }
+
+    @AfterEach
+    void stop() {
+        service.stop();
+    }
+
+    // Make a request, and return the status code and the parsed response.
+    private Map<String, Object> request(final String method, final String path, final String body,
+                                        final int expectedCode) throws IOException {
+        final var connection = (HttpURLConnection)
+                new URL("http://localhost:" + service.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (final var out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertEquals(expectedCode, connection.getResponseCode());
+        try (final var in = expectedCode < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            return Json.parseObject(read(in));
+        }
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        final var bytes = new ByteArrayOutputStream();
+        in.transferTo(bytes);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String puzzle(final String line) {
+        return "{\"puzzle\": \"" + line + "\"}";
+    }
+
+    @Test
+    @DisplayName("Solve, validate, and grade over HTTP")
+    void endpointTest() throws IOException {
+        final var solved = request("POST", "/solve", puzzle(medium), 200);
+        assertEquals("solved", solved.get("status"));
+        final var solution = (String) solved.get("solution");
+        assertTrue(BoardFormat.fromLine(solution).isSolved());
+
+        assertEquals("multiple", request("POST", "/solve", puzzle(multiple), 200).get("status"));
+
+        final var valid = request("POST", "/validate", puzzle(solution), 200);
+        assertEquals(Boolean.TRUE, valid.get("valid"));
+        assertEquals(Boolean.TRUE, valid.get("complete"));
+        assertEquals(Boolean.TRUE, valid.get("solved"));
+        final var invalid = request("POST", "/validate", puzzle("11" + medium.substring(2)), 200);
+        assertEquals(Boolean.FALSE, invalid.get("valid"));
+        assertEquals(Boolean.FALSE, invalid.get("solved"));
+
+        final var grade = request("POST", "/grade", puzzle(extreme), 200);
+        assertEquals("solved", grade.get("status"));
+        assertEquals("GUESS", grade.get("technique"));
+        assertTrue((Double) grade.get("score") > 0);
+
+        // A deadline of a day is honoured, while longer ones, which would overflow in nanoseconds, are refused.
+        final var day = "{\"puzzle\": \"" + medium + "\", \"deadlineMillis\": 86400000}";
+        assertEquals("solved", request("POST", "/solve", day, 200).get("status"));
+
+        // Bad requests.
+        request("POST", "/solve", "{\"puzzle\": \"123\"}", 400);
+        request("POST", "/solve", "not json", 400);
+        request("POST", "/solve", "{\"puzzle\": \"" + medium + "\", \"deadlineMillis\": 1e300}", 400);
+        request("GET", "/solve", null, 405);
+
+        final var metrics = request("GET", "/metrics", null, 200);
+        assertEquals(5.0, metrics.get("solveRequests"));
+        assertEquals(2.0, metrics.get("validateRequests"));
+        assertEquals(1.0, metrics.get("gradeRequests"));
+        assertEquals(3.0, metrics.get("badRequests"));
+        assertTrue((Double) metrics.get("batches") >= 1);
+    }
+
+    @Test
+    @DisplayName("Concurrent requests are batched and deadlines are enforced")
+    void batchingTest() throws Exception {
+        final var executor = Executors.newFixedThreadPool(16);
+        try {
+            final var futures = new ArrayList<Future<Map<String, Object>>>();
+            for (var i = 0; i < 32; ++i)
+                futures.add(executor.submit((Callable<Map<String, Object>>) () ->
+                        request("POST", "/solve", puzzle(medium), 200)));
+            for (final var future : futures)
+                assertEquals("solved", future.get().get("status"));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final var metrics = request("GET", "/metrics", null, 200);
+        assertEquals(32.0, metrics.get("solveRequests"));
+        assertTrue((Double) metrics.get("batches") < 32, "requests were not batched: " + metrics);
+        assertEquals(32.0, (Double) metrics.get("poolHits") + (Double) metrics.get("poolMisses"));
+        assertTrue((Double) metrics.get("poolHits") > 0, "solvers were not reused: " + metrics);
+
+        // The batch window alone is longer than this deadline, so the puzzle is answered with limit.
+        final var limited = request("POST", "/solve", "{\"puzzle\": \"" + extreme + "\", \"deadlineMillis\": 1}", 200);
+        assertEquals("limit", limited.get("status"));
+        assertEquals(1.0, request("GET", "/metrics", null, 200).get("limitsReached"));
+    }
+}
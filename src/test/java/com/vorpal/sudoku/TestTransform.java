@@ -0,0 +1,111 @@
+// TestTransform.java
+//
+// By Sebastian Raaphorst, 2018.
+
+package com.vorpal.sudoku;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Random;
+
+class TestTransform {
+    private static final String solution =
+            "812753649943682175675491283154237896369845721287169534521974368438526917796318452";
+
+    @Test
+    @DisplayName("The basic transforms move cells where expected")
+    void basicTest() {
+        final var board = BoardFormat.fromLine(solution);
+        final var original = board.freeze();
+
+        final var transposed = original.thaw();
+        transposed.transform(Transform.transpose(3));
+        final var rotated = original.thaw();
+        rotated.transform(Transform.rotate(3, 1));
+        final var reflected = original.thaw();
+        reflected.transform(Transform.reflectHorizontally(3));
+        final var flipped = original.thaw();
+        flipped.transform(Transform.reflectVertically(3));
+        for (var x = 0; x < 9; ++x)
+            for (var y = 0; y < 9; ++y) {
+                assertEquals(board.get(y, x), transposed.get(x, y));
+                assertEquals(board.get(x, y), rotated.get(y, 8 - x));
+                assertEquals(board.get(x, 8 - y), reflected.get(x, y));
+                assertEquals(board.get(8 - x, y), flipped.get(x, y));
+            }
+
+        final var permuted = original.thaw();
+        permuted.transform(Transform.permuteRowsInBand(3, 1, 2, 0, 1)
+                .then(Transform.permuteColumnsInStack(3, 2, 1, 0, 2))
+                .then(Transform.permuteBands(3, 2, 0, 1))
+                .then(Transform.permuteStacks(3, 0, 2, 1)));
+        // Row 5 became row 3 and then row 6; column 7 became column 6 and then column 3.
+        assertEquals(board.get(5, 7), permuted.get(6, 3));
+        assertTrue(permuted.isSolved());
+
+        final var relabeled = original.thaw();
+        relabeled.transform(Transform.relabel(board, Map.of(1, 2, 2, 1)));
+        for (var x = 0; x < 9; ++x)
+            for (var y = 0; y < 9; ++y) {
+                final int value = board.get(x, y);
+                assertEquals(Integer.valueOf(value == 1 ? 2 : value == 2 ? 1 : value), relabeled.get(x, y));
+            }
+
+        // The original board was never modified, as its contents were shared with the snapshot.
+        assertEquals(original, board.freeze());
+    }
+
+    @Test
+    @DisplayName("Composed transforms agree with applying them one at a time")
+    void composeTest() {
+        final var random = new Random(0);
+        for (var dimensionality = 2; dimensionality <= 4; ++dimensionality) {
+            final var board = BoardFormat.newBoard(dimensionality);
+            final var side = dimensionality * dimensionality;
+            for (var x = 0; x < side; ++x)
+                for (var y = 0; y < side; ++y)
+                    board.set(x, y, (x * dimensionality + x / dimensionality + y) % side + 1);
+            assertTrue(board.isSolved());
+
+            for (var i = 0; i < 20; ++i) {
+                final var first = Transform.random(dimensionality, random);
+                final var second = Transform.rotate(dimensionality, i).then(Transform.random(dimensionality, random));
+
+                final var stepwise = board.freeze().thaw();
+                stepwise.transform(first);
+                stepwise.transform(second);
+                assertTrue(stepwise.isSolved());
+
+                final var composed = BoardFormat.newBoard(dimensionality);
+                composed.copyFrom(board, first.then(second));
+                assertEquals(stepwise, composed);
+
+                composed.transform(first.then(second).inverse());
+                assertEquals(board, composed);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Rotating four times or transposing twice changes nothing")
+    void identityTest() {
+        final var board = BoardFormat.fromLine(solution);
+        final var copy = BoardFormat.fromLine(solution);
+        copy.transform(Transform.rotate(3, 1).then(Transform.rotate(3, 1)).then(Transform.rotate(3, 2)));
+        assertEquals(board, copy);
+        copy.transform(Transform.transpose(3));
+        assertNotEquals(board, copy);
+        copy.transform(Transform.transpose(3));
+        assertEquals(board, copy);
+        copy.transform(Transform.rotate(3, -1).then(Transform.rotate(3, 1)));
+        assertEquals(board, copy);
+
+        assertThrows(IllegalArgumentException.class, () -> copy.transform(Transform.identity(2)));
+        assertThrows(IllegalArgumentException.class, () -> Transform.permuteBands(3, 0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> Transform.permuteRowsInBand(3, 3, 0, 1, 2));
+        assertThrows(IllegalArgumentException.class, () -> Transform.relabel(2, 1, 2, 3, 5));
+    }
+}